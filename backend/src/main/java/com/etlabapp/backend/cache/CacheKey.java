@@ -0,0 +1,7 @@
+package com.etlabapp.backend.cache;
+
+/**
+ * Identifies one upstream document: the session user and the ETLab endpoint it came from
+ */
+public record CacheKey(String username, String endpoint) {
+}
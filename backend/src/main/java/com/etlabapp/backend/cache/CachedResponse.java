@@ -0,0 +1,24 @@
+package com.etlabapp.backend.cache;
+
+/**
+ * An upstream response body together with when it was fetched and its estimated size
+ */
+public final class CachedResponse {
+    private final Object body;
+    private final long fetchedAt;
+    private final int weight;
+
+    public CachedResponse(Object body, long fetchedAt, int weight) {
+        this.body = body;
+        this.fetchedAt = fetchedAt;
+        this.weight = weight;
+    }
+
+    public Object getBody() { return body; }
+    public long getFetchedAt() { return fetchedAt; }
+    public int getWeight() { return weight; }
+
+    public long ageMillis(long now) {
+        return now - fetchedAt;
+    }
+}
@@ -0,0 +1,101 @@
+package com.etlabapp.backend.cache;
+
+import com.etlabapp.backend.cluster.ClusterEvents;
+import com.etlabapp.backend.cluster.ClusterKey;
+import com.etlabapp.backend.security.Sealer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Snapshots in the embedded H2 database (file mode, see spring.datasource.url),
+ * one row per user and endpoint. With app.cluster.enabled the database is shared: bodies
+ * are sealed with AES-GCM under a ClusterKey, and each write or delete is announced so
+ * the other instances drop their cached copy. Otherwise they are stored as plain JSON.
+ */
+@Component
+@ConditionalOnProperty(name = "app.snapshot.store", havingValue = "h2")
+public class H2SnapshotStore extends WriteBehindSnapshotStore {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Absent unless app.cluster.enabled
+    @Autowired(required = false)
+    private ClusterEvents clusterEvents;
+
+    @Autowired(required = false)
+    private ClusterKey clusterKey;
+
+    // Null without app.cluster.enabled
+    private Sealer sealer;
+
+    @Override
+    protected String name() {
+        return "h2";
+    }
+
+    @Override
+    protected void open() {
+        if (clusterKey != null) {
+            sealer = clusterKey.sealer("etlab-cluster-snapshot");
+        }
+        jdbcTemplate.execute("""
+            CREATE TABLE IF NOT EXISTS response_snapshot (
+                username VARCHAR(255) NOT NULL,
+                endpoint VARCHAR(64) NOT NULL,
+                body VARBINARY NOT NULL,
+                fetched_at BIGINT NOT NULL,
+                PRIMARY KEY (username, endpoint)
+            )""");
+    }
+
+    @Override
+    protected <T> Snapshot<T> read(CacheKey key, Class<T> type) throws IOException, GeneralSecurityException {
+        List<StoredSnapshot> rows = jdbcTemplate.query(
+            "SELECT body, fetched_at FROM response_snapshot WHERE username = ? AND endpoint = ?",
+            (row, index) -> new StoredSnapshot(key, row.getBytes("body"), row.getLong("fetched_at")),
+            key.username(), key.endpoint());
+        if (rows.isEmpty()) {
+            return null;
+        }
+        byte[] body = sealer != null ? sealer.open(rows.get(0).body()) : rows.get(0).body();
+        return new Snapshot<>(objectMapper.readValue(body, type), rows.get(0).fetchedAt());
+    }
+
+    @Override
+    protected void write(List<StoredSnapshot> batch) throws GeneralSecurityException {
+        List<Object[]> rows = new ArrayList<>(batch.size());
+        for (StoredSnapshot snapshot : batch) {
+            byte[] body = sealer != null ? sealer.seal(snapshot.body()) : snapshot.body();
+            rows.add(new Object[] { snapshot.key().username(), snapshot.key().endpoint(), body, snapshot.fetchedAt() });
+        }
+        jdbcTemplate.batchUpdate(
+            "MERGE INTO response_snapshot (username, endpoint, body, fetched_at) KEY (username, endpoint) VALUES (?, ?, ?, ?)",
+            rows);
+        if (clusterEvents != null) {
+            clusterEvents.publishAll(batch.stream()
+                .map(snapshot -> new ClusterEvents.Event(ClusterEvents.RESPONSE, snapshot.key().username(), snapshot.key().endpoint()))
+                .toList());
+        }
+    }
+
+    @Override
+    protected void delete(String username) {
+        jdbcTemplate.update("DELETE FROM response_snapshot WHERE username = ?", username);
+        if (clusterEvents != null) {
+            clusterEvents.publish(ClusterEvents.USER, username);
+        }
+    }
+
+    @Override
+    protected void close() {
+        // The DataSource is closed by Spring after this bean
+    }
+}
@@ -0,0 +1,392 @@
+package com.etlabapp.backend.cache;
+
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Snapshots in an append-only log of memory-mapped segment files, off the Java heap.
+ *
+ * Each write appends a record (key, fetch time, serialized body) to the current
+ * segment and points the in-heap index at it; a user's deletion appends a tombstone.
+ * The heap holds only the index (one small entry per user and endpoint), and reads
+ * parse straight from the mapped pages without copying the body onto the heap.
+ *
+ * Superseded records stay in the log until compaction: once less than
+ * compact-live-ratio of the log is live, the live records are copied into fresh
+ * segments and the old files are deleted. On startup the segments are scanned in
+ * order to rebuild the index. The log ends at the first torn or corrupted record:
+ * the rest of its segment is zeroed and later segments are deleted, so nothing
+ * written after a lost record comes back. Deletions found in the dropped segments
+ * are still applied and written again, so a deleted user's snapshots stay deleted.
+ *
+ * All writes, deletes and compaction run on the write-behind flusher thread; readers
+ * only follow index entries, which keep their segment's mapping alive.
+ */
+@Component
+@ConditionalOnProperty(name = "app.snapshot.store", havingValue = "mmap")
+public class MmapSnapshotStore extends WriteBehindSnapshotStore {
+
+    // length, crc, fetchedAt, type, user length, endpoint length
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 1 + 2 + 2;
+    private static final byte PUT = 1;
+    private static final byte DELETE_USER = 2;
+    private static final String SEGMENT_PREFIX = "snapshots-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    @Value("${app.snapshot.mmap.dir:./data/snapshot-log}")
+    private String directory;
+
+    @Value("${app.snapshot.mmap.segment-bytes:67108864}")
+    private int segmentBytes;
+
+    @Value("${app.snapshot.mmap.compact-live-ratio:0.5}")
+    private double compactLiveRatio;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<CacheKey, Location> index = new ConcurrentHashMap<>();
+    private final List<Segment> segments = new ArrayList<>();
+    private final AtomicLong logBytes = new AtomicLong();
+    private final AtomicLong liveBytes = new AtomicLong();
+    private Path dir;
+    private Segment active;
+    private Counter compactions;
+
+    private static final class Segment {
+        private final int id;
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private int position;
+
+        private Segment(int id, Path path, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+
+    /**
+     * A record in a segment; holding the segment keeps its mapping valid after compaction
+     */
+    private record Location(Segment segment, int offset, int length, long fetchedAt, int bodyOffset) {}
+
+    @Override
+    protected String name() {
+        return "mmap";
+    }
+
+    @Override
+    protected void open() throws IOException {
+        dir = Paths.get(directory);
+        Files.createDirectories(dir);
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(dir)) {
+            files = listing.filter(path -> segmentId(path) >= 0)
+                .sorted((a, b) -> Integer.compare(segmentId(a), segmentId(b)))
+                .toList();
+        }
+        Set<String> deletedLater = new LinkedHashSet<>();
+        for (int i = 0; i < files.size(); i++) {
+            Segment segment = map(segmentId(files.get(i)), files.get(i));
+            segments.add(segment);
+            if (!recover(segment)) {
+                for (Path later : files.subList(i + 1, files.size())) {
+                    logger.warn("Dropping snapshot log {}: it follows a corrupted record", later.getFileName());
+                    deletedLater.addAll(deletionsIn(later));
+                    Files.delete(later);
+                }
+                break;
+            }
+        }
+        active = segments.isEmpty() ? newSegment(0) : segments.get(segments.size() - 1);
+        for (String username : deletedLater) {
+            if (dropUser(username)) {
+                append(DELETE_USER, username, "", new byte[0], System.currentTimeMillis());
+            }
+        }
+
+        compactions = meterRegistry.counter("etlab.snapshot.log.compactions");
+        Gauge.builder("etlab.snapshot.log.bytes", logBytes, AtomicLong::get).tag("kind", "total").register(meterRegistry);
+        Gauge.builder("etlab.snapshot.log.bytes", liveBytes, AtomicLong::get).tag("kind", "live").register(meterRegistry);
+        Gauge.builder("etlab.snapshot.log.entries", index, Map::size).register(meterRegistry);
+        logger.info("Snapshot log {}: {} entries in {} segments ({} of {} bytes live)",
+                    dir.toAbsolutePath(), index.size(), segments.size(), liveBytes.get(), logBytes.get());
+    }
+
+    @Override
+    protected <T> Snapshot<T> read(CacheKey key, Class<T> type) throws IOException {
+        Location location = index.get(key);
+        if (location == null) {
+            return null;
+        }
+        ByteBuffer body = location.segment().buffer.slice(location.bodyOffset(),
+                                                          location.offset() + location.length() - location.bodyOffset());
+        try (InputStream in = new ByteBufferBackedInputStream(body)) {
+            return new Snapshot<>(objectMapper.readValue(in, type), location.fetchedAt());
+        }
+    }
+
+    @Override
+    protected void write(List<StoredSnapshot> batch) throws IOException {
+        for (StoredSnapshot snapshot : batch) {
+            Location location = append(PUT, snapshot.key().username(), snapshot.key().endpoint(),
+                                       snapshot.body(), snapshot.fetchedAt());
+            if (location != null) {
+                track(snapshot.key(), location);
+            }
+        }
+        compactIfSparse();
+    }
+
+    @Override
+    protected void delete(String username) throws IOException {
+        if (dropUser(username)) {
+            // Without the tombstone, recovery would bring the user's snapshots back
+            append(DELETE_USER, username, "", new byte[0], System.currentTimeMillis());
+            compactIfSparse();
+        }
+    }
+
+    @Override
+    protected void close() {
+        for (Segment segment : segments) {
+            segment.buffer.force();
+        }
+    }
+
+    /**
+     * Remove a user's entries from the index; false if there were none
+     */
+    private boolean dropUser(String username) {
+        boolean had = false;
+        for (Map.Entry<CacheKey, Location> entry : index.entrySet()) {
+            if (entry.getKey().username().equals(username) && index.remove(entry.getKey(), entry.getValue())) {
+                liveBytes.addAndGet(-entry.getValue().length());
+                had = true;
+            }
+        }
+        return had;
+    }
+
+    private void track(CacheKey key, Location location) {
+        Location previous = index.put(key, location);
+        liveBytes.addAndGet(location.length() - (previous != null ? previous.length() : 0));
+    }
+
+    /**
+     * Append one record, rolling to a new segment when the current one is full
+     */
+    private Location append(byte type, String username, String endpoint, byte[] body, long fetchedAt) throws IOException {
+        byte[] user = username.getBytes(StandardCharsets.UTF_8);
+        byte[] path = endpoint.getBytes(StandardCharsets.UTF_8);
+        int length = HEADER_BYTES + user.length + path.length + body.length;
+        if (length > segmentBytes) {
+            logger.warn("Snapshot of {} for user {} is larger than a segment ({} bytes), not stored", endpoint, username, length);
+            return null;
+        }
+        if (active.position + length > segmentBytes) {
+            active = newSegment(active.id + 1);
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(length);
+        record.putInt(length).putInt(0).putLong(fetchedAt).put(type)
+            .putShort((short) user.length).putShort((short) path.length)
+            .put(user).put(path).put(body);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 8, length - 8);
+        record.putInt(4, (int) crc.getValue());
+
+        int offset = active.position;
+        active.buffer.put(offset, record.array());
+        active.position += length;
+        logBytes.addAndGet(length);
+        return new Location(active, offset, length, fetchedAt, offset + HEADER_BYTES + user.length + path.length);
+    }
+
+    /**
+     * Rebuild the index from a segment; the first invalid record marks the end of its data.
+     * False if the segment was cut short by a corrupted record rather than ending cleanly.
+     */
+    private boolean recover(Segment segment) {
+        ByteBuffer buffer = segment.buffer;
+        int offset = 0;
+        int length;
+        while ((length = validRecordLength(buffer, offset)) > 0) {
+            long fetchedAt = buffer.getLong(offset + 8);
+            byte type = buffer.get(offset + 16);
+            int userLength = buffer.getShort(offset + 17);
+            int pathLength = buffer.getShort(offset + 19);
+            String username = readString(buffer, offset + HEADER_BYTES, userLength);
+            if (type == PUT) {
+                String endpoint = readString(buffer, offset + HEADER_BYTES + userLength, pathLength);
+                track(new CacheKey(username, endpoint),
+                      new Location(segment, offset, length, fetchedAt, offset + HEADER_BYTES + userLength + pathLength));
+            } else if (type == DELETE_USER) {
+                dropUser(username);
+            }
+            offset += length;
+            logBytes.addAndGet(length);
+        }
+        segment.position = offset;
+        // New records are appended here; whatever follows must not be read as data again
+        if (!isZero(buffer, offset)) {
+            logger.warn("Snapshot log {} ends with a torn record at {}", segment.path.getFileName(), offset);
+            zero(buffer, offset);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Users deleted by the valid records of a segment file that is about to be dropped
+     */
+    private Set<String> deletionsIn(Path file) throws IOException {
+        Set<String> deleted = new LinkedHashSet<>();
+        ByteBuffer buffer = map(segmentId(file), file).buffer;
+        int offset = 0;
+        int length;
+        while ((length = validRecordLength(buffer, offset)) > 0) {
+            if (buffer.get(offset + 16) == DELETE_USER) {
+                deleted.add(readString(buffer, offset + HEADER_BYTES, buffer.getShort(offset + 17)));
+            }
+            offset += length;
+        }
+        return deleted;
+    }
+
+    /**
+     * Length of the record at offset if it is complete and its checksum matches, else 0
+     */
+    private int validRecordLength(ByteBuffer buffer, int offset) {
+        if (offset + HEADER_BYTES > segmentBytes) {
+            return 0;
+        }
+        int length = buffer.getInt(offset);
+        if (length < HEADER_BYTES || offset + length > segmentBytes) {
+            return 0;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(offset + 8, length - 8));
+        return (int) crc.getValue() == buffer.getInt(offset + 4) ? length : 0;
+    }
+
+    private boolean isZero(ByteBuffer buffer, int from) {
+        int i = from;
+        for (; i + 8 <= segmentBytes; i += 8) {
+            if (buffer.getLong(i) != 0) {
+                return false;
+            }
+        }
+        for (; i < segmentBytes; i++) {
+            if (buffer.get(i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void zero(ByteBuffer buffer, int from) {
+        byte[] zeros = new byte[Math.min(64 * 1024, segmentBytes - from)];
+        for (int i = from; i < segmentBytes; i += zeros.length) {
+            buffer.put(i, zeros, 0, Math.min(zeros.length, segmentBytes - i));
+        }
+    }
+
+    /**
+     * Copy the live records into fresh segments and drop the old ones
+     */
+    private void compactIfSparse() throws IOException {
+        long total = logBytes.get();
+        if (total < segmentBytes || liveBytes.get() >= total * compactLiveRatio) {
+            return;
+        }
+        long start = System.nanoTime();
+        List<Segment> old = new ArrayList<>(segments);
+        long before = total;
+        logBytes.set(0);
+        active = newSegment(active.id + 1);
+
+        for (Map.Entry<CacheKey, Location> entry : index.entrySet()) {
+            Location from = entry.getValue();
+            if (active.position + from.length() > segmentBytes) {
+                active = newSegment(active.id + 1);
+            }
+            int offset = active.position;
+            active.buffer.put(offset, from.segment().buffer, from.offset(), from.length());
+            active.position += from.length();
+            logBytes.addAndGet(from.length());
+            // Readers holding the old location still see valid bytes
+            entry.setValue(new Location(active, offset, from.length(), from.fetchedAt(),
+                                        offset + from.bodyOffset() - from.offset()));
+        }
+
+        for (Segment segment : old) {
+            segments.remove(segment);
+            // The mapping stays usable for in-flight reads until it is garbage collected
+            Files.deleteIfExists(segment.path);
+        }
+        compactions.increment();
+        logger.info("Compacted snapshot log from {} to {} bytes in {} ms",
+                    before, logBytes.get(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private Segment newSegment(int id) throws IOException {
+        Path file = dir.resolve(SEGMENT_PREFIX + String.format("%08d", id) + SEGMENT_SUFFIX);
+        Segment segment = map(id, file);
+        segments.add(segment);
+        return segment;
+    }
+
+    private Segment map(int id, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                                    StandardOpenOption.WRITE)) {
+            // New segments are zero-filled, which recovery reads as the end of the data
+            return new Segment(id, file, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes));
+        }
+    }
+
+    private static int segmentId(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String readString(ByteBuffer buffer, int offset, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,227 @@
+package com.etlabapp.backend.cache;
+
+import com.etlabapp.backend.upstream.AdaptiveConcurrencyLimiter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Refreshes hot cache entries shortly before they expire, so the user who reads
+ * them next doesn't pay the ETLab round trip.
+ *
+ * The response cache reports every read and every fetch. An entry is due once it
+ * has lived refresh-at-ratio of its TTL and was read at least min-hits times since
+ * it was fetched. Due entries are refreshed hottest first, within a global
+ * per-minute budget and only while the upstream limit has headroom. Users whose
+ * session has been idle for idle-minutes (or is gone) drop out of the schedule.
+ */
+@Component
+public class RefreshAheadScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(RefreshAheadScheduler.class);
+
+    @Value("${app.cache.refresh-ahead.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.cache.refresh-ahead.tick-seconds:10}")
+    private long tickSeconds;
+
+    @Value("${app.cache.refresh-ahead.refresh-at-ratio:0.8}")
+    private double refreshAtRatio;
+
+    @Value("${app.cache.refresh-ahead.min-hits:2}")
+    private int minHits;
+
+    @Value("${app.cache.refresh-ahead.idle-minutes:15}")
+    private long idleMinutes;
+
+    @Value("${app.cache.refresh-ahead.max-refreshes-per-minute:60}")
+    private int maxRefreshesPerMinute;
+
+    @Value("${app.cache.refresh-ahead.max-limit-share:0.5}")
+    private double maxLimitShare;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    @Autowired
+    @Qualifier("prefetchExecutor")
+    private TaskExecutor backgroundExecutor;
+
+    private final Map<CacheKey, Tracked> tracked = new ConcurrentHashMap<>();
+
+    // Last activity of a user's session, 0 if there is none (provided by EtlabApiService)
+    private volatile ToLongFunction<String> sessionActivity = username -> System.currentTimeMillis();
+    // Wall clock entries age by; tests drive it by hand
+    private LongSupplier clock = System::currentTimeMillis;
+
+    private ScheduledExecutorService scheduler;
+    private double budget;
+
+    private Counter refreshed;
+    private Counter failed;
+    private Counter overBudget;
+    private Counter dropped;
+
+    private static final class Tracked {
+        private final AtomicInteger hitsSinceFetch = new AtomicInteger();
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        private volatile long fetchedAt;
+        private volatile long ttlMillis;
+        private volatile Runnable refresher;
+    }
+
+    @PostConstruct
+    void init() {
+        refreshed = meterRegistry.counter("etlab.cache.refresh.ahead", "result", "refreshed");
+        failed = meterRegistry.counter("etlab.cache.refresh.ahead", "result", "failed");
+        overBudget = meterRegistry.counter("etlab.cache.refresh.ahead", "result", "over_budget");
+        dropped = meterRegistry.counter("etlab.cache.refresh.ahead.dropped");
+        Gauge.builder("etlab.cache.refresh.ahead.tracked", tracked, Map::size).register(meterRegistry);
+
+        if (!enabled) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "etlab-refresh-ahead");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::tick, tickSeconds, tickSeconds, TimeUnit.SECONDS);
+        logger.info("Refresh-ahead: at {}% of TTL for entries with >= {} hits, budget {}/min, idle after {} min",
+                    Math.round(refreshAtRatio * 100), minHits, maxRefreshesPerMinute, idleMinutes);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    public void setSessionActivity(ToLongFunction<String> sessionActivity) {
+        this.sessionActivity = sessionActivity;
+    }
+
+    /**
+     * A read of the entry; refresher reloads and re-caches it
+     */
+    void recordAccess(CacheKey key, Runnable refresher) {
+        if (!enabled) {
+            return;
+        }
+        Tracked entry = tracked.computeIfAbsent(key, k -> new Tracked());
+        entry.refresher = refresher;
+        entry.hitsSinceFetch.incrementAndGet();
+    }
+
+    /**
+     * A fresh body was stored for the entry
+     */
+    void recordFetch(CacheKey key, long fetchedAt, long ttlMillis) {
+        if (!enabled) {
+            return;
+        }
+        Tracked entry = tracked.computeIfAbsent(key, k -> new Tracked());
+        entry.fetchedAt = fetchedAt;
+        entry.ttlMillis = ttlMillis;
+        entry.hitsSinceFetch.set(0);
+    }
+
+    void forgetUser(String username) {
+        tracked.keySet().removeIf(key -> key.username().equals(username));
+    }
+
+    void tick() {
+        try {
+            long now = clock.getAsLong();
+            budget = Math.min(maxRefreshesPerMinute, budget + maxRefreshesPerMinute * tickSeconds / 60.0);
+
+            List<Map.Entry<CacheKey, Tracked>> due = new ArrayList<>();
+            for (Map.Entry<CacheKey, Tracked> candidate : tracked.entrySet()) {
+                long lastActivity = sessionActivity.applyAsLong(candidate.getKey().username());
+                if (lastActivity == 0 || now - lastActivity > TimeUnit.MINUTES.toMillis(idleMinutes)) {
+                    tracked.remove(candidate.getKey());
+                    dropped.increment();
+                    continue;
+                }
+                if (isDue(candidate.getValue(), now)) {
+                    due.add(candidate);
+                }
+            }
+
+            // Hottest first, in case the budget runs out
+            due.sort(Comparator.comparingInt((Map.Entry<CacheKey, Tracked> e) -> e.getValue().hitsSinceFetch.get()).reversed());
+            for (Map.Entry<CacheKey, Tracked> entry : due) {
+                if (budget < 1 || !concurrencyLimiter.hasHeadroom(maxLimitShare)) {
+                    overBudget.increment(due.size() - due.indexOf(entry));
+                    break;
+                }
+                if (submit(entry.getKey(), entry.getValue())) {
+                    budget--;
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Refresh-ahead tick failed: {}", e.getMessage());
+        }
+    }
+
+    private boolean isDue(Tracked entry, long now) {
+        if (entry.fetchedAt == 0 || entry.refresher == null || entry.hitsSinceFetch.get() < minHits) {
+            return false;
+        }
+        long age = now - entry.fetchedAt;
+        // Past the TTL the cache's own stale-while-revalidate takes over
+        return age >= entry.ttlMillis * refreshAtRatio && age < entry.ttlMillis;
+    }
+
+    private boolean submit(CacheKey key, Tracked entry) {
+        if (!entry.refreshing.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            backgroundExecutor.execute(() -> {
+                try {
+                    entry.refresher.run();
+                    refreshed.increment();
+                    logger.debug("Refreshed {} ahead of expiry for user {}", key.endpoint(), key.username());
+                } catch (RuntimeException e) {
+                    failed.increment();
+                    logger.debug("Refresh-ahead of {} for user {} failed: {}", key.endpoint(), key.username(), e.getMessage());
+                } finally {
+                    entry.refreshing.set(false);
+                }
+            });
+            return true;
+        } catch (TaskRejectedException e) {
+            entry.refreshing.set(false);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.etlabapp.backend.cache;
+
+/**
+ * Durable copy of the response cache's bodies, so a restart or deploy doesn't start
+ * every user cold. Selected with app.snapshot.store; absent when it is "none".
+ */
+public interface SnapshotStore {
+
+    /**
+     * Remember the latest body of an entry. Must not wait on disk.
+     */
+    void save(CacheKey key, Object body, long fetchedAt);
+
+    /**
+     * The last saved body of an entry, read as type, or null if there is none
+     */
+    <T> Snapshot<T> load(CacheKey key, Class<T> type);
+
+    /**
+     * Forget everything stored for a user (logout, expired session)
+     */
+    void deleteUser(String username);
+
+    record Snapshot<T>(T body, long fetchedAt) {}
+}
@@ -0,0 +1,365 @@
+package com.etlabapp.backend.cache;
+
+import com.etlabapp.backend.cluster.ClusterEvents;
+import com.etlabapp.backend.model.AttendanceSummary;
+import com.etlabapp.backend.model.EstimatedSize;
+import com.etlabapp.backend.model.SessionalResults;
+import com.etlabapp.backend.model.StudentProfile;
+import com.etlabapp.backend.model.TimetableWeek;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Per-user, per-endpoint cache of ETLab response bodies.
+ *
+ * An entry is fresh for its endpoint's TTL. For a further stale window it is still
+ * served, but the first read after it went stale triggers one background
+ * revalidation. Reads and fetches are reported to the RefreshAheadScheduler so hot
+ * entries get reloaded before they go stale. Total size is bounded by the estimated
+ * weight of the cached bodies.
+ *
+ * With a SnapshotStore configured every stored body is also persisted, and a miss
+ * is first looked up there: after a restart the snapshot is served (stale ones are
+ * revalidated as usual, by their original fetch time) instead of calling ETLab.
+ *
+ * With app.cluster.enabled the snapshots are shared and this cache is the instance's
+ * near-cache: a body stored or dropped on another instance evicts the local entry, and
+ * the next read restores the other instance's snapshot.
+ */
+@Component
+public class UpstreamResponseCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(UpstreamResponseCache.class);
+
+    // Weight of typed bodies that don't estimate their own size (StudentProfile)
+    private static final int DEFAULT_WEIGHT = 2048;
+
+    // Body type of each endpoint, for reading snapshots back
+    private static final Map<String, Class<?>> BODY_TYPES = Map.of(
+        "/profile", StudentProfile.class,
+        "/attendance", AttendanceSummary.class,
+        "/results", SessionalResults.class,
+        "/timetable", TimetableWeek.class,
+        "/end-semester-results", JsonNode.class
+    );
+
+    @Value("${app.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.cache.max-weight-bytes:67108864}")
+    private long maxWeightBytes;
+
+    @Value("${app.cache.stale-seconds:600}")
+    private long staleSeconds;
+
+    @Value("${app.cache.ttl.profile-seconds:3600}")
+    private long profileTtlSeconds;
+
+    @Value("${app.cache.ttl.attendance-seconds:300}")
+    private long attendanceTtlSeconds;
+
+    @Value("${app.cache.ttl.results-seconds:900}")
+    private long resultsTtlSeconds;
+
+    @Value("${app.cache.ttl.timetable-seconds:3600}")
+    private long timetableTtlSeconds;
+
+    @Value("${app.cache.ttl.end-semester-results-seconds:3600}")
+    private long endSemResultsTtlSeconds;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private RefreshAheadScheduler refreshAhead;
+
+    @Autowired(required = false)
+    private SnapshotStore snapshotStore;
+
+    // Absent unless app.cluster.enabled
+    @Autowired(required = false)
+    private ClusterEvents clusterEvents;
+
+    // Older snapshots are not served, even as stale
+    @Value("${app.snapshot.max-age-hours:24}")
+    private long snapshotMaxAgeHours;
+
+    private Cache<CacheKey, CachedResponse> cache;
+    private Map<String, Long> ttlMillisByEndpoint;
+    private final Set<CacheKey> revalidating = ConcurrentHashMap.newKeySet();
+    private ThreadPoolExecutor revalidationExecutor;
+
+    private Counter hits;
+    private Counter staleHits;
+    private Counter misses;
+    private Counter revalidations;
+    private Counter snapshotRestores;
+    private Counter snapshotMisses;
+
+    @PostConstruct
+    void init() {
+        ttlMillisByEndpoint = Map.of(
+            "/profile", TimeUnit.SECONDS.toMillis(profileTtlSeconds),
+            "/attendance", TimeUnit.SECONDS.toMillis(attendanceTtlSeconds),
+            "/results", TimeUnit.SECONDS.toMillis(resultsTtlSeconds),
+            "/timetable", TimeUnit.SECONDS.toMillis(timetableTtlSeconds),
+            "/end-semester-results", TimeUnit.SECONDS.toMillis(endSemResultsTtlSeconds)
+        );
+
+        cache = Caffeine.newBuilder()
+            .maximumWeight(maxWeightBytes)
+            .weigher((CacheKey key, CachedResponse value) -> value.getWeight())
+            .expireAfter(new Expiry<CacheKey, CachedResponse>() {
+                @Override
+                public long expireAfterCreate(CacheKey key, CachedResponse value, long currentTime) {
+                    return TimeUnit.MILLISECONDS.toNanos(ttlMillis(key.endpoint()) + TimeUnit.SECONDS.toMillis(staleSeconds));
+                }
+
+                @Override
+                public long expireAfterUpdate(CacheKey key, CachedResponse value, long currentTime, long currentDuration) {
+                    return expireAfterCreate(key, value, currentTime);
+                }
+
+                @Override
+                public long expireAfterRead(CacheKey key, CachedResponse value, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .build();
+
+        AtomicInteger threadCount = new AtomicInteger();
+        revalidationExecutor = new ThreadPoolExecutor(
+            2, 2, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(1000),
+            runnable -> {
+                Thread thread = new Thread(runnable, "etlab-revalidate-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        );
+
+        hits = meterRegistry.counter("etlab.cache.requests", "result", "hit");
+        staleHits = meterRegistry.counter("etlab.cache.requests", "result", "stale");
+        misses = meterRegistry.counter("etlab.cache.requests", "result", "miss");
+        revalidations = meterRegistry.counter("etlab.cache.revalidations");
+        snapshotRestores = meterRegistry.counter("etlab.cache.snapshot.restores", "result", "restored");
+        snapshotMisses = meterRegistry.counter("etlab.cache.snapshot.restores", "result", "miss");
+        Gauge.builder("etlab.cache.size", cache, c -> c.estimatedSize()).register(meterRegistry);
+        Gauge.builder("etlab.cache.weight.bytes", cache,
+                c -> c.policy().eviction().map(e -> e.weightedSize().orElse(0L)).orElse(0L))
+            .register(meterRegistry);
+
+        if (clusterEvents != null) {
+            clusterEvents.subscribe(ClusterEvents.RESPONSE, event -> cache.invalidate(new CacheKey(event.username(), event.endpoint())));
+            clusterEvents.subscribe(ClusterEvents.USER, event -> forgetUser(event.username()));
+        }
+
+        logger.info("Upstream response cache enabled={}, maxWeight={} bytes, staleWindow={}s, snapshots={}",
+                    enabled, maxWeightBytes, staleSeconds, snapshotStore != null);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        revalidationExecutor.shutdownNow();
+    }
+
+    /**
+     * Return the cached body for the key, loading it synchronously on a miss.
+     * A stale entry is returned immediately and refreshed in the background.
+     */
+    public <T> T get(CacheKey key, Supplier<T> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+
+        T cached = getIfPresent(key, loader);
+        if (cached != null) {
+            return cached;
+        }
+
+        T body = loader.get();
+        put(key, body);
+        return body;
+    }
+
+    /**
+     * Non-blocking lookup: the cached body (fresh, or stale with a background revalidation
+     * using the given loader), or null on a miss. The caller is expected to load and put on a miss.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getIfPresent(CacheKey key, Supplier<T> revalidationLoader) {
+        if (!enabled) {
+            return null;
+        }
+
+        refreshAhead.recordAccess(key, () -> put(key, revalidationLoader.get()));
+        CachedResponse entry = cache.getIfPresent(key);
+        if (entry == null) {
+            entry = restoreSnapshot(key);
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+
+        if (entry.ageMillis(System.currentTimeMillis()) <= ttlMillis(key.endpoint())) {
+            hits.increment();
+        } else {
+            staleHits.increment();
+            revalidateAsync(key, revalidationLoader);
+        }
+        return (T) entry.getBody();
+    }
+
+    /**
+     * Whether a fresh entry exists, without touching the hit/miss statistics
+     */
+    public boolean contains(CacheKey key) {
+        if (!enabled) {
+            return false;
+        }
+        CachedResponse entry = cache.policy().getIfPresentQuietly(key);
+        if (entry == null) {
+            entry = restoreSnapshot(key);
+        }
+        return entry != null && entry.ageMillis(System.currentTimeMillis()) <= ttlMillis(key.endpoint());
+    }
+
+    /**
+     * Store a freshly fetched body. Null bodies are never cached.
+     */
+    public void put(CacheKey key, Object body) {
+        if (!enabled || body == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        cache.put(key, new CachedResponse(body, now, estimateWeight(body)));
+        refreshAhead.recordFetch(key, now, ttlMillis(key.endpoint()));
+        if (snapshotStore != null) {
+            snapshotStore.save(key, body, now);
+        }
+    }
+
+    /**
+     * Drop every cached document belonging to a user (logout, session invalidation)
+     */
+    public void invalidateUser(String username) {
+        forgetUser(username);
+        if (snapshotStore != null) {
+            snapshotStore.deleteUser(username);
+        }
+    }
+
+    /**
+     * Drop a user's documents from this instance only
+     */
+    private void forgetUser(String username) {
+        cache.asMap().keySet().removeIf(key -> key.username().equals(username));
+        refreshAhead.forgetUser(username);
+    }
+
+    /**
+     * Bring a persisted snapshot back into memory, keeping its original fetch time
+     */
+    private CachedResponse restoreSnapshot(CacheKey key) {
+        Class<?> type = BODY_TYPES.get(key.endpoint());
+        if (snapshotStore == null || type == null) {
+            return null;
+        }
+        SnapshotStore.Snapshot<?> snapshot = snapshotStore.load(key, type);
+        if (snapshot == null
+                || System.currentTimeMillis() - snapshot.fetchedAt() > TimeUnit.HOURS.toMillis(snapshotMaxAgeHours)) {
+            snapshotMisses.increment();
+            return null;
+        }
+        CachedResponse restored = new CachedResponse(snapshot.body(), snapshot.fetchedAt(), estimateWeight(snapshot.body()));
+        CachedResponse raced = cache.asMap().putIfAbsent(key, restored);
+        if (raced != null) {
+            return raced;
+        }
+        refreshAhead.recordFetch(key, snapshot.fetchedAt(), ttlMillis(key.endpoint()));
+        snapshotRestores.increment();
+        logger.debug("Restored {} for user {} from snapshot ({} s old)", key.endpoint(), key.username(),
+                     TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - snapshot.fetchedAt()));
+        return restored;
+    }
+
+    private <T> void revalidateAsync(CacheKey key, Supplier<T> loader) {
+        if (!revalidating.add(key)) {
+            return; // A refresh for this entry is already running
+        }
+        try {
+            revalidationExecutor.execute(() -> {
+                try {
+                    put(key, loader.get());
+                    revalidations.increment();
+                    logger.debug("Revalidated {} for user {}", key.endpoint(), key.username());
+                } catch (Exception e) {
+                    // Keep serving the stale entry until it expires
+                    logger.warn("Background revalidation of {} for user {} failed: {}",
+                                key.endpoint(), key.username(), e.getMessage());
+                } finally {
+                    revalidating.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            revalidating.remove(key);
+            logger.warn("Revalidation queue full, skipping refresh of {} for user {}", key.endpoint(), key.username());
+        }
+    }
+
+    private long ttlMillis(String endpoint) {
+        return ttlMillisByEndpoint.getOrDefault(endpoint, TimeUnit.SECONDS.toMillis(attendanceTtlSeconds));
+    }
+
+    /**
+     * Rough retained-size estimate of a response body, used as its cache weight
+     */
+    static int estimateWeight(Object body) {
+        if (body instanceof EstimatedSize sized) {
+            return sized.estimatedBytes();
+        }
+        if (body instanceof JsonNode node) {
+            return estimateNodeWeight(node);
+        }
+        return DEFAULT_WEIGHT;
+    }
+
+    private static int estimateNodeWeight(JsonNode node) {
+        int weight = 16;
+        if (node.isObject()) {
+            for (Map.Entry<String, JsonNode> field : node.properties()) {
+                weight += 48 + 2 * field.getKey().length() + estimateNodeWeight(field.getValue());
+            }
+        } else if (node.isArray()) {
+            for (JsonNode element : node) {
+                weight += 8 + estimateNodeWeight(element);
+            }
+        } else if (node.isTextual()) {
+            weight += 40 + 2 * node.textValue().length();
+        }
+        return weight;
+    }
+}
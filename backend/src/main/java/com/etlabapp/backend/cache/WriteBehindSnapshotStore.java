@@ -0,0 +1,195 @@
+package com.etlabapp.backend.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Snapshot store that never writes on the caller's thread.
+ *
+ * save() only records the body in a pending map, keeping the latest per entry, and a
+ * flusher thread serializes and writes whatever is pending every flush-ms as one batch.
+ * Reads see pending bodies first. If the pending map is full, new entries are dropped
+ * (their next fetch saves them again). A user's deletion runs before the writes of
+ * the same flush, and saves for the user are dropped until it has. Subclasses provide
+ * the storage.
+ */
+public abstract class WriteBehindSnapshotStore implements SnapshotStore {
+
+    protected final Logger logger = LoggerFactory.getLogger(getClass());
+
+    @Value("${app.snapshot.flush-ms:1000}")
+    private long flushMillis;
+
+    @Value("${app.snapshot.max-pending:10000}")
+    private int maxPending;
+
+    @Autowired
+    protected ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<CacheKey, Pending> pending = new ConcurrentHashMap<>();
+    private final Set<String> pendingDeletes = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService flusher;
+
+    private Counter written;
+    private Counter failed;
+    private Counter dropped;
+    private Timer flushTimer;
+
+    private record Pending(Object body, long fetchedAt) {}
+
+    /**
+     * A serialized snapshot to store
+     */
+    protected record StoredSnapshot(CacheKey key, byte[] body, long fetchedAt) {}
+
+    @PostConstruct
+    void start() throws Exception {
+        open();
+        written = meterRegistry.counter("etlab.snapshot.writes", "store", name(), "result", "written");
+        failed = meterRegistry.counter("etlab.snapshot.writes", "store", name(), "result", "failed");
+        dropped = meterRegistry.counter("etlab.snapshot.writes", "store", name(), "result", "dropped");
+        flushTimer = meterRegistry.timer("etlab.snapshot.flush", "store", name());
+        Gauge.builder("etlab.snapshot.pending", pending, Map::size).tag("store", name()).register(meterRegistry);
+
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "etlab-snapshot-" + name());
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+        logger.info("Snapshot store {}: write-behind every {} ms", name(), flushMillis);
+    }
+
+    @PreDestroy
+    void stop() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Whatever is still pending goes out before the storage closes
+        flush();
+        close();
+    }
+
+    @Override
+    public void save(CacheKey key, Object body, long fetchedAt) {
+        // A fetch that finishes after the user was deleted must not write their data back
+        if (pendingDeletes.contains(key.username())) {
+            return;
+        }
+        if (pending.size() >= maxPending && !pending.containsKey(key)) {
+            dropped.increment();
+            return;
+        }
+        Pending latest = new Pending(body, fetchedAt);
+        pending.put(key, latest);
+        // deleteUser() in between either cleared this entry already or is seen here
+        if (pendingDeletes.contains(key.username())) {
+            pending.remove(key, latest);
+        }
+    }
+
+    @Override
+    public <T> Snapshot<T> load(CacheKey key, Class<T> type) {
+        if (pendingDeletes.contains(key.username())) {
+            return null;
+        }
+        Pending latest = pending.get(key);
+        if (latest != null && type.isInstance(latest.body())) {
+            return new Snapshot<>(type.cast(latest.body()), latest.fetchedAt());
+        }
+        try {
+            return read(key, type);
+        } catch (Exception e) {
+            // An unreadable snapshot is just a miss
+            logger.warn("Could not read snapshot of {} for user {}: {}", key.endpoint(), key.username(), e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public void deleteUser(String username) {
+        pendingDeletes.add(username);
+        pending.keySet().removeIf(key -> key.username().equals(username));
+    }
+
+    synchronized void flush() {
+        try {
+            for (String username : List.copyOf(pendingDeletes)) {
+                delete(username);
+                pendingDeletes.remove(username);
+            }
+        } catch (Exception e) {
+            logger.warn("Snapshot delete failed, retrying on next flush: {}", e.getMessage());
+            return;
+        }
+
+        List<StoredSnapshot> batch = new ArrayList<>();
+        for (CacheKey key : List.copyOf(pending.keySet())) {
+            Pending latest = pending.remove(key);
+            if (latest == null) {
+                continue;
+            }
+            try {
+                batch.add(new StoredSnapshot(key, objectMapper.writeValueAsBytes(latest.body()), latest.fetchedAt()));
+            } catch (IOException e) {
+                failed.increment();
+                logger.warn("Could not serialize snapshot of {}: {}", key.endpoint(), e.getMessage());
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            write(batch);
+            written.increment(batch.size());
+        } catch (Exception e) {
+            // Dropped, not retried: the next fetch of each entry saves it again
+            failed.increment(batch.size());
+            logger.warn("Snapshot write of {} entries failed: {}", batch.size(), e.getMessage());
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /** Short name for logs and metric tags */
+    protected abstract String name();
+
+    protected abstract void open() throws Exception;
+
+    /** The stored snapshot of an entry read as type, or null */
+    protected abstract <T> Snapshot<T> read(CacheKey key, Class<T> type) throws Exception;
+
+    /** Store a batch, replacing any earlier snapshot of the same entries */
+    protected abstract void write(List<StoredSnapshot> batch) throws Exception;
+
+    protected abstract void delete(String username) throws Exception;
+
+    protected abstract void close();
+}
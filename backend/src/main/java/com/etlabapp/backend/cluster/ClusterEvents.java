@@ -0,0 +1,187 @@
+package com.etlabapp.backend.cluster;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Invalidation messages between the instances sharing the database (app.cluster.enabled).
+ *
+ * An event is a row in cluster_event. Every instance polls for rows written by the
+ * others since the last id it saw, every poll-ms, and hands them to the subscribers
+ * of their topic. Ids are assigned before commit, so a row may become visible after
+ * a higher one: each poll re-reads a window below the last id and skips the ids it
+ * already delivered. Rows older than retain-seconds are deleted.
+ */
+@Component
+@ConditionalOnProperty(name = "app.cluster.enabled", havingValue = "true")
+public class ClusterEvents {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterEvents.class);
+
+    // Ids re-read below the last one seen, for rows committed out of order
+    private static final long OVERLAP = 1024;
+
+    /** A session stored, renewed or removed on another instance */
+    public static final String SESSION = "session";
+    /** A response body stored on another instance */
+    public static final String RESPONSE = "response";
+    /** Everything cached for a user dropped on another instance */
+    public static final String USER = "user";
+
+    @Value("${app.cluster.poll-ms:100}")
+    private long pollMillis;
+
+    @Value("${app.cluster.retain-seconds:60}")
+    private long retainSeconds;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<String, List<Consumer<Event>>> subscribers = new ConcurrentHashMap<>();
+    // Ids delivered within the overlap window; only touched by the poller
+    private final NavigableSet<Long> delivered = new TreeSet<>();
+    private long lastSeen;
+    private long lastPrune;
+    private ScheduledExecutorService poller;
+
+    private Counter published;
+    private Counter received;
+
+    /**
+     * endpoint is only set for RESPONSE events
+     */
+    public record Event(String topic, String username, String endpoint) {}
+
+    @PostConstruct
+    void init() {
+        jdbcTemplate.execute("""
+            CREATE TABLE IF NOT EXISTS cluster_event (
+                id BIGINT AUTO_INCREMENT PRIMARY KEY,
+                node VARCHAR(36) NOT NULL,
+                topic VARCHAR(16) NOT NULL,
+                username VARCHAR(255) NOT NULL,
+                endpoint VARCHAR(64),
+                created_at BIGINT NOT NULL
+            )""");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS cluster_event_created ON cluster_event (created_at)");
+        // Only what is published from now on concerns this instance
+        Long max = jdbcTemplate.queryForObject("SELECT MAX(id) FROM cluster_event", Long.class);
+        lastSeen = max != null ? max : 0;
+        lastPrune = System.currentTimeMillis();
+
+        published = meterRegistry.counter("etlab.cluster.events", "direction", "published");
+        received = meterRegistry.counter("etlab.cluster.events", "direction", "received");
+
+        poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "etlab-cluster-events");
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller.scheduleWithFixedDelay(this::poll, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+        logger.info("Cluster events: node {}, polling every {} ms", nodeId, pollMillis);
+    }
+
+    @PreDestroy
+    void stop() {
+        poller.shutdownNow();
+    }
+
+    public void subscribe(String topic, Consumer<Event> subscriber) {
+        subscribers.computeIfAbsent(topic, t -> new CopyOnWriteArrayList<>()).add(subscriber);
+    }
+
+    public void publish(String topic, String username) {
+        publishAll(List.of(new Event(topic, username, null)));
+    }
+
+    /**
+     * Publish several events with one batch insert
+     */
+    public void publishAll(Collection<Event> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<Event> batch = List.copyOf(events);
+        jdbcTemplate.batchUpdate(
+            "INSERT INTO cluster_event (node, topic, username, endpoint, created_at) VALUES (?, ?, ?, ?, ?)",
+            batch, batch.size(), (statement, event) -> {
+                statement.setString(1, nodeId);
+                statement.setString(2, event.topic());
+                statement.setString(3, event.username());
+                statement.setString(4, event.endpoint());
+                statement.setLong(5, now);
+            });
+        published.increment(batch.size());
+    }
+
+    void poll() {
+        try {
+            List<Long> ids = new ArrayList<>();
+            List<Event> events = new ArrayList<>();
+            jdbcTemplate.query(
+                "SELECT id, topic, username, endpoint FROM cluster_event WHERE id > ? AND node <> ? ORDER BY id",
+                row -> {
+                    ids.add(row.getLong("id"));
+                    events.add(new Event(row.getString("topic"), row.getString("username"), row.getString("endpoint")));
+                },
+                lastSeen - OVERLAP, nodeId);
+
+            for (int i = 0; i < ids.size(); i++) {
+                long id = ids.get(i);
+                if (id <= lastSeen - OVERLAP || !delivered.add(id)) {
+                    continue;
+                }
+                lastSeen = Math.max(lastSeen, id);
+                received.increment();
+                deliver(events.get(i));
+            }
+            delivered.headSet(lastSeen - OVERLAP, true).clear();
+
+            long now = System.currentTimeMillis();
+            if (now - lastPrune >= TimeUnit.SECONDS.toMillis(retainSeconds)) {
+                lastPrune = now;
+                jdbcTemplate.update("DELETE FROM cluster_event WHERE created_at < ?", now - TimeUnit.SECONDS.toMillis(retainSeconds));
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Cluster event poll failed: {}", e.getMessage());
+        }
+    }
+
+    private void deliver(Event event) {
+        for (Consumer<Event> subscriber : subscribers.getOrDefault(event.topic(), List.of())) {
+            try {
+                subscriber.accept(event);
+            } catch (RuntimeException e) {
+                logger.warn("Cluster event subscriber for {} failed: {}", event.topic(), e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.etlabapp.backend.cluster;
+
+import com.etlabapp.backend.security.Sealer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Encryption keys for what the instances keep in the shared database (app.cluster.enabled).
+ *
+ * Every key is derived from app.cluster.key, which must be set to the same secret on
+ * every instance, and a random salt the first instance stores in the database for all
+ * of them. The app refuses to start without a usable app.cluster.key.
+ */
+@Component
+@ConditionalOnProperty(name = "app.cluster.enabled", havingValue = "true")
+public class ClusterKey {
+
+    private static final String SALT_SETTING = "key-salt";
+
+    @Value("${app.cluster.key:}")
+    private String secret;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private byte[] salt;
+
+    @PostConstruct
+    void init() {
+        Sealer.requireSecret(secret, "app.cluster.key (CLUSTER_KEY)");
+        jdbcTemplate.execute("""
+            CREATE TABLE IF NOT EXISTS cluster_setting (
+                name VARCHAR(64) PRIMARY KEY,
+                setting VARBINARY NOT NULL
+            )""");
+        try {
+            jdbcTemplate.update("INSERT INTO cluster_setting (name, setting) VALUES (?, ?)", SALT_SETTING, Sealer.newSalt());
+        } catch (DuplicateKeyException e) {
+            // Another instance stored it first
+        }
+        salt = jdbcTemplate.queryForObject("SELECT setting FROM cluster_setting WHERE name = ?", byte[].class, SALT_SETTING);
+    }
+
+    /**
+     * Sealer for one kind of shared data; purpose keeps the keys of different kinds apart
+     */
+    public Sealer sealer(String purpose) {
+        return new Sealer(secret, salt, purpose);
+    }
+}
@@ -0,0 +1,86 @@
+package com.etlabapp.backend.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Executors for running upstream ETLab calls concurrently.
+ *
+ * With spring.threads.virtual.enabled=true Tomcat serves requests on virtual threads
+ * and the upstream executor switches to virtual threads as well, so a request blocked
+ * on a slow ETLab response no longer holds a platform thread.
+ */
+@Configuration
+public class AsyncConfig {
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    // Upper bound on concurrently running upstream tasks in virtual-thread mode
+    @Value("${app.upstream.executor.virtual-concurrency-limit:2000}")
+    private int virtualConcurrencyLimit;
+
+    @Value("${app.upstream.executor.core-size:16}")
+    private int coreSize;
+
+    @Value("${app.upstream.executor.max-size:64}")
+    private int maxSize;
+
+    @Value("${app.upstream.executor.queue-capacity:256}")
+    private int queueCapacity;
+
+    @Value("${app.prefetch.threads:2}")
+    private int prefetchThreads;
+
+    @Value("${app.prefetch.queue-capacity:64}")
+    private int prefetchQueueCapacity;
+
+    /**
+     * Fan-out executor for request-scoped upstream work (e.g. the dashboard).
+     * When saturated the calling request thread runs the task itself rather than failing.
+     */
+    @Bean
+    public AsyncTaskExecutor upstreamExecutor() {
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("etlab-upstream-vt-");
+            executor.setVirtualThreads(true);
+            // Submitters block once the limit is reached, same back-pressure as CallerRunsPolicy
+            executor.setConcurrencyLimit(virtualConcurrencyLimit);
+            executor.setTaskDecorator(new RequestContextTaskDecorator());
+            return executor;
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(coreSize);
+        executor.setMaxPoolSize(maxSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("etlab-upstream-");
+        executor.setTaskDecorator(new RequestContextTaskDecorator());
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        return executor;
+    }
+
+    /**
+     * Small, low-priority pool for speculative upstream work (post-login prefetch, refresh-ahead).
+     * Submissions beyond the queue are rejected rather than delaying anyone.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor prefetchExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(prefetchThreads);
+        executor.setMaxPoolSize(prefetchThreads);
+        executor.setQueueCapacity(prefetchQueueCapacity);
+        executor.setThreadNamePrefix("etlab-prefetch-");
+        executor.setThreadPriority(Thread.MIN_PRIORITY);
+        executor.setDaemon(true);
+        return executor;
+    }
+}
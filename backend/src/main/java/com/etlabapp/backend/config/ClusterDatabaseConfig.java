@@ -0,0 +1,78 @@
+package com.etlabapp.backend.config;
+
+import org.h2.tools.Server;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.AbstractDependsOnBeanFactoryPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Embedded H2 server in TCP mode, so several instances can share sessions and snapshots
+ * without a separate database. One instance runs it (app.cluster.h2-server.enabled) and
+ * every instance, that one included, points spring.datasource.url at it
+ * (jdbc:h2:tcp://host:port/name).
+ *
+ * The server only serves the one database, which this instance creates locally before
+ * starting it, owned by spring.datasource.username with spring.datasource.password;
+ * clients can't create databases (no -ifNotExists). A password is required, since
+ * whoever can log in can run any SQL on the server.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.cluster.h2-server.enabled", havingValue = "true")
+public class ClusterDatabaseConfig {
+
+    @Value("${app.cluster.h2-server.port:9092}")
+    private int port;
+
+    @Value("${app.cluster.h2-server.base-dir:./data}")
+    private String baseDir;
+
+    // The name in the clients' URL: jdbc:h2:tcp://host:port/<database>
+    @Value("${app.cluster.h2-server.database:etlab}")
+    private String database;
+
+    // Off: only clients on this host may connect
+    @Value("${app.cluster.h2-server.allow-others:false}")
+    private boolean allowOthers;
+
+    @Value("${spring.datasource.username:sa}")
+    private String username;
+
+    @Value("${spring.datasource.password:}")
+    private String password;
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public Server h2TcpServer() throws SQLException {
+        if (password == null || password.isBlank()) {
+            throw new IllegalStateException("spring.datasource.password (SHARED_DB_PASSWORD) must be set to run the H2 server");
+        }
+        // Creates the database with these credentials, or fails if it exists with other ones
+        String local = "jdbc:h2:file:" + Paths.get(baseDir, database).toAbsolutePath();
+        try (Connection connection = DriverManager.getConnection(local, username, password)) {
+            connection.isValid(1);
+        }
+
+        List<String> args = new ArrayList<>(List.of("-tcpPort", String.valueOf(port), "-baseDir", baseDir));
+        if (allowOthers) {
+            args.add("-tcpAllowOthers");
+        }
+        return Server.createTcpServer(args.toArray(String[]::new));
+    }
+
+    /**
+     * The local DataSource may connect to the server, so it waits for it
+     */
+    @Bean
+    public static AbstractDependsOnBeanFactoryPostProcessor dataSourceDependsOnH2Server() {
+        return new AbstractDependsOnBeanFactoryPostProcessor(DataSource.class, "h2TcpServer") {};
+    }
+}
@@ -3,9 +3,11 @@ package com.etlabapp.backend.config;
 import com.etlabapp.backend.exception.AuthenticationException;
 import com.etlabapp.backend.exception.DataProcessingException;
 import com.etlabapp.backend.exception.EtlabApiException;
+import com.etlabapp.backend.exception.UpstreamUnavailableException;
 import com.etlabapp.backend.model.ErrorResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -14,6 +16,7 @@ import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.AsyncRequestNotUsableException;
 
 /**
  * Global exception handler for all controllers
@@ -24,6 +27,32 @@ public class GlobalExceptionHandler {
 
     private static final Logger logger = LoggerFactory.getLogger(GlobalExceptionHandler.class);
 
+    /**
+     * Handle fast-fails from an open circuit or full bulkhead
+     */
+    @ExceptionHandler(UpstreamUnavailableException.class)
+    public ResponseEntity<ErrorResponse> handleUpstreamUnavailableException(UpstreamUnavailableException ex, WebRequest request) {
+        logger.warn("ETLab unavailable: {} - retry after {}s", ex.getTechnicalDetails(), ex.getRetryAfterSeconds());
+
+        ErrorResponse errorResponse = new ErrorResponse(
+            ex.getUserMessage(),
+            getRequestPath(request),
+            HttpStatus.SERVICE_UNAVAILABLE.value()
+        );
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+            .body(errorResponse);
+    }
+
+    /**
+     * The client went away (typically a closed update stream); there is no one to answer
+     */
+    @ExceptionHandler(AsyncRequestNotUsableException.class)
+    public void handleClientDisconnect(AsyncRequestNotUsableException ex, WebRequest request) {
+        logger.debug("Client disconnected from {}: {}", getRequestPath(request), ex.getMessage());
+    }
+
     /**
      * Handle ETLab API specific exceptions
      */
@@ -0,0 +1,119 @@
+package com.etlabapp.backend.config;
+
+import com.etlabapp.backend.upstream.UpstreamGuard;
+import com.etlabapp.backend.upstream.UpstreamGuardInterceptor;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.ssl.DefaultClientTlsStrategy;
+import org.apache.hc.core5.ssl.SSLContexts;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * HTTP client used for all calls to the ETLab API.
+ *
+ * One pooled, keep-alive Apache HttpClient is shared by every upstream call so
+ * logins and /app/* requests reuse open TCP/TLS connections instead of paying a
+ * fresh handshake each time. The client negotiates gzip and decompresses the
+ * response stream on the fly.
+ */
+@Configuration
+public class HttpClientConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(HttpClientConfig.class);
+
+    @Value("${app.etlab.http.max-total:100}")
+    private int maxTotal;
+
+    @Value("${app.etlab.http.max-per-route:50}")
+    private int maxPerRoute;
+
+    @Value("${app.etlab.http.connect-timeout-seconds:10}")
+    private int connectTimeoutSeconds;
+
+    @Value("${app.etlab.http.read-timeout-seconds:20}")
+    private int readTimeoutSeconds;
+
+    @Value("${app.etlab.http.pool-timeout-seconds:5}")
+    private int poolTimeoutSeconds;
+
+    @Value("${app.etlab.http.idle-evict-seconds:30}")
+    private int idleEvictSeconds;
+
+    @Value("${app.etlab.http.connection-ttl-seconds:300}")
+    private int connectionTtlSeconds;
+
+    @Bean
+    public PoolingHttpClientConnectionManager etlabConnectionManager() {
+        ConnectionConfig connectionConfig = ConnectionConfig.custom()
+            .setConnectTimeout(Timeout.ofSeconds(connectTimeoutSeconds))
+            .setSocketTimeout(Timeout.ofSeconds(readTimeoutSeconds))
+            // Cheap staleness check before handing out a connection that sat idle
+            .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+            .setTimeToLive(TimeValue.ofSeconds(connectionTtlSeconds))
+            .build();
+
+        return PoolingHttpClientConnectionManagerBuilder.create()
+            // A single SSLContext keeps one JSSE session cache, so new connections resume TLS sessions
+            .setTlsSocketStrategy(new DefaultClientTlsStrategy(SSLContexts.createSystemDefault()))
+            .setMaxConnTotal(maxTotal)
+            .setMaxConnPerRoute(maxPerRoute)
+            .setDefaultConnectionConfig(connectionConfig)
+            .build();
+    }
+
+    @Bean
+    public CloseableHttpClient etlabHttpClient(PoolingHttpClientConnectionManager etlabConnectionManager) {
+        RequestConfig requestConfig = RequestConfig.custom()
+            .setConnectionRequestTimeout(Timeout.ofSeconds(poolTimeoutSeconds))
+            .setResponseTimeout(Timeout.ofSeconds(readTimeoutSeconds))
+            .build();
+
+        logger.info("ETLab HTTP client: maxTotal={}, maxPerRoute={}, connectTimeout={}s, readTimeout={}s",
+                    maxTotal, maxPerRoute, connectTimeoutSeconds, readTimeoutSeconds);
+
+        // Content compression is on by default: Accept-Encoding gzip/deflate is sent and
+        // the entity is wrapped in a streaming decompressor.
+        return HttpClients.custom()
+            .setConnectionManager(etlabConnectionManager)
+            .setDefaultRequestConfig(requestConfig)
+            // Connections are not bound to a user principal, so any thread may reuse any of them
+            .disableConnectionState()
+            .evictExpiredConnections()
+            .evictIdleConnections(TimeValue.ofSeconds(idleEvictSeconds))
+            .build();
+    }
+
+    @Bean
+    public RestTemplate etlabRestTemplate(RestTemplateBuilder builder, CloseableHttpClient etlabHttpClient,
+                                          UpstreamGuard upstreamGuard) {
+        return builder
+            .requestFactory(() -> new HttpComponentsClientHttpRequestFactory(etlabHttpClient))
+            // Circuit breaker + bulkhead per ETLab endpoint, adaptive limit overall
+            .additionalInterceptors(new UpstreamGuardInterceptor(upstreamGuard))
+            .build();
+    }
+
+    /**
+     * Export pool usage (leased, available, pending, max) as httpcomponents.httpclient.pool.* metrics.
+     * Boot binds MeterBinder beans to the registry automatically.
+     */
+    @Bean
+    public PoolingHttpClientConnectionManagerMetricsBinder etlabConnectionPoolMetrics(
+            PoolingHttpClientConnectionManager etlabConnectionManager) {
+        return new PoolingHttpClientConnectionManagerMetricsBinder(etlabConnectionManager, "etlab");
+    }
+}
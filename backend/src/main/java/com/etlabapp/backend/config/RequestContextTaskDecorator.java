@@ -0,0 +1,43 @@
+package com.etlabapp.backend.config;
+
+import org.slf4j.MDC;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.Map;
+
+/**
+ * Carries the submitting thread's SecurityContext and MDC into tasks run on our executors,
+ * so service code that reads SecurityContextHolder works off the request thread.
+ */
+public class RequestContextTaskDecorator implements TaskDecorator {
+
+    @Override
+    public Runnable decorate(Runnable runnable) {
+        SecurityContext context = SecurityContextHolder.createEmptyContext();
+        context.setAuthentication(SecurityContextHolder.getContext().getAuthentication());
+        Map<String, String> mdc = MDC.getCopyOfContextMap();
+
+        return () -> {
+            SecurityContext previousContext = SecurityContextHolder.getContext();
+            Map<String, String> previousMdc = MDC.getCopyOfContextMap();
+            try {
+                SecurityContextHolder.setContext(context);
+                setMdc(mdc);
+                runnable.run();
+            } finally {
+                SecurityContextHolder.setContext(previousContext);
+                setMdc(previousMdc);
+            }
+        };
+    }
+
+    private static void setMdc(Map<String, String> contextMap) {
+        if (contextMap == null) {
+            MDC.clear();
+        } else {
+            MDC.setContextMap(contextMap);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.etlabapp.backend.config;
 
 import com.etlabapp.backend.security.JwtAuthenticationFilter;
+import jakarta.servlet.DispatcherType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -14,6 +15,12 @@ import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.header.writers.CacheControlHeadersWriter;
+import org.springframework.security.web.header.writers.DelegatingRequestMatcherHeaderWriter;
+import org.springframework.security.web.servlet.util.matcher.PathPatternRequestMatcher;
+import org.springframework.security.web.util.matcher.NegatedRequestMatcher;
+import org.springframework.security.web.util.matcher.OrRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
@@ -23,6 +30,10 @@ import java.util.List;
 @Configuration
 public class SecurityConfig {
 
+    // Read endpoints that set their own ETag / Cache-Control (see ConditionalResponseWriter)
+    private static final List<String> CONDITIONAL_READ_PATHS = List.of(
+        "/app/profile", "/app/attendance", "/app/results", "/app/timetable", "/app/end-sem-results", "/app/dashboard");
+
     @Autowired
     private JwtAuthenticationFilter jwtAuthenticationFilter;
 
@@ -32,9 +43,13 @@ public class SecurityConfig {
     @Value("${cors.allowed-methods:GET,POST,PUT,DELETE,OPTIONS}")
     private List<String> allowedMethods;
 
-    @Value("${cors.allowed-headers:Authorization,Content-Type}")
+    @Value("${cors.allowed-headers:Authorization,Content-Type,If-None-Match}")
     private List<String> allowedHeaders;
 
+    // Response headers browser clients may read (ETag for conditional requests)
+    @Value("${cors.exposed-headers:ETag}")
+    private List<String> exposedHeaders;
+
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         http
@@ -42,10 +57,18 @@ public class SecurityConfig {
             .cors(cors -> cors.configurationSource(corsConfigurationSource()))
             // disable CSRF for APIs
             .csrf(csrf -> csrf.disable())
+            // no-store everywhere except the cacheable reads; async responses are written after these headers
+            .headers(headers -> headers
+                .cacheControl(cache -> cache.disable())
+                .addHeaderWriter(new DelegatingRequestMatcherHeaderWriter(
+                    new NegatedRequestMatcher(conditionalReads()), new CacheControlHeadersWriter()))
+            )
             // stateless sessions
             .sessionManagement(sess -> sess.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
             // authorization rules
             .authorizeHttpRequests(auth -> auth
+                // async /app responses were already authorized on the original dispatch
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                 // health and preflight
                 .requestMatchers("/health").permitAll()
                 .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
@@ -72,6 +95,13 @@ public class SecurityConfig {
         return http.build();
     }
 
+    private static RequestMatcher conditionalReads() {
+        PathPatternRequestMatcher.Builder paths = PathPatternRequestMatcher.withDefaults();
+        return new OrRequestMatcher(CONDITIONAL_READ_PATHS.stream()
+            .map(path -> (RequestMatcher) paths.matcher(HttpMethod.GET, path))
+            .toList());
+    }
+
     // CORS from properties/env
     @Bean
     CorsConfigurationSource corsConfigurationSource() {
@@ -80,6 +110,7 @@ public class SecurityConfig {
         cfg.setAllowedOriginPatterns(allowedOrigins);
         cfg.setAllowedMethods(allowedMethods);
         cfg.setAllowedHeaders(allowedHeaders);
+        cfg.setExposedHeaders(exposedHeaders);
         // if using "*" origins, keep credentials disabled
         cfg.setAllowCredentials(false);
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
@@ -1,27 +1,33 @@
 package com.etlabapp.backend.controller;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.etlabapp.backend.model.EtlabLogin;
 import com.etlabapp.backend.model.LoginRequest;
-import com.etlabapp.backend.model.StudentProfile;
 import com.etlabapp.backend.model.TokenResponse;
 import com.etlabapp.backend.security.JwtUtil;
 import com.etlabapp.backend.service.EtlabApiService;
+import com.etlabapp.backend.service.ConditionalResponseWriter;
+import com.etlabapp.backend.service.ResponseTransformer;
 import com.etlabapp.backend.exception.AuthenticationException;  // ✅ ADD THIS
 import com.etlabapp.backend.exception.EtlabApiException;          // ✅ ADD THIS TOO
+import com.etlabapp.backend.exception.UpstreamUnavailableException;
 
 @RestController
 @RequestMapping("/app")
@@ -34,6 +40,12 @@ public class AppController {
 
     @Autowired
     private JwtUtil jwtUtil;
+
+    @Autowired
+    private ResponseTransformer responseTransformer;
+
+    @Autowired
+    private ConditionalResponseWriter responseWriter;
         
     @PostMapping("/login")
     public ResponseEntity<?> login(@RequestBody LoginRequest request) {
@@ -48,8 +60,8 @@ public class AppController {
                 ));
             }
             
-            // Check for existing valid token first
-            String existingToken = etlabApiService.getValidTokenForUser(request.getUsername());
+            // Reuse the current session's token, but only for the password it was created with
+            String existingToken = etlabApiService.getValidTokenForUser(request.getUsername(), request.getPassword());
             
             if (existingToken != null && jwtUtil.isTokenValid(existingToken)) {
                 TokenResponse tokenResponse = new TokenResponse(
@@ -64,14 +76,20 @@ public class AppController {
             }
             
             // Authenticate with ETLab - THIS WILL THROW AuthenticationException FOR WRONG CREDENTIALS
-            String etlabToken = etlabApiService.authenticateWithETLab(request.getUsername(), request.getPassword());
+            EtlabLogin etlabLogin = etlabApiService.authenticateWithETLab(request.getUsername(), request.getPassword());
+            String etlabToken = etlabLogin.getEtlabToken();
             
             if (etlabToken != null) {
-                // Generate JWT token ONLY after successful ETLab auth
-                String jwtToken = jwtUtil.generateToken(request.getUsername());
+                // Generate JWT token ONLY after successful ETLab auth; in stateless mode it carries the ETLab session
+                String jwtToken = jwtUtil.isStateless()
+                    ? jwtUtil.generateSessionToken(request.getUsername(), etlabToken, request.getPassword())
+                    : jwtUtil.generateToken(request.getUsername());
                 
-                // Create session with the login username
-                etlabApiService.createUserSession(request.getUsername(), etlabToken, request.getPassword(), jwtToken);
+                // Create session with the login username, keeping the profile fetched during validation
+                etlabApiService.createUserSession(request.getUsername(), etlabToken, request.getPassword(), jwtToken,
+                                                  etlabLogin.getProfile());
+                // Warm the screens the app opens next
+                etlabApiService.prefetchUserData(request.getUsername());
                 
                 TokenResponse tokenResponse = new TokenResponse(
                     jwtToken,
@@ -96,6 +114,9 @@ public class AppController {
                 "error", "Invalid username or password",
                 "message", "Please check your credentials and try again"
             ));
+        } catch (UpstreamUnavailableException e) {
+            // Fast-fail: GlobalExceptionHandler answers 503 with Retry-After
+            throw e;
         } catch (EtlabApiException e) {
             logger.error("ETLab API error for user {}: {}", request.getUsername(), e.getMessage());
             return ResponseEntity.status(500).body(Map.of(
@@ -113,36 +134,27 @@ public class AppController {
 
 
     @GetMapping("/profile")
-    public ResponseEntity<?> getProfile() {
-        try {
-            // Get authenticated user from SecurityContext (automatically set by JWT filter)
-            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-            if (authentication == null || !authentication.isAuthenticated()) {
-                return ResponseEntity.status(401).body(Map.of("error", "Authentication required"));
-            }
-
-            // The service will automatically get the current user from SecurityContext
-            StudentProfile profile = etlabApiService.getStudentProfile();
-
-            Map<String, String> result = new HashMap<>();
-            
-            // Add null safety checks
-            if (profile.getPersonalInfo() != null) {
-                result.put("name", profile.getPersonalInfo().getName());
-            }
-            
-            if (profile.getAdditionalInfo() != null) {
-                result.put("mobileNumber", profile.getAdditionalInfo().getStudentMobileNo());
-            }
-            
-            if (profile.getAcademicInfo() != null) {
-                result.put("srNumber", profile.getAcademicInfo().getSrNumber());
-                result.put("universityRegNo", profile.getAcademicInfo().getUniversityRegNo());
-            }
-
-            return ResponseEntity.ok(result);
-        } catch (Exception e) {
-            return ResponseEntity.status(500).body(Map.of("error", "Failed to fetch profile: " + e.getMessage()));
+    public CompletableFuture<ResponseEntity<?>> getProfile(@RequestHeader HttpHeaders requestHeaders) {
+        // Get authenticated user from SecurityContext (automatically set by JWT filter)
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(401).body(Map.of("error", "Authentication required")));
         }
+
+        // The service resolves the current user on this thread, then completes off it
+        return etlabApiService.getStudentProfileAsync()
+            .<ResponseEntity<?>>thenApply(profile -> responseWriter.write(
+                authentication.getName(), "/profile", profile, responseTransformer::transformProfile, requestHeaders))
+            .exceptionally(error -> {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                if (cause instanceof UpstreamUnavailableException unavailable) {
+                    throw unavailable;
+                }
+                if (cause instanceof AuthenticationException) {
+                    // Session expired or evicted: the app logs in again
+                    return ResponseEntity.status(401).body(Map.of("error", "Authentication required: " + cause.getMessage()));
+                }
+                return ResponseEntity.status(500).body(Map.of("error", "Failed to fetch profile: " + cause.getMessage()));
+            });
     }
 }
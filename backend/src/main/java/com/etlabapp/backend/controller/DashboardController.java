@@ -0,0 +1,152 @@
+package com.etlabapp.backend.controller;
+
+import com.etlabapp.backend.exception.AuthenticationException;
+import com.etlabapp.backend.exception.EtlabApiException;
+import com.etlabapp.backend.exception.UpstreamUnavailableException;
+import com.etlabapp.backend.service.EtlabApiService;
+import com.etlabapp.backend.service.ConditionalResponseWriter;
+import com.etlabapp.backend.service.ResponseTransformer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Aggregated home screen data: fetches every section concurrently and reports
+ * a per-section status so one failing upstream call doesn't fail the whole screen.
+ */
+@RestController
+@RequestMapping("/app")
+public class DashboardController {
+
+    private static final Logger logger = LoggerFactory.getLogger(DashboardController.class);
+
+    @Autowired
+    private EtlabApiService etlabApiService;
+
+    @Autowired
+    private ResponseTransformer responseTransformer;
+
+    @Autowired
+    private ConditionalResponseWriter responseWriter;
+
+    @Value("${app.dashboard.section-timeout-seconds:25}")
+    private long sectionTimeoutSeconds;
+
+    @GetMapping("/dashboard")
+    public CompletableFuture<ResponseEntity<?>> getDashboard(@RequestHeader HttpHeaders requestHeaders) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(401).body("Unauthorized: Valid JWT token required"));
+        }
+
+        String username = authentication.getName();
+        logger.info("Fetching dashboard for authenticated user: {}", username);
+
+        // The async getters resolve the user here, on the request thread
+        Map<String, CompletableFuture<Object>> sections = new LinkedHashMap<>();
+        sections.put("profile", section(etlabApiService.getStudentProfileAsync(),
+            profile -> responseTransformer.transformProfile(profile)));
+        sections.put("attendance", section(etlabApiService.getAttendanceAsync(),
+            data -> responseTransformer.transformAttendance(requireData(data, "attendance"))));
+        sections.put("results", section(etlabApiService.getResultsAsync(),
+            data -> responseTransformer.transformResults(requireData(data, "results"))));
+        sections.put("timetable", section(etlabApiService.getTimetableAsync(),
+            data -> responseTransformer.cleanAndNormalizeTimetable(requireData(data, "timetable"))));
+        sections.put("endSemResults", section(etlabApiService.getEndSemResultsAsync(),
+            data -> responseTransformer.mergeEndSemResultsWithGrades(requireData(data, "end semester results"))));
+
+        return CompletableFuture.allOf(sections.values().toArray(new CompletableFuture<?>[0]))
+            .handle((ignored, error) -> buildResponse(username, sections, requestHeaders));
+    }
+
+    private ResponseEntity<?> buildResponse(String username, Map<String, CompletableFuture<Object>> sections,
+                                          HttpHeaders requestHeaders) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        int failed = 0;
+        int authFailures = 0;
+        UpstreamUnavailableException unavailable = null;
+        int unavailableFailures = 0;
+
+        for (Map.Entry<String, CompletableFuture<Object>> section : sections.entrySet()) {
+            Map<String, Object> sectionResult = new LinkedHashMap<>();
+            try {
+                Object data = section.getValue().join();
+                sectionResult.put("status", "ok");
+                sectionResult.put("data", data);
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                failed++;
+                if (cause instanceof AuthenticationException) {
+                    authFailures++;
+                }
+                if (cause instanceof UpstreamUnavailableException circuitOpen) {
+                    unavailable = circuitOpen;
+                    unavailableFailures++;
+                }
+                sectionResult.put("status", "error");
+                sectionResult.put("message", describeFailure(cause));
+                logger.warn("Dashboard section {} failed for user {}: {}", section.getKey(), username, cause.getMessage());
+            }
+            response.put(section.getKey(), sectionResult);
+        }
+
+        // Nothing can be served without an ETLab session
+        if (authFailures == sections.size()) {
+            return ResponseEntity.status(401).body("Authentication required: Please login again");
+        }
+
+        // ETLab is being shed entirely: let GlobalExceptionHandler answer 503 with Retry-After
+        if (unavailableFailures == sections.size()) {
+            throw unavailable;
+        }
+
+        response.put("complete", failed == 0);
+        logger.info("Served dashboard for user {} ({} of {} sections ok)", username, sections.size() - failed, sections.size());
+        // A partial dashboard must not be reused without asking again
+        CacheControl cacheControl = failed == 0 ? responseWriter.cacheControl("/dashboard") : CacheControl.noCache().cachePrivate();
+        return responseWriter.write("/dashboard", response, requestHeaders, cacheControl);
+    }
+
+    private <T> CompletableFuture<Object> section(CompletableFuture<T> fetch, Function<T, Object> transform) {
+        return fetch.thenApply(transform)
+            .orTimeout(sectionTimeoutSeconds, TimeUnit.SECONDS);
+    }
+
+    private <T> T requireData(T data, String section) {
+        if (data == null) {
+            throw new EtlabApiException("Failed to fetch " + section + " from external API");
+        }
+        return data;
+    }
+
+    private String describeFailure(Throwable cause) {
+        if (cause instanceof EtlabApiException apiException) {
+            return apiException.getUserMessage();
+        }
+        if (cause instanceof AuthenticationException) {
+            return "Authentication required: " + cause.getMessage();
+        }
+        if (cause instanceof TimeoutException) {
+            return "Timed out waiting for external API";
+        }
+        return "Internal server error: " + cause.getMessage();
+    }
+}
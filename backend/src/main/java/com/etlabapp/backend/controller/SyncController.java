@@ -0,0 +1,119 @@
+package com.etlabapp.backend.controller;
+
+import com.etlabapp.backend.exception.AuthenticationException;
+import com.etlabapp.backend.exception.EtlabApiException;
+import com.etlabapp.backend.exception.UpstreamUnavailableException;
+import com.etlabapp.backend.service.DeltaSyncService;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Delta sync: the client sends the version it holds of each resource and gets back,
+ * per resource, "unchanged", a JSON Patch from its version, or the full document.
+ */
+@RestController
+@RequestMapping("/app")
+public class SyncController {
+
+    private static final Logger logger = LoggerFactory.getLogger(SyncController.class);
+
+    @Autowired
+    private DeltaSyncService deltaSyncService;
+
+    @Value("${app.dashboard.section-timeout-seconds:25}")
+    private long sectionTimeoutSeconds;
+
+    /**
+     * Body maps resource name to the held version (an ETag from the read endpoints,
+     * or null if the client has nothing). An empty body syncs every resource.
+     */
+    @PostMapping("/sync")
+    public CompletableFuture<ResponseEntity<?>> sync(@RequestBody(required = false) Map<String, String> versions) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(401).body("Unauthorized: Valid JWT token required"));
+        }
+
+        String username = authentication.getName();
+        Map<String, String> held = new LinkedHashMap<>();
+        if (versions == null || versions.isEmpty()) {
+            DeltaSyncService.RESOURCES.forEach(resource -> held.put(resource, null));
+        } else {
+            held.putAll(versions);
+        }
+        logger.info("Syncing {} resources for authenticated user: {}", held.size(), username);
+
+        // The async getters resolve the user here, on the request thread
+        Map<String, CompletableFuture<ObjectNode>> entries = new LinkedHashMap<>();
+        held.forEach((resource, version) -> entries.put(resource,
+            deltaSyncService.sync(username, resource, version).orTimeout(sectionTimeoutSeconds, TimeUnit.SECONDS)));
+
+        return CompletableFuture.allOf(entries.values().toArray(new CompletableFuture<?>[0]))
+            .handle((ignored, error) -> buildResponse(username, entries));
+    }
+
+    private ResponseEntity<?> buildResponse(String username, Map<String, CompletableFuture<ObjectNode>> entries) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        int authFailures = 0;
+        UpstreamUnavailableException unavailable = null;
+        int unavailableFailures = 0;
+
+        for (Map.Entry<String, CompletableFuture<ObjectNode>> entry : entries.entrySet()) {
+            try {
+                response.put(entry.getKey(), entry.getValue().join());
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                if (cause instanceof AuthenticationException) {
+                    authFailures++;
+                }
+                if (cause instanceof UpstreamUnavailableException circuitOpen) {
+                    unavailable = circuitOpen;
+                    unavailableFailures++;
+                }
+                Map<String, Object> failure = new LinkedHashMap<>();
+                failure.put("status", "error");
+                failure.put("message", describeFailure(cause));
+                response.put(entry.getKey(), failure);
+                logger.warn("Sync of {} failed for user {}: {}", entry.getKey(), username, cause.getMessage());
+            }
+        }
+
+        if (authFailures == entries.size()) {
+            return ResponseEntity.status(401).body("Authentication required: Please login again");
+        }
+        if (unavailableFailures == entries.size()) {
+            throw unavailable;
+        }
+        return ResponseEntity.ok(response);
+    }
+
+    private String describeFailure(Throwable cause) {
+        if (cause instanceof EtlabApiException apiException) {
+            return apiException.getUserMessage();
+        }
+        if (cause instanceof AuthenticationException) {
+            return "Authentication required: " + cause.getMessage();
+        }
+        if (cause instanceof TimeoutException) {
+            return "Timed out waiting for external API";
+        }
+        return "Internal server error: " + cause.getMessage();
+    }
+}
@@ -0,0 +1,48 @@
+package com.etlabapp.backend.controller;
+
+import com.etlabapp.backend.service.UpdateStreamService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Server-Sent Events stream of attendance, results and end semester results changes
+ */
+@RestController
+@RequestMapping("/app")
+public class UpdateStreamController {
+
+    private static final Logger logger = LoggerFactory.getLogger(UpdateStreamController.class);
+
+    @Autowired
+    private UpdateStreamService updateStreamService;
+
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<?> stream(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()) {
+            return ResponseEntity.status(401).body("Unauthorized: Valid JWT token required");
+        }
+        if (!updateStreamService.isEnabled()) {
+            return ResponseEntity.status(404).body("Update stream is disabled");
+        }
+        if (!updateStreamService.hasCapacity()) {
+            logger.warn("Update stream refused for user {}: connection limit reached", authentication.getName());
+            return ResponseEntity.status(503).header(HttpHeaders.RETRY_AFTER, "30").body("Too many open streams");
+        }
+
+        return ResponseEntity.ok()
+            // Reverse proxies must pass events through as they are written
+            .header("X-Accel-Buffering", "no")
+            .body(updateStreamService.subscribe(authentication.getName(), lastEventId));
+    }
+}
@@ -0,0 +1,17 @@
+package com.etlabapp.backend.exception;
+
+/**
+ * Fast-fail raised instead of calling ETLab when its circuit is open or its bulkhead is full
+ */
+public class UpstreamUnavailableException extends EtlabApiException {
+    private final long retryAfterSeconds;
+
+    public UpstreamUnavailableException(String technicalDetails, long retryAfterSeconds) {
+        super("ETLab is temporarily unavailable. Please try again shortly.", technicalDetails);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,166 @@
+package com.etlabapp.backend.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The fields of ETLab's attendance document the app displays: per subject percentage
+ * and hours, plus the summary. Parsed straight from the response stream, and written
+ * back in the same shape (only these fields) for the snapshot store.
+ */
+@JsonDeserialize(using = AttendanceSummary.Deserializer.class)
+@JsonSerialize(using = AttendanceSummary.Serializer.class)
+public class AttendanceSummary implements EstimatedSize {
+
+    private final Map<String, Subject> subjects;
+    private final String rollNo;
+    private final String totalHours;
+    private final String totalPresentHours;
+    private final String totalPercentage;
+    private final String universityRegNo;
+    private final String name;
+    private final int estimatedBytes;
+
+    public AttendanceSummary(Map<String, Subject> subjects, String rollNo, String totalHours, String totalPresentHours,
+                             String totalPercentage, String universityRegNo, String name) {
+        this.subjects = Collections.unmodifiableMap(subjects);
+        this.rollNo = rollNo;
+        this.totalHours = totalHours;
+        this.totalPresentHours = totalPresentHours;
+        this.totalPercentage = totalPercentage;
+        this.universityRegNo = universityRegNo;
+        this.name = name;
+        int bytes = 64 + StreamingJson.textBytes(rollNo) + StreamingJson.textBytes(totalHours)
+            + StreamingJson.textBytes(totalPresentHours) + StreamingJson.textBytes(totalPercentage)
+            + StreamingJson.textBytes(universityRegNo) + StreamingJson.textBytes(name);
+        for (Map.Entry<String, Subject> subject : subjects.entrySet()) {
+            bytes += StreamingJson.entryBytes(subject.getKey()) + subject.getValue().estimatedBytes();
+        }
+        this.estimatedBytes = bytes;
+    }
+
+    /** Subjects by code, in document order */
+    public Map<String, Subject> getSubjects() { return subjects; }
+    public String getRollNo() { return rollNo; }
+    public String getTotalHours() { return totalHours; }
+    public String getTotalPresentHours() { return totalPresentHours; }
+    public String getTotalPercentage() { return totalPercentage; }
+    public String getUniversityRegNo() { return universityRegNo; }
+    public String getName() { return name; }
+
+    @Override
+    public int estimatedBytes() { return estimatedBytes; }
+
+    public static class Subject {
+        private final String attendancePercentage;
+        private final String presentHours;
+        private final String totalHours;
+
+        public Subject(String attendancePercentage, String presentHours, String totalHours) {
+            this.attendancePercentage = attendancePercentage;
+            this.presentHours = presentHours;
+            this.totalHours = totalHours;
+        }
+
+        public String getAttendancePercentage() { return attendancePercentage; }
+        public String getPresentHours() { return presentHours; }
+        public String getTotalHours() { return totalHours; }
+
+        int estimatedBytes() {
+            return 24 + StreamingJson.textBytes(attendancePercentage) + StreamingJson.textBytes(presentHours)
+                + StreamingJson.textBytes(totalHours);
+        }
+    }
+
+    /**
+     * Top-level object fields are either summary fields or subject codes mapping to an object
+     */
+    static class Deserializer extends StdDeserializer<AttendanceSummary> {
+
+        Deserializer() {
+            super(AttendanceSummary.class);
+        }
+
+        @Override
+        public AttendanceSummary deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            Map<String, Subject> subjects = new LinkedHashMap<>();
+            String[] summary = new String[6];
+
+            StreamingJson.readObject(parser, field -> {
+                switch (field) {
+                    case "roll_no" -> summary[0] = StreamingJson.readText(parser);
+                    case "total_hours" -> summary[1] = StreamingJson.readText(parser);
+                    case "total_present_hours" -> summary[2] = StreamingJson.readText(parser);
+                    case "total_percentage" -> summary[3] = StreamingJson.readText(parser);
+                    case "university_reg_no" -> summary[4] = StreamingJson.readText(parser);
+                    case "name" -> summary[5] = StreamingJson.readText(parser);
+                    case "note" -> {
+                        return false;
+                    }
+                    default -> {
+                        if (!parser.isExpectedStartObjectToken()) {
+                            return false;
+                        }
+                        subjects.put(field, readSubject(parser));
+                    }
+                }
+                return true;
+            });
+
+            return new AttendanceSummary(subjects, summary[0], summary[1], summary[2], summary[3], summary[4], summary[5]);
+        }
+
+        private Subject readSubject(JsonParser parser) throws IOException {
+            String[] values = new String[3];
+            StreamingJson.readObject(parser, field -> {
+                switch (field) {
+                    case "attendance_percentage" -> values[0] = StreamingJson.readText(parser);
+                    case "present_hours" -> values[1] = StreamingJson.readText(parser);
+                    case "total_hours" -> values[2] = StreamingJson.readText(parser);
+                    default -> {
+                        return false;
+                    }
+                }
+                return true;
+            });
+            return new Subject(values[0], values[1], values[2]);
+        }
+    }
+
+    static class Serializer extends StdSerializer<AttendanceSummary> {
+
+        Serializer() {
+            super(AttendanceSummary.class);
+        }
+
+        @Override
+        public void serialize(AttendanceSummary value, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeStartObject();
+            for (Map.Entry<String, Subject> subject : value.subjects.entrySet()) {
+                generator.writeObjectFieldStart(subject.getKey());
+                StreamingJson.writeText(generator, "attendance_percentage", subject.getValue().attendancePercentage);
+                StreamingJson.writeText(generator, "present_hours", subject.getValue().presentHours);
+                StreamingJson.writeText(generator, "total_hours", subject.getValue().totalHours);
+                generator.writeEndObject();
+            }
+            StreamingJson.writeText(generator, "roll_no", value.rollNo);
+            StreamingJson.writeText(generator, "total_hours", value.totalHours);
+            StreamingJson.writeText(generator, "total_present_hours", value.totalPresentHours);
+            StreamingJson.writeText(generator, "total_percentage", value.totalPercentage);
+            StreamingJson.writeText(generator, "university_reg_no", value.universityRegNo);
+            StreamingJson.writeText(generator, "name", value.name);
+            generator.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.etlabapp.backend.model;
+
+/**
+ * A parsed response that knows roughly how much heap it retains, so caches can weigh
+ * it without walking it
+ */
+public interface EstimatedSize {
+
+    /**
+     * Rough retained size in bytes, computed once when the object is built
+     */
+    int estimatedBytes();
+}
@@ -0,0 +1,17 @@
+package com.etlabapp.backend.model;
+
+/**
+ * Result of a validated ETLab login: the token and the profile fetched while validating it
+ */
+public class EtlabLogin {
+    private final String etlabToken;
+    private final StudentProfile profile;
+
+    public EtlabLogin(String etlabToken, StudentProfile profile) {
+        this.etlabToken = etlabToken;
+        this.profile = profile;
+    }
+
+    public String getEtlabToken() { return etlabToken; }
+    public StudentProfile getProfile() { return profile; }
+}
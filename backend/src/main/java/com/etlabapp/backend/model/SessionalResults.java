@@ -0,0 +1,128 @@
+package com.etlabapp.backend.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The sessional_exams of ETLab's results document, parsed straight from the response
+ * stream. The rest of the document (full result history, other exam types) is skipped.
+ * Written back as a results document holding only sessional_exams.
+ */
+@JsonDeserialize(using = SessionalResults.Deserializer.class)
+@JsonSerialize(using = SessionalResults.Serializer.class)
+public class SessionalResults implements EstimatedSize {
+
+    // Null when the document had no sessional_exams array
+    private final List<SessionalExam> sessionalExams;
+    private final int estimatedBytes;
+
+    public SessionalResults(List<SessionalExam> sessionalExams) {
+        this.sessionalExams = sessionalExams == null ? null : Collections.unmodifiableList(sessionalExams);
+        int bytes = 32;
+        if (sessionalExams != null) {
+            bytes += 40;
+            for (SessionalExam exam : sessionalExams) {
+                bytes += 8 + 40 + StreamingJson.textBytes(exam.getSubjectName()) + StreamingJson.textBytes(exam.getSubjectCode())
+                    + StreamingJson.textBytes(exam.getSemester()) + StreamingJson.textBytes(exam.getMarksObtained())
+                    + StreamingJson.textBytes(exam.getMaximumMarks()) + StreamingJson.textBytes(exam.getExam());
+            }
+        }
+        this.estimatedBytes = bytes;
+    }
+
+    public List<SessionalExam> getSessionalExams() { return sessionalExams; }
+
+    @Override
+    public int estimatedBytes() { return estimatedBytes; }
+
+    static class Deserializer extends StdDeserializer<SessionalResults> {
+
+        Deserializer() {
+            super(SessionalResults.class);
+        }
+
+        @Override
+        public SessionalResults deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            if (!parser.isExpectedStartObjectToken()) {
+                parser.skipChildren();
+                return new SessionalResults(null);
+            }
+            List<SessionalExam> exams = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                boolean sessional = parser.currentName().equals("sessional_exams");
+                parser.nextToken();
+                if (sessional && parser.isExpectedStartArrayToken()) {
+                    exams = readExams(parser);
+                } else {
+                    if (sessional) {
+                        exams = null;
+                    }
+                    parser.skipChildren();
+                }
+            }
+            return new SessionalResults(exams);
+        }
+
+        private List<SessionalExam> readExams(JsonParser parser) throws IOException {
+            List<SessionalExam> exams = new ArrayList<>();
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                SessionalExam exam = new SessionalExam();
+                StreamingJson.readObject(parser, field -> {
+                    switch (field) {
+                        case "subject_name" -> exam.setSubjectName(StreamingJson.readText(parser));
+                        case "subject_code" -> exam.setSubjectCode(StreamingJson.readText(parser));
+                        case "semester" -> exam.setSemester(StreamingJson.readText(parser));
+                        case "marks_obtained" -> exam.setMarksObtained(StreamingJson.readText(parser));
+                        case "maximum_marks" -> exam.setMaximumMarks(StreamingJson.readText(parser));
+                        case "exam" -> exam.setExam(StreamingJson.readText(parser));
+                        default -> {
+                            return false;
+                        }
+                    }
+                    return true;
+                });
+                exams.add(exam);
+            }
+            return exams;
+        }
+    }
+
+    static class Serializer extends StdSerializer<SessionalResults> {
+
+        Serializer() {
+            super(SessionalResults.class);
+        }
+
+        @Override
+        public void serialize(SessionalResults value, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeStartObject();
+            if (value.sessionalExams != null) {
+                generator.writeArrayFieldStart("sessional_exams");
+                for (SessionalExam exam : value.sessionalExams) {
+                    generator.writeStartObject();
+                    StreamingJson.writeText(generator, "subject_name", exam.getSubjectName());
+                    StreamingJson.writeText(generator, "subject_code", exam.getSubjectCode());
+                    StreamingJson.writeText(generator, "semester", exam.getSemester());
+                    StreamingJson.writeText(generator, "marks_obtained", exam.getMarksObtained());
+                    StreamingJson.writeText(generator, "maximum_marks", exam.getMaximumMarks());
+                    StreamingJson.writeText(generator, "exam", exam.getExam());
+                    generator.writeEndObject();
+                }
+                generator.writeEndArray();
+            }
+            generator.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.etlabapp.backend.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * Token-level helpers shared by the streaming (de)serializers of the ETLab documents
+ */
+final class StreamingJson {
+
+    private StreamingJson() {}
+
+    /**
+     * Read the current value as text, the way JsonNode.asText() renders it: scalars as
+     * their text, null as null, containers are skipped and read as "".
+     */
+    static String readText(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return "";
+        }
+        if (token == JsonToken.VALUE_NUMBER_FLOAT) {
+            // Floats are kept as doubles in a tree, so "85.50" reads back as "85.5"
+            return String.valueOf(parser.getDoubleValue());
+        }
+        if (token == JsonToken.VALUE_NUMBER_INT) {
+            return parser.getNumberValue().toString();
+        }
+        return parser.getText();
+    }
+
+    /**
+     * Call for every field of an object: reads the value of fields the reader wants via
+     * onField, and skips the rest without materializing them
+     */
+    static void readObject(JsonParser parser, FieldReader onField) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            // Field names come from the parser's symbol table, so unknown ones don't allocate
+            String field = parser.currentName();
+            parser.nextToken();
+            if (!onField.read(field)) {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * Rough retained size of a string field: the reference, String header and UTF-16 chars
+     */
+    static int textBytes(String value) {
+        return value == null ? 8 : 48 + 2 * value.length();
+    }
+
+    /**
+     * Rough retained size of a map entry (node, key reference, hash slot) with the given key
+     */
+    static int entryBytes(String key) {
+        return 48 + textBytes(key);
+    }
+
+    /**
+     * Write a text field in the document's shape; a null value is left out, which reads back as null
+     */
+    static void writeText(JsonGenerator generator, String field, String value) throws IOException {
+        if (value != null) {
+            generator.writeStringField(field, value);
+        }
+    }
+
+    @FunctionalInterface
+    interface FieldReader {
+        /**
+         * Consume the value of field (parser is on its first token) and return true,
+         * or return false to have it skipped
+         */
+        boolean read(String field) throws IOException;
+    }
+}
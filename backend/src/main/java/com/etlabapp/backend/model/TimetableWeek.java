@@ -0,0 +1,139 @@
+package com.etlabapp.backend.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Name and teacher of every period in ETLab's timetable document, as sent (HTML is
+ * cleaned when the response is built). Parsed straight from the response stream, and
+ * written back in the same shape for the snapshot store.
+ */
+@JsonDeserialize(using = TimetableWeek.Deserializer.class)
+@JsonSerialize(using = TimetableWeek.Serializer.class)
+public class TimetableWeek implements EstimatedSize {
+
+    public static final List<String> DAYS = List.of(
+        "monday", "tuesday", "wednesday", "thursday", "friday", "saturday", "sunday"
+    );
+
+    public static final List<String> PERIODS = List.of(
+        "period-1", "period-2", "period-3", "period-4",
+        "period-5", "period-6", "period-7"
+    );
+
+    // Day -> period -> slot, only for days and periods present in the document
+    private final Map<String, Map<String, Period>> days;
+    private final int estimatedBytes;
+
+    public TimetableWeek(Map<String, Map<String, Period>> days) {
+        this.days = Collections.unmodifiableMap(days);
+        int bytes = 64;
+        for (Map.Entry<String, Map<String, Period>> day : days.entrySet()) {
+            bytes += StreamingJson.entryBytes(day.getKey()) + 64;
+            for (Map.Entry<String, Period> period : day.getValue().entrySet()) {
+                bytes += StreamingJson.entryBytes(period.getKey()) + 24
+                    + StreamingJson.textBytes(period.getValue().name) + StreamingJson.textBytes(period.getValue().teacher);
+            }
+        }
+        this.estimatedBytes = bytes;
+    }
+
+    /**
+     * Periods of a day, or null if the document has no such day
+     */
+    public Map<String, Period> getDay(String day) { return days.get(day); }
+
+    @Override
+    public int estimatedBytes() { return estimatedBytes; }
+
+    public static class Period {
+        private final String name;
+        private final String teacher;
+
+        public Period(String name, String teacher) {
+            this.name = name;
+            this.teacher = teacher;
+        }
+
+        public String getName() { return name; }
+        public String getTeacher() { return teacher; }
+    }
+
+    static class Deserializer extends StdDeserializer<TimetableWeek> {
+
+        Deserializer() {
+            super(TimetableWeek.class);
+        }
+
+        @Override
+        public TimetableWeek deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            Map<String, Map<String, Period>> days = new LinkedHashMap<>();
+            StreamingJson.readObject(parser, day -> {
+                if (!DAYS.contains(day)) {
+                    return false;
+                }
+                Map<String, Period> periods = new LinkedHashMap<>();
+                StreamingJson.readObject(parser, period -> {
+                    if (!PERIODS.contains(period)) {
+                        return false;
+                    }
+                    periods.put(period, readPeriod(parser));
+                    return true;
+                });
+                days.put(day, periods);
+                return true;
+            });
+            return new TimetableWeek(days);
+        }
+
+        private Period readPeriod(JsonParser parser) throws IOException {
+            String[] values = new String[2];
+            StreamingJson.readObject(parser, field -> {
+                switch (field) {
+                    case "name" -> values[0] = StreamingJson.readText(parser);
+                    case "teacher" -> values[1] = StreamingJson.readText(parser);
+                    default -> {
+                        return false;
+                    }
+                }
+                return true;
+            });
+            return new Period(values[0], values[1]);
+        }
+    }
+
+    static class Serializer extends StdSerializer<TimetableWeek> {
+
+        Serializer() {
+            super(TimetableWeek.class);
+        }
+
+        @Override
+        public void serialize(TimetableWeek value, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeStartObject();
+            for (Map.Entry<String, Map<String, Period>> day : value.days.entrySet()) {
+                generator.writeObjectFieldStart(day.getKey());
+                for (Map.Entry<String, Period> period : day.getValue().entrySet()) {
+                    generator.writeObjectFieldStart(period.getKey());
+                    StreamingJson.writeText(generator, "name", period.getValue().name);
+                    StreamingJson.writeText(generator, "teacher", period.getValue().teacher);
+                    generator.writeEndObject();
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndObject();
+        }
+    }
+}
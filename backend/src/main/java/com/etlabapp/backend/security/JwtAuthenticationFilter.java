@@ -4,6 +4,9 @@ import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import com.etlabapp.backend.session.SessionStore;
+import io.jsonwebtoken.Claims;
+import com.etlabapp.backend.session.UserSession;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -26,6 +29,9 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     @Autowired
     private JwtUtil jwtUtil;
 
+    @Autowired
+    private SessionStore sessionStore;
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, 
                                     FilterChain filterChain) throws ServletException, IOException {
@@ -34,45 +40,62 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         String username = null;
         String jwt = null;
+        UserSession carriedSession = null;
 
         // Extract JWT token from Authorization header
         if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
             jwt = authorizationHeader.substring(7);
             try {
-                username = jwtUtil.extractUsername(jwt);
+                // One verification (usually a cache hit) yields the user, already checked for expiry,
+                // and in stateless mode their ETLab session
+                Claims claims = jwtUtil.verify(jwt);
+                carriedSession = jwtUtil.isStateless() ? jwtUtil.sessionFrom(claims, jwt) : null;
+                username = claims.getSubject();
             } catch (Exception e) {
                 // Invalid token format or expired token
                 logger.warn("JWT token extraction failed: " + e.getMessage());
             }
         }
 
-        // If we have a username and no authentication is set in SecurityContext
+        // If we have a verified username and no authentication is set in SecurityContext
         if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            
-            // Validate the token
-            if (jwtUtil.validateToken(jwt)) {
-                // Create UserDetails object (in a real app, load from database)
-                UserDetails userDetails = User.builder()
-                    .username(username)
-                    .password("") // Empty password since we're using JWT
-                    .authorities(new ArrayList<>()) // You can add roles/authorities here
-                    .build();
-
-                // Create authentication token
-                UsernamePasswordAuthenticationToken authToken = 
-                    new UsernamePasswordAuthenticationToken(
-                        userDetails, 
-                        null, 
-                        userDetails.getAuthorities()
-                    );
-                
-                authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                
-                // Set authentication in SecurityContext
-                SecurityContextHolder.getContext().setAuthentication(authToken);
+            if (carriedSession != null) {
+                adoptSession(username, carriedSession, jwt);
             }
+
+            // Create UserDetails object (in a real app, load from database)
+            UserDetails userDetails = User.builder()
+                .username(username)
+                .password("") // Empty password since we're using JWT
+                .authorities(new ArrayList<>()) // You can add roles/authorities here
+                .build();
+
+            // Create authentication token
+            UsernamePasswordAuthenticationToken authToken = 
+                new UsernamePasswordAuthenticationToken(
+                    userDetails, 
+                    null, 
+                    userDetails.getAuthorities()
+                );
+            
+            authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+            
+            // Set authentication in SecurityContext
+            SecurityContextHolder.getContext().setAuthentication(authToken);
         }
 
         filterChain.doFilter(request, response);
     }
+
+    /**
+     * Make the token's ETLab session this instance's session for the user, so the request and
+     * any background refresh it starts find it. A session already built from the same token is
+     * kept, since it may hold a token this instance has renewed since.
+     */
+    private void adoptSession(String username, UserSession carried, String jwt) {
+        UserSession current = sessionStore.get(username);
+        if (current == null || !jwt.equals(current.getJwtToken())) {
+            sessionStore.put(username, carried);
+        }
+    }
 }
\ No newline at end of file
@@ -1,32 +1,132 @@
 package com.etlabapp.backend.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
+import com.etlabapp.backend.session.UserSession;
+
 import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
+/**
+ * Issues and verifies the app's tokens.
+ *
+ * Keys and parsers are built once. Verified claims are cached by the token's SHA-256
+ * until the token expires, so a client repeating its token skips the signature check
+ * (or decryption); only tokens that verified are ever cached.
+ */
 @Component
 public class JwtUtil {
 
+    // Claims of a stateless session token
+    private static final String ETLAB_TOKEN_CLAIM = "etl";
+    private static final String PASSWORD_CLAIM = "pwd";
+    // Every instance must derive the same key, so there is no per-deployment salt to share
+    private static final byte[] SESSION_TOKEN_SALT = "etlab-session-token-salt".getBytes(StandardCharsets.UTF_8);
+    private static final String SESSION_TOKEN_PURPOSE = "etlab-session-token";
+
+    // A digest per thread: looking one up costs more than hashing a token
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
     @Value("${jwt.secret:myJwtSecretKeyThatIsLongEnoughForHMACAlgorithmMinimum256Bits}")
     private String secret;
 
     @Value("${jwt.expiration:86400000}") // 24 hours in milliseconds
     private Long expiration;
 
-    private SecretKey getSigningKey() {
+    // "stateless": the client token is encrypted and carries the ETLab session, so any instance can serve it
+    @Value("${app.session.mode:stateful}")
+    private String sessionMode;
+
+    // Required in stateless mode: the tokens carry the ETLab password
+    @Value("${app.session.token-key:}")
+    private String sessionTokenSecret;
+
+    // Verified tokens remembered; 0 verifies every request
+    @Value("${jwt.claims-cache.max-size:10000}")
+    private long claimsCacheSize;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private SecretKey signingKey;
+    private SecretKey encryptionKey;
+    private JwtParser signedParser;
+    private JwtParser encryptedParser;
+    private Cache<ByteBuffer, Claims> verifiedClaims;
+
+    private Counter cacheHits;
+    private Counter cacheMisses;
+
+    @PostConstruct
+    void init() {
         // Ensure the secret key is long enough for HMAC-SHA256 (minimum 256 bits)
         if (secret.length() < 32) {
             throw new IllegalArgumentException("JWT secret key must be at least 32 characters long for HMAC-SHA256");
         }
-        return Keys.hmacShaKeyFor(secret.getBytes());
+        signingKey = Keys.hmacShaKeyFor(secret.getBytes());
+        // Parsers are immutable and thread-safe
+        signedParser = Jwts.parser().verifyWith(signingKey).build();
+        if (isStateless()) {
+            // AES-256 key for session tokens, derived from a key of their own
+            Sealer.requireSecret(sessionTokenSecret, "app.session.token-key (SESSION_TOKEN_KEY)");
+            encryptionKey = new SecretKeySpec(Sealer.hkdfSha256(sessionTokenSecret.getBytes(StandardCharsets.UTF_8), SESSION_TOKEN_SALT,
+                                                                SESSION_TOKEN_PURPOSE.getBytes(StandardCharsets.UTF_8), 32), "AES");
+            encryptedParser = Jwts.parser().decryptWith(encryptionKey).build();
+        }
+
+        if (claimsCacheSize > 0) {
+            verifiedClaims = Caffeine.newBuilder()
+                .maximumSize(claimsCacheSize)
+                .expireAfter(new Expiry<ByteBuffer, Claims>() {
+                    @Override
+                    public long expireAfterCreate(ByteBuffer key, Claims claims, long currentTime) {
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, claims.getExpiration().getTime() - System.currentTimeMillis()));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(ByteBuffer key, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(ByteBuffer key, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+        }
+        cacheHits = meterRegistry.counter("etlab.auth.claims.cache", "result", "hit");
+        cacheMisses = meterRegistry.counter("etlab.auth.claims.cache", "result", "miss");
+    }
+
+    public boolean isStateless() {
+        return "stateless".equalsIgnoreCase(sessionMode);
     }
 
     public String extractUsername(String token) {
@@ -38,16 +138,57 @@ public class JwtUtil {
     }
 
     public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
+        final Claims claims = verify(token);
         return claimsResolver.apply(claims);
     }
 
-    private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+    /**
+     * Claims of a token that verifies (or decrypts) and hasn't expired; the one check a request needs.
+     * Throws JwtException otherwise.
+     */
+    public Claims verify(String token) {
+        if (verifiedClaims == null) {
+            return parse(token);
+        }
+        ByteBuffer digest = ByteBuffer.wrap(sha256(token));
+        Claims cached = verifiedClaims.getIfPresent(digest);
+        if (cached != null) {
+            cacheHits.increment();
+            return cached;
+        }
+        cacheMisses.increment();
+        Claims claims = parse(token);
+        if (claims.getExpiration() != null) {
+            verifiedClaims.put(digest, claims);
+        }
+        return claims;
+    }
+
+    private Claims parse(String token) {
+        if (isEncrypted(token)) {
+            if (encryptedParser == null) {
+                throw new UnsupportedJwtException("Session tokens are only accepted in stateless mode");
+            }
+            return encryptedParser.parseEncryptedClaims(token).getPayload();
+        }
+        return signedParser.parseSignedClaims(token).getPayload();
+    }
+
+    private static byte[] sha256(String value) {
+        return SHA_256.get().digest(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * A JWE in compact form has five parts, a signed JWT three
+     */
+    private static boolean isEncrypted(String token) {
+        int dots = 0;
+        for (int i = 0; i < token.length(); i++) {
+            if (token.charAt(i) == '.') {
+                dots++;
+            }
+        }
+        return dots == 4;
     }
 
     private Boolean isTokenExpired(String token) {
@@ -59,6 +200,46 @@ public class JwtUtil {
         return createToken(claims, username);
     }
 
+    /**
+     * Encrypted token (JWE, dir + A256GCM) carrying the ETLab token and the credentials to renew it.
+     * Stateless mode only.
+     */
+    public String generateSessionToken(String username, String etlabToken, String password) {
+        if (encryptionKey == null) {
+            throw new IllegalStateException("Session tokens are only issued in stateless mode");
+        }
+        return Jwts.builder()
+                .subject(username)
+                .claim(ETLAB_TOKEN_CLAIM, etlabToken)
+                .claim(PASSWORD_CLAIM, password)
+                .issuedAt(new Date(System.currentTimeMillis()))
+                .expiration(new Date(System.currentTimeMillis() + expiration))
+                .encryptWith(encryptionKey, Jwts.ENC.A256GCM)
+                .compact();
+    }
+
+    /**
+     * The ETLab session carried by a session token, or null for a token without one.
+     * Throws JwtException if the token doesn't decrypt or has expired.
+     */
+    public UserSession extractSession(String token) {
+        if (!isEncrypted(token)) {
+            return null;
+        }
+        return sessionFrom(verify(token), token);
+    }
+
+    /**
+     * The ETLab session in a token's verified claims, or null if it carries none
+     */
+    public UserSession sessionFrom(Claims claims, String token) {
+        String etlabToken = claims.get(ETLAB_TOKEN_CLAIM, String.class);
+        if (etlabToken == null) {
+            return null;
+        }
+        return new UserSession(etlabToken, claims.getSubject(), claims.get(PASSWORD_CLAIM, String.class), token);
+    }
+
     public String generateToken(UserDetails userDetails) {
         Map<String, Object> claims = new HashMap<>();
         return createToken(claims, userDetails.getUsername());
@@ -70,7 +251,7 @@ public class JwtUtil {
                 .subject(subject)
                 .issuedAt(new Date(System.currentTimeMillis()))
                 .expiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSigningKey())
+                .signWith(signingKey)
                 .compact();
     }
 
@@ -81,8 +262,9 @@ public class JwtUtil {
 
     public Boolean validateToken(String token) {
         try {
-            Jwts.parser().verifyWith(getSigningKey()).build().parseSignedClaims(token);
-            return !isTokenExpired(token);
+            // Expired tokens don't verify
+            verify(token);
+            return true;
         } catch (JwtException | IllegalArgumentException e) {
             return false;
         }
@@ -0,0 +1,118 @@
+package com.etlabapp.backend.security;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * AES-GCM sealing for data the app keeps outside the process (session journal, shared
+ * sessions and snapshots). The AES-256 key is derived from a configured secret with
+ * HKDF-SHA256, a random salt stored next to the sealed data, and the purpose as info,
+ * so each use of a secret gets its own key. Sealed bytes are the nonce followed by
+ * the ciphertext.
+ */
+public final class Sealer {
+
+    /** jwt.secret when JWT_SECRET is not set; public, so never usable as a key */
+    public static final String DEFAULT_JWT_SECRET = "myJwtSecretKeyThatIsLongEnoughForHMACAlgorithmMinimum256Bits";
+
+    public static final int SALT_BYTES = 16;
+
+    private static final int MIN_SECRET_LENGTH = 32;
+    private static final int NONCE_BYTES = 12;
+    private static final int TAG_BITS = 128;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final SecretKey key;
+    // Cipher instances are not thread-safe
+    private final ThreadLocal<Cipher> ciphers = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance("AES/GCM/NoPadding");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    public Sealer(String secret, byte[] salt, String purpose) {
+        this.key = new SecretKeySpec(hkdfSha256(secret.getBytes(StandardCharsets.UTF_8), salt,
+                                                purpose.getBytes(StandardCharsets.UTF_8), 32), "AES");
+    }
+
+    /**
+     * The secret configured in property, refusing to start without a usable one:
+     * unset, shorter than 32 characters, or the public default JWT secret
+     */
+    public static String requireSecret(String secret, String property) {
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalStateException(property + " must be set");
+        }
+        if (secret.length() < MIN_SECRET_LENGTH) {
+            throw new IllegalStateException(property + " must be at least " + MIN_SECRET_LENGTH + " characters long");
+        }
+        if (secret.equals(DEFAULT_JWT_SECRET)) {
+            throw new IllegalStateException(property + " must not be the default JWT secret");
+        }
+        return secret;
+    }
+
+    public static byte[] newSalt() {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        return salt;
+    }
+
+    public byte[] seal(byte[] plain) throws GeneralSecurityException {
+        byte[] nonce = new byte[NONCE_BYTES];
+        RANDOM.nextBytes(nonce);
+        Cipher cipher = ciphers.get();
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, nonce));
+        byte[] sealed = Arrays.copyOf(nonce, NONCE_BYTES + cipher.getOutputSize(plain.length));
+        cipher.doFinal(plain, 0, plain.length, sealed, NONCE_BYTES);
+        return sealed;
+    }
+
+    /**
+     * Throws AEADBadTagException if the bytes were not sealed with this key or were altered
+     */
+    public byte[] open(byte[] sealed) throws GeneralSecurityException {
+        if (sealed.length <= NONCE_BYTES) {
+            throw new GeneralSecurityException("Sealed data too short");
+        }
+        Cipher cipher = ciphers.get();
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, sealed, 0, NONCE_BYTES));
+        return cipher.doFinal(sealed, NONCE_BYTES, sealed.length - NONCE_BYTES);
+    }
+
+    /**
+     * RFC 5869: extract a pseudorandom key from the secret and salt, then expand it with info
+     */
+    static byte[] hkdfSha256(byte[] secret, byte[] salt, byte[] info, int length) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(salt.length == 0 ? new byte[32] : salt, "HmacSHA256"));
+            byte[] prk = mac.doFinal(secret);
+
+            mac.init(new SecretKeySpec(prk, "HmacSHA256"));
+            byte[] okm = new byte[length];
+            byte[] block = new byte[0];
+            for (int offset = 0, counter = 1; offset < length; counter++) {
+                mac.update(block);
+                mac.update(info);
+                mac.update((byte) counter);
+                block = mac.doFinal();
+                int n = Math.min(block.length, length - offset);
+                System.arraycopy(block, 0, okm, offset, n);
+                offset += n;
+            }
+            return okm;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
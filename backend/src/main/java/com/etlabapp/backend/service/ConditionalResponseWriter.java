@@ -0,0 +1,351 @@
+package com.etlabapp.backend.service;
+
+import com.etlabapp.backend.cache.CacheKey;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.WeakReference;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the /app read responses with an ETag and Cache-Control, from cached encoded bytes.
+ *
+ * The body is serialized once and the ETag is a hash of those bytes, so an
+ * unchanged document always gets the same tag. A request whose If-None-Match
+ * matches gets 304 Not Modified and no body. Cache-Control is private (every
+ * response is per user) with a per-endpoint max-age and stale-while-revalidate.
+ *
+ * The encoded response (JSON, its gzip variant and the tag) is kept per user and
+ * endpoint together with a weak reference to the upstream body it was built from.
+ * While the response cache hands out that same body, requests skip transformation,
+ * serialization and compression and just write the bytes. The JSON of the version
+ * served before stays with the entry as the base for delta sync.
+ */
+@Component
+public class ConditionalResponseWriter {
+
+    // Bytes of the SHA-256 kept in the tag; collisions between versions of one user's document don't matter at this size
+    private static final int ETAG_BYTES = 16;
+
+    @Value("${app.http.cache-control.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.http.response-cache.enabled:true}")
+    private boolean responseCacheEnabled;
+
+    @Value("${app.http.response-cache.max-weight-bytes:16777216}")
+    private long responseCacheMaxWeightBytes;
+
+    @Value("${app.http.response-cache.expire-after-access-minutes:30}")
+    private long responseCacheExpireMinutes;
+
+    // Smaller bodies are always sent as identity: gzip would barely shrink them
+    @Value("${app.http.gzip-min-bytes:1024}")
+    private int gzipMinBytes;
+
+    @Value("${app.http.cache-control.profile.max-age-seconds:1800}")
+    private long profileMaxAge;
+
+    @Value("${app.http.cache-control.profile.stale-while-revalidate-seconds:3600}")
+    private long profileStale;
+
+    @Value("${app.http.cache-control.attendance.max-age-seconds:60}")
+    private long attendanceMaxAge;
+
+    @Value("${app.http.cache-control.attendance.stale-while-revalidate-seconds:240}")
+    private long attendanceStale;
+
+    @Value("${app.http.cache-control.results.max-age-seconds:300}")
+    private long resultsMaxAge;
+
+    @Value("${app.http.cache-control.results.stale-while-revalidate-seconds:900}")
+    private long resultsStale;
+
+    @Value("${app.http.cache-control.timetable.max-age-seconds:1800}")
+    private long timetableMaxAge;
+
+    @Value("${app.http.cache-control.timetable.stale-while-revalidate-seconds:3600}")
+    private long timetableStale;
+
+    @Value("${app.http.cache-control.end-sem-results.max-age-seconds:1800}")
+    private long endSemResultsMaxAge;
+
+    @Value("${app.http.cache-control.end-sem-results.stale-while-revalidate-seconds:3600}")
+    private long endSemResultsStale;
+
+    @Value("${app.http.cache-control.dashboard.max-age-seconds:60}")
+    private long dashboardMaxAge;
+
+    @Value("${app.http.cache-control.dashboard.stale-while-revalidate-seconds:240}")
+    private long dashboardStale;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Map<String, CacheControl> cacheControlByEndpoint;
+    private Cache<CacheKey, EncodedResponse> encodedResponses;
+
+    private Counter encodedHits;
+    private Counter encodedMisses;
+
+    /**
+     * Final bytes of one response, valid while its upstream body is the one being served
+     */
+    static final class EncodedResponse {
+        private final WeakReference<Object> source;
+        private final byte[] json;
+        private final byte[] gzip; // null if the body is too small to compress
+        private final String etag;
+        // The version served before this one (JSON and tag only), or null
+        private final EncodedResponse previous;
+
+        EncodedResponse(Object source, byte[] json, byte[] gzip, String etag, EncodedResponse previous) {
+            this.source = new WeakReference<>(source);
+            this.json = json;
+            this.gzip = gzip;
+            this.etag = etag;
+            this.previous = previous;
+        }
+
+        boolean isFor(Object body) {
+            return source.get() == body;
+        }
+
+        int weight() {
+            return 64 + json.length + (gzip != null ? gzip.length : 0) + (previous != null ? previous.weight() : 0);
+        }
+
+        /**
+         * What a replacement keeps of this version: enough to diff against, no history of its own
+         */
+        EncodedResponse asPrevious() {
+            return new EncodedResponse(null, json, null, etag, null);
+        }
+
+        byte[] json() {
+            return json;
+        }
+
+        String etag() {
+            return etag;
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        cacheControlByEndpoint = Map.of(
+            "/profile", cacheControl(profileMaxAge, profileStale),
+            "/attendance", cacheControl(attendanceMaxAge, attendanceStale),
+            "/results", cacheControl(resultsMaxAge, resultsStale),
+            "/timetable", cacheControl(timetableMaxAge, timetableStale),
+            "/end-sem-results", cacheControl(endSemResultsMaxAge, endSemResultsStale),
+            "/dashboard", cacheControl(dashboardMaxAge, dashboardStale)
+        );
+
+        encodedResponses = Caffeine.newBuilder()
+            .maximumWeight(responseCacheMaxWeightBytes)
+            .weigher((CacheKey key, EncodedResponse value) -> value.weight())
+            .expireAfterAccess(Duration.ofMinutes(responseCacheExpireMinutes))
+            .build();
+        encodedHits = meterRegistry.counter("etlab.http.encoded.cache", "result", "hit");
+        encodedMisses = meterRegistry.counter("etlab.http.encoded.cache", "result", "miss");
+        Gauge.builder("etlab.http.encoded.cache.weight.bytes", encodedResponses,
+                c -> c.policy().eviction().map(e -> e.weightedSize().orElse(0L)).orElse(0L))
+            .register(meterRegistry);
+    }
+
+    /**
+     * Respond with transform(source) for the user's endpoint, reusing the encoded bytes
+     * if they were built from this same source body
+     */
+    public <T> ResponseEntity<?> write(String username, String endpoint, T source, Function<T, ?> transform,
+                                       HttpHeaders request) {
+        return respond(endpoint, render(username, endpoint, source, transform).current(), request, cacheControl(endpoint));
+    }
+
+    /**
+     * The encoded response for transform(source), from the cache if it was built from this
+     * same source body. previous is the different version served before it, if still cached.
+     */
+    <T> Rendition render(String username, String endpoint, T source, Function<T, ?> transform) {
+        if (!responseCacheEnabled) {
+            return new Rendition(encode(null, transform.apply(source), null), null);
+        }
+
+        CacheKey key = new CacheKey(username, endpoint);
+        EncodedResponse cached = encodedResponses.getIfPresent(key);
+        if (cached != null && cached.isFor(source)) {
+            encodedHits.increment();
+            return new Rendition(cached, cached.previous);
+        }
+        encodedMisses.increment();
+        EncodedResponse encoded = encode(source, transform.apply(source), cached);
+        encodedResponses.put(key, encoded);
+        return new Rendition(encoded, encoded.previous);
+    }
+
+    record Rendition(EncodedResponse current, EncodedResponse previous) {}
+
+    /**
+     * Respond with a body that isn't cached (built from several sources), with explicit caching rules
+     */
+    public ResponseEntity<?> write(String endpoint, Object body, HttpHeaders request, CacheControl cacheControl) {
+        return respond(endpoint, encode(null, body, null), request, cacheControl);
+    }
+
+    public CacheControl cacheControl(String endpoint) {
+        return cacheControlByEndpoint.getOrDefault(endpoint, CacheControl.noCache().cachePrivate());
+    }
+
+    private ResponseEntity<?> respond(String endpoint, EncodedResponse encoded, HttpHeaders request,
+                                      CacheControl cacheControl) {
+        if (enabled && matches(request.getFirst(HttpHeaders.IF_NONE_MATCH), encoded.etag)) {
+            meterRegistry.counter("etlab.http.conditional", "endpoint", endpoint, "result", "not_modified").increment();
+            meterRegistry.counter("etlab.http.bytes.saved", "endpoint", endpoint).increment(encoded.json.length);
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(encoded.etag)
+                .cacheControl(cacheControl)
+                .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                .build();
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_JSON)
+            .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (enabled) {
+            meterRegistry.counter("etlab.http.conditional", "endpoint", endpoint, "result", "full").increment();
+            response.eTag(encoded.etag).cacheControl(cacheControl);
+        }
+        if (encoded.gzip != null && acceptsGzip(request.getFirst(HttpHeaders.ACCEPT_ENCODING))) {
+            // Tomcat leaves responses that already carry a Content-Encoding alone
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(encoded.gzip);
+        }
+        return response.body(encoded.json);
+    }
+
+    /**
+     * Encode body, keeping replaced as the previous version, or its own previous one if the
+     * document didn't change (a refetch of the same data)
+     */
+    private EncodedResponse encode(Object source, Object body, EncodedResponse replaced) {
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize response", e);
+        }
+        byte[] gzip = json.length >= gzipMinBytes ? gzip(json) : null;
+        String etag = etagOf(json);
+        EncodedResponse previous = null;
+        if (replaced != null) {
+            previous = replaced.etag.equals(etag) ? replaced.previous : replaced.asPrevious();
+        }
+        return new EncodedResponse(source, json, gzip, etag, previous);
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Weak tag: the JSON is the same document whether or not it is sent compressed
+     */
+    static String etagOf(byte[] json) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(json);
+            return "W/\"" + HexFormat.of().formatHex(digest, 0, ETAG_BYTES) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Weak comparison against each tag in If-None-Match, as RFC 9110 requires for GET
+     */
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        String opaque = stripWeak(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || stripWeak(tag).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether Accept-Encoding lists gzip (or *) without q=0
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            String name = parts[0].trim();
+            if (!name.equalsIgnoreCase("gzip") && !name.equals("*")) {
+                continue;
+            }
+            boolean refused = false;
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim().replace(" ", "");
+                if (param.startsWith("q=")) {
+                    try {
+                        refused = Double.parseDouble(param.substring(2)) == 0;
+                    } catch (NumberFormatException e) {
+                        refused = true;
+                    }
+                }
+            }
+            if (!refused) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stripWeak(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
+    private static CacheControl cacheControl(long maxAgeSeconds, long staleSeconds) {
+        return CacheControl.maxAge(Duration.ofSeconds(maxAgeSeconds))
+            .cachePrivate()
+            .staleWhileRevalidate(Duration.ofSeconds(staleSeconds));
+    }
+}
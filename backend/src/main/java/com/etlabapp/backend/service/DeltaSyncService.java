@@ -0,0 +1,145 @@
+package com.etlabapp.backend.service;
+
+import com.etlabapp.backend.exception.EtlabApiException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.RawValue;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Brings a client's copy of a resource up to date with as little data as possible.
+ *
+ * Versions are the ETags of the /app read endpoints, so a client can mix normal
+ * reads and sync. The base for a patch is the version of the resource served to
+ * the user before the current one (kept by ConditionalResponseWriter with the
+ * current response): if the client holds that version it gets a JSON Patch to the
+ * current one, if it holds the current version it gets "unchanged", otherwise the
+ * full document.
+ */
+@Service
+public class DeltaSyncService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeltaSyncService.class);
+
+    public static final List<String> RESOURCES = List.of("profile", "attendance", "results", "timetable", "end-sem-results");
+
+    @Autowired
+    private EtlabApiService etlabApiService;
+
+    @Autowired
+    private ResponseTransformer responseTransformer;
+
+    @Autowired
+    private ConditionalResponseWriter responseWriter;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Sync entry for one resource: status unchanged, patch or full, plus the version
+     * the client holds afterwards. Must be called on the request thread.
+     */
+    public CompletableFuture<ObjectNode> sync(String username, String resource, String clientVersion) {
+        return switch (resource) {
+            case "profile" -> sync(username, "/profile", etlabApiService.getStudentProfileAsync(),
+                                   responseTransformer::transformProfile, clientVersion);
+            case "attendance" -> sync(username, "/attendance", etlabApiService.getAttendanceAsync(),
+                                      responseTransformer::transformAttendance, clientVersion);
+            case "results" -> sync(username, "/results", etlabApiService.getResultsAsync(),
+                                   responseTransformer::transformResults, clientVersion);
+            case "timetable" -> sync(username, "/timetable", etlabApiService.getTimetableAsync(),
+                                     responseTransformer::cleanAndNormalizeTimetable, clientVersion);
+            case "end-sem-results" -> sync(username, "/end-sem-results", etlabApiService.getEndSemResultsAsync(),
+                                           responseTransformer::mergeEndSemResultsWithGrades, clientVersion);
+            default -> CompletableFuture.failedFuture(
+                new EtlabApiException("Unknown resource: " + resource, "Supported: " + RESOURCES));
+        };
+    }
+
+    private <T> CompletableFuture<ObjectNode> sync(String username, String endpoint, CompletableFuture<T> fetch,
+                                                   Function<T, ?> transform, String clientVersion) {
+        return fetch.thenApply(source -> {
+            if (source == null) {
+                throw new EtlabApiException("Failed to fetch " + endpoint.substring(1) + " from external API");
+            }
+            ConditionalResponseWriter.Rendition rendition = responseWriter.render(username, endpoint, source, transform);
+            return counted(endpoint, delta(rendition, clientVersion));
+        });
+    }
+
+    /**
+     * Current rendition of a resource for a user, fetched off the request thread
+     * (not counted as session activity). Only the resources pushed to update streams.
+     */
+    CompletableFuture<ConditionalResponseWriter.Rendition> renderInBackground(String username, String resource) {
+        return switch (resource) {
+            case "attendance" -> etlabApiService.getAttendanceAsync(username).thenApply(
+                attendance -> responseWriter.render(username, "/attendance", attendance, responseTransformer::transformAttendance));
+            case "results" -> etlabApiService.getResultsAsync(username).thenApply(
+                results -> responseWriter.render(username, "/results", results, responseTransformer::transformResults));
+            case "end-sem-results" -> etlabApiService.getEndSemResultsAsync(username).thenApply(
+                results -> responseWriter.render(username, "/end-sem-results", results, responseTransformer::mergeEndSemResultsWithGrades));
+            default -> CompletableFuture.failedFuture(new IllegalArgumentException("Not a pushed resource: " + resource));
+        };
+    }
+
+    /**
+     * Entry taking a client from clientVersion to the rendition's current version
+     */
+    ObjectNode delta(ConditionalResponseWriter.Rendition rendition, String clientVersion) {
+        ConditionalResponseWriter.EncodedResponse current = rendition.current();
+        ConditionalResponseWriter.EncodedResponse previous = rendition.previous();
+
+        ObjectNode entry = objectMapper.createObjectNode();
+        entry.put("version", current.etag());
+        if (clientVersion != null && ConditionalResponseWriter.matches(clientVersion, current.etag())) {
+            return entry.put("status", "unchanged");
+        }
+
+        if (clientVersion != null && previous != null && ConditionalResponseWriter.matches(clientVersion, previous.etag())) {
+            ArrayNode patch = JsonDiff.diff(readTree(previous.json()), readTree(current.json()));
+            // A patch rewriting most of the document is no cheaper than the document
+            if (patch.toString().length() < current.json().length) {
+                entry.put("status", "patch");
+                entry.put("base", previous.etag());
+                entry.set("patch", patch);
+                logger.debug("Delta: {} patch ops against {}", patch.size(), previous.etag());
+                return entry;
+            }
+        }
+
+        entry.put("status", "full");
+        // Already serialized: embed the bytes instead of parsing them back
+        entry.putRawValue("data", new RawValue(new String(current.json(), StandardCharsets.UTF_8)));
+        return entry;
+    }
+
+    private ObjectNode counted(String endpoint, ObjectNode entry) {
+        meterRegistry.counter("etlab.sync", "endpoint", endpoint, "result", entry.get("status").asText()).increment();
+        return entry;
+    }
+
+    private JsonNode readTree(byte[] json) {
+        try {
+            return objectMapper.readTree(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
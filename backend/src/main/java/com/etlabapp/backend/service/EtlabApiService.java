@@ -11,87 +11,218 @@ import org.springframework.web.client.ResourceAccessException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.Authentication;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.etlabapp.backend.cache.CacheKey;
+import com.etlabapp.backend.cache.RefreshAheadScheduler;
+import com.etlabapp.backend.cache.UpstreamResponseCache;
 import com.etlabapp.backend.model.*;
+import com.etlabapp.backend.upstream.AdaptiveConcurrencyLimiter;
+import com.etlabapp.backend.upstream.ReactiveEtlabClient;
+import com.etlabapp.backend.upstream.RequestCoalescer;
 import com.etlabapp.backend.exception.EtlabApiException;
 import com.etlabapp.backend.exception.AuthenticationException;
+import com.etlabapp.backend.exception.UpstreamUnavailableException;
+import com.etlabapp.backend.session.SessionStore;
+import com.etlabapp.backend.session.UserSession;
 import com.fasterxml.jackson.databind.JsonNode;
 
-import java.util.concurrent.ConcurrentHashMap;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 @Service
 public class EtlabApiService {
     private static final Logger logger = LoggerFactory.getLogger(EtlabApiService.class);
+
+    // Number of lock stripes serializing re-authentication per session
+    private static final int REAUTH_LOCK_STRIPES = 64;
+
+    // Documents the app loads right after login (the profile comes with the login itself), with the
+    // body type the getters read them as: prefetch shares cache entries and in-flight calls with them
+    private static final Map<String, Class<?>> PREFETCH_ENDPOINTS = Map.of(
+        "/attendance", AttendanceSummary.class,
+        "/results", SessionalResults.class,
+        "/timetable", TimetableWeek.class,
+        "/end-semester-results", JsonNode.class);
     
     @Value("${app.etlab.api-base-url}")
     private String apiBaseUrl;
     
-    private final RestTemplate restTemplate = new RestTemplate();
+    // Shared pooled client, see HttpClientConfig
+    @Autowired
+    private RestTemplate restTemplate;
+
+    @Autowired
+    private UpstreamResponseCache responseCache;
+
+    @Autowired
+    private RequestCoalescer requestCoalescer;
+
+    @Autowired
+    private RefreshAheadScheduler refreshAheadScheduler;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ReactiveEtlabClient reactiveClient;
+
+    @Autowired
+    @Qualifier("upstreamExecutor")
+    private AsyncTaskExecutor upstreamExecutor;
+
+    @Autowired
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    @Autowired
+    @Qualifier("prefetchExecutor")
+    private TaskExecutor prefetchExecutor;
+
+    @Value("${app.prefetch.enabled:true}")
+    private boolean prefetchEnabled;
+
+    // Prefetch only runs while fewer than this share of the adaptive upstream limit is in use
+    @Value("${app.prefetch.max-limit-share:0.5}")
+    private double prefetchMaxLimitShare;
+
+    // "reactive" serves the *Async getters with the non-blocking client; "blocking" runs the RestTemplate path on upstreamExecutor
+    @Value("${app.etlab.client-mode:blocking}")
+    private String clientMode;
     
-    // Thread-safe map to store user-specific ETLab tokens
-    private final Map<String, UserSession> userSessions = new ConcurrentHashMap<>();
+    // User-specific ETLab tokens, bounded and expired by the store
+    @Autowired
+    private SessionStore userSessions;
+
+    private final ReentrantLock[] reauthLocks = new ReentrantLock[REAUTH_LOCK_STRIPES];
+
+    private Counter reauthPerformed;
+    private Counter reauthReused;
+    private Counter reauthFailed;
+    private Counter prefetchFetched;
+    private Counter prefetchSkipped;
+    private Counter prefetchFailed;
     
-    /**
-     * Inner class to hold user session data
-     */
-    private static class UserSession {
-        private String etlabToken;
-        private String username;
-        private String password;
-        private String jwtToken; 
-        private long lastActivity;
-        
-        public UserSession(String etlabToken, String username, String password, String jwtToken) {
-            this.etlabToken = etlabToken;
-            this.username = username;
-            this.password = password;
-            this.jwtToken = jwtToken;
-            this.lastActivity = System.currentTimeMillis();
+    @PostConstruct
+    void init() {
+        for (int i = 0; i < reauthLocks.length; i++) {
+            reauthLocks[i] = new ReentrantLock();
         }
+        reauthPerformed = meterRegistry.counter("etlab.reauth", "result", "performed");
+        reauthReused = meterRegistry.counter("etlab.reauth", "result", "reused");
+        reauthFailed = meterRegistry.counter("etlab.reauth", "result", "failed");
+        prefetchFetched = meterRegistry.counter("etlab.prefetch", "result", "fetched");
+        prefetchSkipped = meterRegistry.counter("etlab.prefetch", "result", "skipped");
+        prefetchFailed = meterRegistry.counter("etlab.prefetch", "result", "failed");
 
-        public void updateActivity() {
-            this.lastActivity = System.currentTimeMillis();
-        }
-        
-        // Getters
-        public String getEtlabToken() { return etlabToken; }
-        public String getUsername() { return username; }
-        public String getPassword() { return password; }
-        public long getLastActivity() { return lastActivity; }
-        public String getJwtToken() { return jwtToken; }
-        
-        // Setters
-        public void setEtlabToken(String etlabToken) { this.etlabToken = etlabToken; }
+        // Cached bodies of a session the store drops go with it
+        userSessions.setEvictionListener(responseCache::invalidateUser);
+
+        // Refresh-ahead follows session activity; users without a session drop out
+        refreshAheadScheduler.setSessionActivity(username -> {
+            UserSession session = userSessions.get(username);
+            return session == null ? 0 : session.getLastActivity();
+        });
     }
     /**
-     * Get valid JWT token for user if exists
+     * The JWT of the user's current session, if the password matches the one it was created with.
+     * Null otherwise (also for a session restored without its password), so the caller checks with ETLab.
      */
-    public String getValidTokenForUser(String username) {
+    public String getValidTokenForUser(String username, String password) {
         UserSession session = userSessions.get(username);
-        if (session != null && session.getJwtToken() != null) {
-            return session.getJwtToken();
+        if (session == null || session.getJwtToken() == null || session.getPassword() == null || password == null) {
+            return null;
         }
-        return null;
+        boolean matches = MessageDigest.isEqual(session.getPassword().getBytes(StandardCharsets.UTF_8),
+                                                password.getBytes(StandardCharsets.UTF_8));
+        return matches ? session.getJwtToken() : null;
     }
 
     /**
      * Updated createUserSession to store JWT token
      */
     public void createUserSession(String jwtUsername, String etlabToken, String password, String jwtToken) {
+        createUserSession(jwtUsername, etlabToken, password, jwtToken, null);
+    }
+
+    /**
+     * Create the session and keep the profile fetched while validating the login, so the
+     * app's first /app/profile is served from the cache instead of a second upstream call
+     */
+    public void createUserSession(String jwtUsername, String etlabToken, String password, String jwtToken,
+                                  StudentProfile validatedProfile) {
         UserSession session = new UserSession(etlabToken, jwtUsername, password, jwtToken);
         userSessions.put(jwtUsername, session);
+        if (validatedProfile != null) {
+            responseCache.put(new CacheKey(jwtUsername, "/profile"), validatedProfile);
+        }
         logger.info("Created user session with JWT token for user: {}", jwtUsername);
     }
 
+    /**
+     * Warm the cache for a freshly logged-in user in the background: the app asks for these
+     * right after login. Each fetch runs through the request coalescer, so a user request for
+     * the same document while its prefetch is in flight attaches to it instead of calling ETLab again.
+     */
+    public void prefetchUserData(String username) {
+        if (!prefetchEnabled) {
+            return;
+        }
+        for (Map.Entry<String, Class<?>> endpoint : PREFETCH_ENDPOINTS.entrySet()) {
+            try {
+                prefetchExecutor.execute(() -> prefetch(username, endpoint.getKey(), endpoint.getValue()));
+            } catch (TaskRejectedException e) {
+                prefetchSkipped.increment();
+            }
+        }
+    }
+
+    private void prefetch(String username, String endpoint, Class<?> bodyType) {
+        CacheKey key = new CacheKey(username, endpoint);
+        // Lower priority than interactive traffic: skip if the user already has it or ETLab is busy
+        if (responseCache.contains(key) || !concurrencyLimiter.hasHeadroom(prefetchMaxLimitShare)
+                || userSessions.get(username) == null) {
+            prefetchSkipped.increment();
+            return;
+        }
+        try {
+            Object body = requestCoalescer.execute(
+                key,
+                () -> executeAuthenticatedCall(getUserSession(username), endpoint, bodyType).getBody()
+            );
+            responseCache.put(key, body);
+            prefetchFetched.increment();
+            logger.debug("Prefetched {} for user {}", endpoint, username);
+        } catch (RuntimeException e) {
+            prefetchFailed.increment();
+            logger.debug("Prefetch of {} for user {} failed: {}", endpoint, username, e.getMessage());
+        }
+    }
+
     /**
      * Invalidate user session (for logout)
      */
     public void invalidateUserSession(String username) {
         userSessions.remove(username);
+        responseCache.invalidateUser(username);
         logger.info("Invalidated session for user: {}", username);
     }
     /**
@@ -106,17 +237,15 @@ public class EtlabApiService {
     }
 
     /**
-     * Get the current user's ETLab session
+     * Get a user's ETLab session by JWT username (usable off the request thread)
      */
-    private UserSession getCurrentUserSession() {
-        String username = getCurrentUsername();
+    private UserSession getUserSession(String username) {
         UserSession session = userSessions.get(username);
         
         if (session == null) {
             throw new AuthenticationException("No ETLab session found for user. Please login first.");
         }
         
-        session.updateActivity();
         return session;
     }
 
@@ -162,9 +291,10 @@ public class EtlabApiService {
     }
 
     /**
-     * Authenticate with ETLab API without JWT context (for login)
+     * Authenticate with ETLab API without JWT context (for login).
+     * The profile fetched to validate the token is returned alongside it.
      */
-    public String authenticateWithETLab(String username, String password) {
+    public EtlabLogin authenticateWithETLab(String username, String password) {
         try {
             // Validate input parameters
             if (username == null || username.trim().isEmpty()) {
@@ -203,16 +333,16 @@ public class EtlabApiService {
                     logger.info("Validating received token for user {} by testing with profile endpoint", username);
                     
                     // Try to fetch profile with the received token to validate it's actually valid
-                    ResponseEntity<Object> testResponse = restTemplate.exchange(
+                    ResponseEntity<StudentProfile> testResponse = restTemplate.exchange(
                         apiBaseUrl + "/profile",
                         HttpMethod.GET,
                         testEntity,
-                        Object.class
+                        StudentProfile.class
                     );
                     
                     if (testResponse.getStatusCode().is2xxSuccessful()) {
                         logger.info("Token validation successful for user {} - credentials are valid", username);
-                        return token;
+                        return new EtlabLogin(token, testResponse.getBody());
                     } else {
                         logger.warn("Token validation failed for user {} - received token is invalid", username);
                         throw new AuthenticationException("Invalid username or password");
@@ -226,6 +356,9 @@ public class EtlabApiService {
                         logger.warn("Token validation error for user {}: {}", username, testError.getStatusCode());
                         throw new AuthenticationException("Invalid username or password");
                     }
+                } catch (UpstreamUnavailableException testError) {
+                    // ETLab being down says nothing about the credentials
+                    throw testError;
                 } catch (Exception testError) {
                     logger.warn("Token validation failed for user {} due to error: {}", username, testError.getMessage());
                     throw new AuthenticationException("Invalid username or password");
@@ -269,9 +402,47 @@ public class EtlabApiService {
         }
     }
     /**
-     * Automatically re-authenticate if ETLab token is invalid
+     * Automatically re-authenticate if ETLab token is invalid.
+     *
+     * Re-logins for a session are serialized on a lock stripe. observedGeneration is the
+     * token generation the failing call used: if another thread has already replaced that
+     * token, the caller simply reuses the fresh one instead of logging in again. The same
+     * goes for a token another instance renewed in a shared session store.
      */
-    private void reAuthenticateIfNeeded(UserSession session) {
+    private void reAuthenticateIfNeeded(UserSession session, long observedGeneration) {
+        ReentrantLock lock = reauthLocks[Math.floorMod(session.getUsername().hashCode(), REAUTH_LOCK_STRIPES)];
+        lock.lock();
+        try {
+            if (session.getTokenGeneration() != observedGeneration) {
+                reauthReused.increment();
+                logger.debug("Reusing token refreshed by another request for user {}", session.getUsername());
+                return;
+            }
+            UserSession stored = userSessions.reload(session.getUsername());
+            if (stored != null && stored != session && stored.getEtlabToken() != null
+                    && !stored.getEtlabToken().equals(session.getEtlabToken())) {
+                session.setEtlabToken(stored.getEtlabToken());
+                reauthReused.increment();
+                logger.debug("Reusing token renewed on another instance for user {}", session.getUsername());
+                return;
+            }
+            if (session.reauthRecentlyFailed(observedGeneration)) {
+                throw new AuthenticationException("Session expired and re-authentication failed. Please login again.");
+            }
+            loginAndReplaceToken(session, observedGeneration);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Re-login with stored credentials; caller must hold the session's re-auth lock
+     */
+    private void loginAndReplaceToken(UserSession session, long observedGeneration) {
+        if (session.getPassword() == null) {
+            // Restored from the session journal, which doesn't keep passwords
+            throw new AuthenticationException("Session expired. Please login again.");
+        }
         try {
             // Try to re-login with stored credentials
             LoginRequest loginRequest = new LoginRequest();
@@ -286,21 +457,29 @@ public class EtlabApiService {
 
             if (response != null && response.getToken() != null) {
                 session.setEtlabToken(response.getToken());
-                logger.info("Successfully re-authenticated user {}", getCurrentUsername());
+                // Sessions are keyed by the login username, so a restart keeps the renewed token
+                userSessions.update(session.getUsername(), session);
+                reauthPerformed.increment();
+                logger.info("Successfully re-authenticated user {}", session.getUsername());
             } else {
                 throw new AuthenticationException("Re-authentication failed");
             }
+        } catch (UpstreamUnavailableException e) {
+            // Not a credentials problem: don't start the re-auth failure backoff
+            throw e;
         } catch (Exception e) {
-            logger.error("Re-authentication failed for user {}: {}", getCurrentUsername(), e.getMessage());
+            session.markReauthFailed(observedGeneration);
+            reauthFailed.increment();
+            logger.error("Re-authentication failed for user {}: {}", session.getUsername(), e.getMessage());
             throw new AuthenticationException("Session expired and re-authentication failed. Please login again.");
         }
     }
     /**
      * Execute authenticated API call with automatic re-authentication
      */
-    private <T> ResponseEntity<T> executeAuthenticatedCall(String endpoint, Class<T> responseType) {
-        UserSession session = getCurrentUserSession();
-        
+    private <T> ResponseEntity<T> executeAuthenticatedCall(UserSession session, String endpoint, Class<T> responseType) {
+        // Read the generation before the token (see UserSession.setEtlabToken)
+        long generation = session.getTokenGeneration();
         try {
             HttpHeaders headers = new HttpHeaders();
             headers.set("Authorization", "Bearer " + session.getEtlabToken());
@@ -314,9 +493,9 @@ public class EtlabApiService {
             );
         } catch (HttpClientErrorException e) {
             if (e.getStatusCode().value() == 401) {
-                logger.info("ETLab token expired for user {}, attempting re-authentication", getCurrentUsername());
-                // Try to re-authenticate once
-                reAuthenticateIfNeeded(session);
+                logger.info("ETLab token expired for user {}, attempting re-authentication", session.getUsername());
+                // Try to re-authenticate once (or pick up the token another request just obtained)
+                reAuthenticateIfNeeded(session, generation);
                 
                 // Retry the call with new token
                 HttpHeaders headers = new HttpHeaders();
@@ -334,12 +513,175 @@ public class EtlabApiService {
         }
     }
 
+    /**
+     * Fetch an endpoint's body for the current user through the response cache.
+     * Cache misses and revalidations are coalesced so concurrent identical calls share one upstream request.
+     */
+    private <T> T fetchCached(String endpoint, Class<T> responseType) {
+        String username = getCurrentUsername();
+        getUserSession(username).updateActivity();
+        CacheKey key = new CacheKey(username, endpoint);
+        // The loader may run later on a background thread, so it resolves the session by name
+        return responseCache.get(key, () -> requestCoalescer.execute(
+            key,
+            () -> executeAuthenticatedCall(getUserSession(username), endpoint, responseType).getBody()
+        ));
+    }
+
+    /**
+     * Non-blocking counterpart of executeAuthenticatedCall. The re-login on a 401 still uses the
+     * blocking login call and the session's stripe lock, so it is moved onto upstreamExecutor.
+     */
+    private <T> CompletableFuture<T> executeAuthenticatedCallAsync(UserSession session, String endpoint, Class<T> responseType) {
+        long generation = session.getTokenGeneration();
+        return reactiveClient.get(endpoint, session.getEtlabToken(), responseType)
+            .exceptionallyCompose(error -> {
+                Throwable cause = unwrap(error);
+                if (cause instanceof WebClientResponseException e && e.getStatusCode().value() == 401) {
+                    logger.info("ETLab token expired for user {}, attempting re-authentication", session.getUsername());
+                    return CompletableFuture.runAsync(() -> reAuthenticateIfNeeded(session, generation), upstreamExecutor)
+                        .thenCompose(ignored -> reactiveClient.get(endpoint, session.getEtlabToken(), responseType));
+                }
+                return CompletableFuture.failedFuture(cause);
+            });
+    }
+
+    /**
+     * Async variant of fetchCached. The user is resolved on the calling (request) thread;
+     * a cache hit completes immediately, a miss is fetched according to app.etlab.client-mode.
+     */
+    private <T> CompletableFuture<T> fetchCachedAsync(String endpoint, Class<T> responseType) {
+        return forCurrentUser(username -> fetchCachedAsync(username, endpoint, responseType));
+    }
+
+    /**
+     * fetchCachedAsync for a given user, usable off the request thread. Not counted as session activity.
+     */
+    private <T> CompletableFuture<T> fetchCachedAsync(String username, String endpoint, Class<T> responseType) {
+        if (userSessions.get(username) == null) {
+            return CompletableFuture.failedFuture(new AuthenticationException("No ETLab session found for user. Please login first."));
+        }
+
+        CacheKey key = new CacheKey(username, endpoint);
+        Supplier<T> blockingLoader = () -> requestCoalescer.execute(
+            key,
+            () -> executeAuthenticatedCall(getUserSession(username), endpoint, responseType).getBody()
+        );
+
+        T cached = responseCache.getIfPresent(key, blockingLoader);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        CompletableFuture<T> loaded = "reactive".equalsIgnoreCase(clientMode)
+            ? requestCoalescer.executeAsync(key, () -> executeAuthenticatedCallAsync(getUserSession(username), endpoint, responseType))
+            : CompletableFuture.supplyAsync(blockingLoader, upstreamExecutor);
+
+        return loaded.thenApply(body -> {
+            responseCache.put(key, body);
+            return body;
+        });
+    }
+
+    /**
+     * Map an async upstream failure to the same exceptions the blocking getters throw
+     */
+    private <T> CompletableFuture<T> mapAsyncFailure(CompletableFuture<T> future, String clientErrorMessage,
+                                                     String serverErrorMessage, String connectErrorMessage) {
+        return future.exceptionallyCompose(error -> {
+            Throwable cause = unwrap(error);
+            if (cause instanceof WebClientResponseException e) {
+                cause = e.getStatusCode().is5xxServerError()
+                    ? new EtlabApiException(serverErrorMessage, "Server error: " + e.getStatusCode())
+                    : new EtlabApiException(clientErrorMessage, "Client error: " + e.getStatusCode());
+            } else if (cause instanceof WebClientRequestException e) {
+                cause = new EtlabApiException(connectErrorMessage, e.getMessage());
+            } else if (cause instanceof HttpClientErrorException e) {
+                cause = new EtlabApiException(clientErrorMessage, "Client error: " + e.getStatusCode());
+            } else if (cause instanceof HttpServerErrorException e) {
+                cause = new EtlabApiException(serverErrorMessage, "Server error: " + e.getStatusCode());
+            } else if (cause instanceof ResourceAccessException e) {
+                cause = new EtlabApiException(connectErrorMessage, e.getMessage());
+            }
+            return CompletableFuture.failedFuture(cause);
+        });
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    /**
+     * Run a per-user fetch for the current user, counting it as session activity
+     */
+    private <T> CompletableFuture<T> forCurrentUser(Function<String, CompletableFuture<T>> fetch) {
+        String username;
+        try {
+            username = getCurrentUsername();
+            getUserSession(username).updateActivity();
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return fetch.apply(username);
+    }
+
+    public CompletableFuture<StudentProfile> getStudentProfileAsync() {
+        return mapAsyncFailure(fetchCachedAsync("/profile", StudentProfile.class),
+                               "Failed to fetch profile data", "Profile service temporarily unavailable",
+                               "Unable to connect to profile service")
+            .thenApply(profile -> {
+                if (profile == null) {
+                    throw new EtlabApiException("Profile data not available", "Empty response from profile service");
+                }
+                return profile;
+            });
+    }
+
+    public CompletableFuture<SessionalResults> getResultsAsync() {
+        return forCurrentUser(this::getResultsAsync);
+    }
+
+    public CompletableFuture<SessionalResults> getResultsAsync(String username) {
+        return mapAsyncFailure(fetchCachedAsync(username, "/results", SessionalResults.class),
+                               "Failed to fetch results data", "Results service temporarily unavailable",
+                               "Unable to connect to results service");
+    }
+
+    public CompletableFuture<AttendanceSummary> getAttendanceAsync() {
+        return forCurrentUser(this::getAttendanceAsync);
+    }
+
+    public CompletableFuture<AttendanceSummary> getAttendanceAsync(String username) {
+        return mapAsyncFailure(fetchCachedAsync(username, "/attendance", AttendanceSummary.class),
+                               "Failed to fetch attendance data", "Attendance service temporarily unavailable",
+                               "Unable to connect to attendance service");
+    }
+
+    public CompletableFuture<TimetableWeek> getTimetableAsync() {
+        return mapAsyncFailure(fetchCachedAsync("/timetable", TimetableWeek.class),
+                               "Failed to fetch timetable data", "Timetable service temporarily unavailable",
+                               "Unable to connect to timetable service");
+    }
+
+    public CompletableFuture<JsonNode> getEndSemResultsAsync() {
+        return forCurrentUser(this::getEndSemResultsAsync);
+    }
+
+    public CompletableFuture<JsonNode> getEndSemResultsAsync(String username) {
+        return mapAsyncFailure(fetchCachedAsync(username, "/end-semester-results", JsonNode.class),
+                               "Failed to fetch end semester results", "End semester results service temporarily unavailable",
+                               "Unable to connect to end semester results service");
+    }
+
     public StudentProfile getStudentProfile() {
         try {
-            ResponseEntity<StudentProfile> response = executeAuthenticatedCall("/profile", StudentProfile.class);
+            StudentProfile profile = fetchCached("/profile", StudentProfile.class);
             
-            if (response.getBody() != null) {
-                return response.getBody();
+            if (profile != null) {
+                return profile;
             } else {
                 throw new EtlabApiException("Profile data not available", "Empty response from profile service");
             }
@@ -352,10 +694,9 @@ public class EtlabApiService {
         }
     }
 
-    public JsonNode getResults() {
+    public SessionalResults getResults() {
         try {
-            ResponseEntity<JsonNode> response = executeAuthenticatedCall("/results", JsonNode.class);
-            return response.getBody();
+            return fetchCached("/results", SessionalResults.class);
         } catch (HttpClientErrorException e) {
             throw new EtlabApiException("Failed to fetch results data", "Client error: " + e.getStatusCode());
         } catch (HttpServerErrorException e) {
@@ -365,10 +706,9 @@ public class EtlabApiService {
         }
     }
 
-    public JsonNode getAttendance() {
+    public AttendanceSummary getAttendance() {
         try {
-            ResponseEntity<JsonNode> response = executeAuthenticatedCall("/attendance", JsonNode.class);
-            return response.getBody();
+            return fetchCached("/attendance", AttendanceSummary.class);
         } catch (HttpClientErrorException e) {
             throw new EtlabApiException("Failed to fetch attendance data", "Client error: " + e.getStatusCode());
         } catch (HttpServerErrorException e) {
@@ -378,10 +718,9 @@ public class EtlabApiService {
         }
     }
 
-    public JsonNode getTimetable() {
+    public TimetableWeek getTimetable() {
         try {
-            ResponseEntity<JsonNode> response = executeAuthenticatedCall("/timetable", JsonNode.class);
-            return response.getBody();
+            return fetchCached("/timetable", TimetableWeek.class);
         } catch (HttpClientErrorException e) {
             throw new EtlabApiException("Failed to fetch timetable data", "Client error: " + e.getStatusCode());
         } catch (HttpServerErrorException e) {
@@ -393,8 +732,7 @@ public class EtlabApiService {
 
     public JsonNode getEndSemResults() {
         try {
-            ResponseEntity<JsonNode> response = executeAuthenticatedCall("/end-semester-results", JsonNode.class);
-            return response.getBody();
+            return fetchCached("/end-semester-results", JsonNode.class);
         } catch (HttpClientErrorException e) {
             throw new EtlabApiException("Failed to fetch end semester results", "Client error: " + e.getStatusCode());
         } catch (HttpServerErrorException e) {
@@ -410,25 +748,10 @@ public class EtlabApiService {
     public void logout() {
         String username = getCurrentUsername();
         userSessions.remove(username);
+        responseCache.invalidateUser(username);
         logger.info("User {} logged out and session cleaned", username);
     }
 
-    /**
-     * Clean up expired sessions (can be called by a scheduled task)
-     */
-    public void cleanupExpiredSessions() {
-        long currentTime = System.currentTimeMillis();
-        long sessionTimeout = 24 * 60 * 60 * 1000; // 24 hours
-
-        userSessions.entrySet().removeIf(entry -> {
-            boolean expired = (currentTime - entry.getValue().getLastActivity()) > sessionTimeout;
-            if (expired) {
-                logger.info("Cleaned up expired session for user: {}", entry.getKey());
-            }
-            return expired;
-        });
-    }
-
     /**
      * Get session info for debugging (admin only)
      */
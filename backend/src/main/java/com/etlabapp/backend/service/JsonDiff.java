@@ -0,0 +1,88 @@
+package com.etlabapp.backend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Field-level JSON Patch (RFC 6902) between two documents.
+ *
+ * Objects are compared field by field. Arrays are compared position by position,
+ * with trailing additions and removals, which covers the common changes (a new
+ * sessional mark appended, one subject's percentage updated) with a few small ops.
+ * The ops apply in order to the source document.
+ */
+final class JsonDiff {
+
+    private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+
+    private JsonDiff() {}
+
+    static ArrayNode diff(JsonNode source, JsonNode target) {
+        ArrayNode patch = NODES.arrayNode();
+        diff("", source, target, patch);
+        return patch;
+    }
+
+    private static void diff(String path, JsonNode source, JsonNode target, ArrayNode patch) {
+        if (source.equals(target)) {
+            return;
+        }
+        if (source.isObject() && target.isObject()) {
+            diffObjects(path, source, target, patch);
+        } else if (source.isArray() && target.isArray()) {
+            diffArrays(path, source, target, patch);
+        } else {
+            patch.add(op("replace", path).set("value", target));
+        }
+    }
+
+    private static void diffObjects(String path, JsonNode source, JsonNode target, ArrayNode patch) {
+        Iterator<String> names = source.fieldNames();
+        while (names.hasNext()) {
+            String name = names.next();
+            if (!target.has(name)) {
+                patch.add(op("remove", path + "/" + escape(name)));
+            }
+        }
+        for (Map.Entry<String, JsonNode> field : target.properties()) {
+            String fieldPath = path + "/" + escape(field.getKey());
+            JsonNode previous = source.get(field.getKey());
+            if (previous == null) {
+                patch.add(op("add", fieldPath).set("value", field.getValue()));
+            } else {
+                diff(fieldPath, previous, field.getValue(), patch);
+            }
+        }
+    }
+
+    private static void diffArrays(String path, JsonNode source, JsonNode target, ArrayNode patch) {
+        int common = Math.min(source.size(), target.size());
+        for (int i = 0; i < common; i++) {
+            diff(path + "/" + i, source.get(i), target.get(i), patch);
+        }
+        for (int i = common; i < target.size(); i++) {
+            patch.add(op("add", path + "/" + i).set("value", target.get(i)));
+        }
+        // From the end, so earlier indexes stay valid
+        for (int i = source.size() - 1; i >= common; i--) {
+            patch.add(op("remove", path + "/" + i));
+        }
+    }
+
+    private static ObjectNode op(String op, String path) {
+        ObjectNode node = NODES.objectNode();
+        node.put("op", op);
+        node.put("path", path);
+        return node;
+    }
+
+    // JSON Pointer escaping (RFC 6901)
+    private static String escape(String name) {
+        return name.replace("~", "~0").replace("/", "~1");
+    }
+}
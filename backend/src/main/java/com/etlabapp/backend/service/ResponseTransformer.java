@@ -0,0 +1,331 @@
+package com.etlabapp.backend.service;
+
+import com.etlabapp.backend.model.AttendanceSummary;
+import com.etlabapp.backend.model.SessionalExam;
+import com.etlabapp.backend.model.SessionalResults;
+import com.etlabapp.backend.model.StudentProfile;
+import com.etlabapp.backend.model.TimetableWeek;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shapes raw ETLab documents into the responses served under /app.
+ * Shared by the per-resource controllers and the aggregated dashboard.
+ *
+ * Attendance, results and timetable arrive as compact DTOs parsed from the response
+ * stream; only end semester results are still read as a full document tree.
+ */
+@Component
+public class ResponseTransformer {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResponseTransformer.class);
+
+    // List of all possible days in the timetable
+    private static final List<String> DAYS = TimetableWeek.DAYS;
+
+    // List of all periods (1-7)
+    private static final List<String> PERIODS = TimetableWeek.PERIODS;
+
+    private static final String ATTENDANCE_NOTE =
+        "ETLab attendance displays current semester subjects only, not filtered by requested semester";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * Pick the profile fields the app displays
+     */
+    public Map<String, String> transformProfile(StudentProfile profile) {
+        Map<String, String> result = new HashMap<>();
+
+        // Add null safety checks
+        if (profile.getPersonalInfo() != null) {
+            result.put("name", profile.getPersonalInfo().getName());
+        }
+
+        if (profile.getAdditionalInfo() != null) {
+            result.put("mobileNumber", profile.getAdditionalInfo().getStudentMobileNo());
+        }
+
+        if (profile.getAcademicInfo() != null) {
+            result.put("srNumber", profile.getAcademicInfo().getSrNumber());
+            result.put("universityRegNo", profile.getAcademicInfo().getUniversityRegNo());
+        }
+
+        return result;
+    }
+
+    /**
+     * Keep percentage and hours per subject plus the summary fields
+     */
+    public ObjectNode transformAttendance(AttendanceSummary attendance) {
+        ObjectNode response = mapper.createObjectNode();
+
+        attendance.getSubjects().forEach((subjectCode, subject) -> {
+            ObjectNode subjectData = mapper.createObjectNode();
+            subjectData.put("attendance_percentage", subject.getAttendancePercentage());
+            subjectData.put("present_hours", subject.getPresentHours());
+            subjectData.put("total_hours", subject.getTotalHours());
+            response.set(subjectCode, subjectData);
+        });
+
+        response.put("roll_no", attendance.getRollNo());
+        response.put("total_hours", attendance.getTotalHours());
+        response.put("total_present_hours", attendance.getTotalPresentHours());
+        response.put("total_percentage", attendance.getTotalPercentage());
+        response.put("university_reg_no", attendance.getUniversityRegNo());
+        response.put("name", attendance.getName());
+        response.put("note", ATTENDANCE_NOTE);
+
+        return response;
+    }
+
+    /**
+     * The sessional exams, or an empty list if the document had none
+     */
+    public List<SessionalExam> transformResults(SessionalResults results) {
+        if (results.getSessionalExams() == null) {
+            logger.warn("sessional_exams not found or not an array in API response");
+            return new ArrayList<>();
+        }
+        return results.getSessionalExams();
+    }
+
+    /**
+     * Clean and normalize the timetable data
+     * - Remove HTML from teacher and name fields
+     * - Ensure all periods 1-7 exist for every day
+     * - Set empty periods to have null name and teacher
+     */
+    public JsonNode cleanAndNormalizeTimetable(TimetableWeek timetable) {
+        ObjectNode cleanedTimetable = mapper.createObjectNode();
+
+        for (String day : DAYS) {
+            Map<String, TimetableWeek.Period> dayData = timetable.getDay(day);
+            ObjectNode cleanedDay = mapper.createObjectNode();
+
+            for (String period : PERIODS) {
+                TimetableWeek.Period rawPeriod = dayData != null ? dayData.get(period) : null;
+                if (rawPeriod != null) {
+                    cleanedDay.set(period, cleanPeriod(rawPeriod.getName(), rawPeriod.getTeacher()));
+                } else {
+                    cleanedDay.set(period, cleanPeriod(null, null));
+                }
+            }
+
+            if (dayData != null || hasNonEmptyPeriods(cleanedDay)) {
+                cleanedTimetable.set(day, cleanedDay);
+            }
+        }
+
+        return cleanedTimetable;
+    }
+
+    /**
+     * Merge end_semester_exams with corresponding results from available_links using list order
+     * First exam matches first link, second exam matches second link, etc.
+     */
+    public JsonNode mergeEndSemResultsWithGrades(JsonNode rawData) {
+        ArrayNode mergedResults = mapper.createArrayNode();
+
+        // Get the two main arrays from the raw data
+        JsonNode endSemesterExams = rawData.get("end_semester_exams");
+        JsonNode availableLinks = rawData.get("available_links");
+
+        if (endSemesterExams == null || !endSemesterExams.isArray()) {
+            logger.warn("end_semester_exams not found or not an array");
+            return mergedResults; // Return empty array
+        }
+
+        // Process each end semester exam by index
+        for (int i = 0; i < endSemesterExams.size(); i++) {
+            JsonNode exam = endSemesterExams.get(i);
+            ObjectNode mergedExam = mapper.createObjectNode();
+
+            // Copy all exam information (admission_batch, exam_title, semester, year, etc.)
+            copyExamInfo(exam, mergedExam);
+
+            // Find corresponding grades by index (order-based matching)
+            JsonNode grades = findGradesByIndex(i, availableLinks);
+            mergedExam.set("grades", grades);
+
+            mergedResults.add(mergedExam);
+        }
+
+        return mergedResults;
+    }
+
+    /**
+     * Copy all fields from the exam object to the merged exam object
+     */
+    private void copyExamInfo(JsonNode sourceExam, ObjectNode targetExam) {
+        sourceExam.fieldNames().forEachRemaining(fieldName -> {
+            targetExam.set(fieldName, sourceExam.get(fieldName));
+        });
+    }
+
+    /**
+     * Find grades for a specific exam by index (order-based matching)
+     * Returns the results object from the corresponding available_links item, or an error object if not found/failed
+     */
+    private JsonNode findGradesByIndex(int index, JsonNode availableLinks) {
+        // Check if availableLinks exists and has enough items
+        if (availableLinks == null || !availableLinks.isArray() || index >= availableLinks.size()) {
+            return createErrorGrades("Results not available - no corresponding link found", null);
+        }
+
+        JsonNode link = availableLinks.get(index);
+        if (link == null) {
+            return createErrorGrades("Results not available - link is null", null);
+        }
+
+        // Check if the link has a results object
+        JsonNode results = link.get("results");
+        if (results == null) {
+            return createErrorGrades("Results not available - no results in link", link);
+        }
+
+        // Check if the results contain an error
+        if (hasError(results)) {
+            String errorMessage = getStringValue(results, "message");
+            if (errorMessage == null || errorMessage.trim().isEmpty()) {
+                errorMessage = "Results contain an error";
+            }
+            return createErrorGrades(errorMessage, results);
+        }
+
+        // Return the valid results
+        return results;
+    }
+
+    /**
+     * Create an error grades object with appropriate message and original data
+     */
+    private JsonNode createErrorGrades(String message, JsonNode originalData) {
+        ObjectNode errorGrades = mapper.createObjectNode();
+        errorGrades.put("error", true);
+        errorGrades.put("message", message);
+
+        if (originalData != null) {
+            errorGrades.set("original_response", originalData);
+        }
+
+        return errorGrades;
+    }
+
+    /**
+     * Check if the grades object contains an error
+     */
+    private boolean hasError(JsonNode grades) {
+        // Check for common error indicators
+        JsonNode error = grades.get("error");
+        if (error != null && (error.isBoolean() && error.asBoolean() ||
+                             error.isTextual() && !error.asText().isEmpty())) {
+            return true;
+        }
+
+        // Check for error message
+        JsonNode message = grades.get("message");
+        if (message != null && message.isTextual()) {
+            String msg = message.asText().toLowerCase();
+            if (msg.contains("error") || msg.contains("failed") || msg.contains("not found")) {
+                return true;
+            }
+        }
+
+        // Check for common error status codes or indicators
+        JsonNode status = grades.get("status");
+        if (status != null && status.isTextual()) {
+            String statusText = status.asText().toLowerCase();
+            if (statusText.contains("error") || statusText.contains("fail")) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * A period with HTML removed from name and teacher; blank values become null
+     */
+    private ObjectNode cleanPeriod(String rawName, String rawTeacher) {
+        ObjectNode periodData = mapper.createObjectNode();
+        String name = cleanHtml(rawName);
+        String teacher = cleanHtml(rawTeacher);
+        periodData.put("name", isEmptyOrNull(name) ? null : name);
+        periodData.put("teacher", isEmptyOrNull(teacher) ? null : teacher);
+        return periodData;
+    }
+
+    /**
+     * Clean HTML tags and decode HTML entities from a string
+     */
+    private String cleanHtml(String input) {
+        if (input == null) {
+            return null;
+        }
+
+        // Remove HTML tags
+        String cleaned = input.replaceAll("<[^>]*>", "");
+
+        // Decode common HTML entities
+        cleaned = cleaned.replace("&nbsp;", " ")
+                        .replace("&amp;", "&")
+                        .replace("&lt;", "<")
+                        .replace("&gt;", ">")
+                        .replace("&quot;", "\"")
+                        .replace("&#39;", "'");
+
+        // Trim whitespace
+        cleaned = cleaned.trim();
+
+        return cleaned;
+    }
+
+    /**
+     * Check if a string is null, empty, or contains only whitespace
+     */
+    private boolean isEmptyOrNull(String str) {
+        return str == null || str.trim().isEmpty();
+    }
+
+    /**
+     * Check if a day has any non-empty periods
+     */
+    private boolean hasNonEmptyPeriods(ObjectNode dayData) {
+        for (String period : PERIODS) {
+            JsonNode periodData = dayData.get(period);
+            if (periodData != null) {
+                JsonNode name = periodData.get("name");
+                JsonNode teacher = periodData.get("teacher");
+                if ((name != null && !name.isNull()) || (teacher != null && !teacher.isNull())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Helper method to safely extract string values from JsonNode
+     */
+    private String getStringValue(JsonNode node, String fieldName) {
+        if (node == null) {
+            return null;
+        }
+        JsonNode fieldNode = node.get(fieldName);
+        if (fieldNode == null || fieldNode.isNull()) {
+            return null;
+        }
+        return fieldNode.asText();
+    }
+}
@@ -0,0 +1,392 @@
+package com.etlabapp.backend.service;
+
+import com.etlabapp.backend.exception.AuthenticationException;
+import com.etlabapp.backend.upstream.AdaptiveConcurrencyLimiter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pushes attendance, results and end semester results changes to connected apps
+ * over Server-Sent Events, so they don't have to poll the read endpoints.
+ *
+ * While a user has a stream open, their resources are re-read every poll-seconds
+ * through the response cache (so ETLab is only called when an entry is stale) and an
+ * event is sent only when the normalized JSON, i.e. its ETag, changes. The event
+ * carries a delta like /app/sync: a JSON Patch from the previously pushed version,
+ * or the full document.
+ *
+ * Idle streams hold no thread: the emitters are async servlet responses, and writes
+ * happen on virtual threads so one slow client cannot hold up the others. Event ids
+ * are per user and per server start; a reconnect with Last-Event-ID replays the
+ * buffered events after it, or gets a "versions" event to resync from if the id is
+ * too old or from another instance.
+ */
+@Service
+public class UpdateStreamService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UpdateStreamService.class);
+
+    static final List<String> PUSHED_RESOURCES = List.of("attendance", "results", "end-sem-results");
+
+    @Value("${app.stream.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.stream.poll-seconds:120}")
+    private long pollSeconds;
+
+    @Value("${app.stream.max-polls-per-second:50}")
+    private int maxPollsPerSecond;
+
+    @Value("${app.stream.max-limit-share:0.5}")
+    private double maxLimitShare;
+
+    @Value("${app.stream.heartbeat-seconds:25}")
+    private long heartbeatSeconds;
+
+    @Value("${app.stream.timeout-minutes:30}")
+    private long timeoutMinutes;
+
+    @Value("${app.stream.retry-ms:5000}")
+    private long retryMillis;
+
+    @Value("${app.stream.replay-buffer:32}")
+    private int replayBuffer;
+
+    @Value("${app.stream.retain-minutes:5}")
+    private long retainMinutes;
+
+    @Value("${app.stream.max-connections:20000}")
+    private int maxConnections;
+
+    @Value("${app.stream.max-per-user:3}")
+    private int maxPerUser;
+
+    @Autowired
+    private DeltaSyncService deltaSyncService;
+
+    @Autowired
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Distinguishes event ids of this server start from those of a previous one
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    private final Map<String, UserStream> streams = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+
+    private ScheduledExecutorService scheduler;
+    private ExecutorService writers;
+
+    private Counter replayed;
+    private Counter resynced;
+    private Counter rejected;
+    private Counter pollsDeferred;
+
+    private static final class UserStream {
+        private final ConcurrentLinkedDeque<SseEmitter> emitters = new ConcurrentLinkedDeque<>();
+        // Orders sequence numbers, the replay buffer and writes (a lock, not synchronized, so virtual threads don't pin)
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Deque<Event> recent = new ArrayDeque<>();
+        // Version last pushed per resource; the base for the next delta
+        private final Map<String, String> versions = new ConcurrentHashMap<>();
+        private final AtomicBoolean polling = new AtomicBoolean();
+        private final AtomicBoolean announce = new AtomicBoolean();
+        private long sequence;
+        private volatile long nextPollAt;
+        private volatile long idleSince;
+    }
+
+    private record Event(long sequence, String name, String data) {}
+
+    @PostConstruct
+    void init() {
+        replayed = meterRegistry.counter("etlab.stream.reconnects", "result", "replayed");
+        resynced = meterRegistry.counter("etlab.stream.reconnects", "result", "resync");
+        rejected = meterRegistry.counter("etlab.stream.rejected");
+        pollsDeferred = meterRegistry.counter("etlab.stream.polls.deferred");
+        Gauge.builder("etlab.stream.connections", connections, AtomicInteger::get).register(meterRegistry);
+        Gauge.builder("etlab.stream.users", streams, Map::size).register(meterRegistry);
+
+        if (!enabled) {
+            return;
+        }
+        writers = Executors.newVirtualThreadPerTaskExecutor();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "etlab-update-stream");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::tick, 1, 1, TimeUnit.SECONDS);
+        scheduler.scheduleWithFixedDelay(this::heartbeat, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+        logger.info("Update stream: poll every {}s, heartbeat every {}s, up to {} connections",
+                    pollSeconds, heartbeatSeconds, maxConnections);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        streams.values().forEach(stream -> stream.emitters.forEach(SseEmitter::complete));
+        if (writers != null) {
+            writers.shutdown();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Soft cap on open streams; checked before subscribing
+     */
+    public boolean hasCapacity() {
+        if (connections.get() < maxConnections) {
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    /**
+     * Open a stream for the user. lastEventId is the Last-Event-ID header of a reconnect, or null.
+     */
+    public SseEmitter subscribe(String username, String lastEventId) {
+        SseEmitter emitter = newEmitter(TimeUnit.MINUTES.toMillis(timeoutMinutes));
+        // Marked connected atomically with the lookup, so tick() can't drop it meanwhile
+        UserStream stream = streams.compute(username, (name, existing) -> {
+            UserStream current = existing != null ? existing : new UserStream();
+            current.idleSince = 0;
+            return current;
+        });
+
+        emitter.onCompletion(() -> remove(username, stream, emitter));
+        emitter.onError(error -> remove(username, stream, emitter));
+        emitter.onTimeout(emitter::complete);
+
+        // Sends before the response is committed are buffered by the emitter, so this doesn't block
+        stream.lock.lock();
+        try {
+            send(emitter, SseEmitter.event().reconnectTime(retryMillis).comment("connected"));
+            List<Event> missed = eventsAfter(stream, lastEventId);
+            if (missed != null) {
+                missed.forEach(event -> send(emitter, event));
+                replayed.increment();
+            } else {
+                if (lastEventId != null) {
+                    resynced.increment();
+                }
+                // Versions are announced after the next poll, which is brought forward
+                stream.announce.set(true);
+                stream.nextPollAt = 0;
+            }
+            while (stream.emitters.size() >= maxPerUser) {
+                SseEmitter oldest = stream.emitters.peekFirst();
+                remove(username, stream, oldest);
+                oldest.complete();
+            }
+            stream.emitters.addLast(emitter);
+            connections.incrementAndGet();
+        } finally {
+            stream.lock.unlock();
+        }
+        logger.debug("Update stream opened for user {} (last event {})", username, lastEventId);
+        return emitter;
+    }
+
+    // Tests override this to see what is sent
+    SseEmitter newEmitter(long timeoutMillis) {
+        return new SseEmitter(timeoutMillis);
+    }
+
+    /**
+     * Buffered events after lastEventId, or null if the client has to resync
+     */
+    private List<Event> eventsAfter(UserStream stream, String lastEventId) {
+        if (lastEventId == null || !lastEventId.startsWith(epoch + "-")) {
+            return null;
+        }
+        long last;
+        try {
+            last = Long.parseLong(lastEventId.substring(epoch.length() + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (last > stream.sequence) {
+            return null;
+        }
+        long oldestBuffered = stream.recent.isEmpty() ? stream.sequence + 1 : stream.recent.peekFirst().sequence();
+        if (last + 1 < oldestBuffered) {
+            return null;
+        }
+        List<Event> missed = new ArrayList<>();
+        for (Event event : stream.recent) {
+            if (event.sequence() > last) {
+                missed.add(event);
+            }
+        }
+        return missed;
+    }
+
+    private void remove(String username, UserStream stream, SseEmitter emitter) {
+        if (stream.emitters.remove(emitter)) {
+            connections.decrementAndGet();
+            if (stream.emitters.isEmpty()) {
+                stream.idleSince = System.currentTimeMillis();
+            }
+            logger.debug("Update stream closed for user {}", username);
+        }
+    }
+
+    void tick() {
+        try {
+            long now = System.currentTimeMillis();
+            int polls = 0;
+            for (Map.Entry<String, UserStream> entry : streams.entrySet()) {
+                UserStream stream = entry.getValue();
+                if (stream.emitters.isEmpty()) {
+                    // Kept for a while so a reconnect can still replay
+                    streams.computeIfPresent(entry.getKey(), (name, idle) ->
+                        idle.idleSince != 0 && now - idle.idleSince > TimeUnit.MINUTES.toMillis(retainMinutes) ? null : idle);
+                    continue;
+                }
+                if (stream.nextPollAt > now || stream.polling.get()) {
+                    continue;
+                }
+                // Stay behind interactive traffic; the rest are polled on a later tick
+                if (polls >= maxPollsPerSecond || !concurrencyLimiter.hasHeadroom(maxLimitShare)) {
+                    pollsDeferred.increment();
+                    continue;
+                }
+                poll(entry.getKey(), stream);
+                polls++;
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Update stream tick failed: {}", e.getMessage());
+        }
+    }
+
+    private void poll(String username, UserStream stream) {
+        stream.polling.set(true);
+        List<CompletableFuture<Void>> pushes = new ArrayList<>();
+        for (String resource : PUSHED_RESOURCES) {
+            pushes.add(deltaSyncService.renderInBackground(username, resource)
+                .thenAccept(rendition -> pushIfChanged(stream, resource, rendition)));
+        }
+        CompletableFuture.allOf(pushes.toArray(new CompletableFuture<?>[0])).whenComplete((ignored, error) -> {
+            long jitter = ThreadLocalRandom.current().nextLong(TimeUnit.SECONDS.toMillis(pollSeconds) / 10 + 1);
+            stream.nextPollAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(pollSeconds) + jitter;
+            stream.polling.set(false);
+            if (error != null && unwrap(error) instanceof AuthenticationException) {
+                // Logged out or session gone: nothing more will come, tell the app and close
+                streams.remove(username, stream);
+                writers.execute(() -> {
+                    write(stream, "session-expired", "{}");
+                    stream.emitters.forEach(SseEmitter::complete);
+                });
+                return;
+            }
+            if (error != null) {
+                logger.debug("Update stream poll for user {} failed: {}", username, unwrap(error).getMessage());
+            }
+            if (stream.announce.getAndSet(false)) {
+                ObjectNode versions = objectMapper.createObjectNode();
+                PUSHED_RESOURCES.forEach(resource -> versions.put(resource, stream.versions.get(resource)));
+                publish(stream, "versions", versions.toString());
+            }
+        });
+    }
+
+    private void pushIfChanged(UserStream stream, String resource, ConditionalResponseWriter.Rendition rendition) {
+        String pushed = stream.versions.put(resource, rendition.current().etag());
+        if (pushed == null || ConditionalResponseWriter.matches(pushed, rendition.current().etag())) {
+            // First sight is the baseline the versions event announces
+            return;
+        }
+        ObjectNode delta = deltaSyncService.delta(rendition, pushed);
+        publish(stream, resource, delta.toString());
+        meterRegistry.counter("etlab.stream.events", "resource", resource, "status", delta.get("status").asText()).increment();
+    }
+
+    private void publish(UserStream stream, String name, String data) {
+        writers.execute(() -> write(stream, name, data));
+    }
+
+    private void write(UserStream stream, String name, String data) {
+        stream.lock.lock();
+        try {
+            Event event = new Event(++stream.sequence, name, data);
+            stream.recent.addLast(event);
+            while (stream.recent.size() > replayBuffer) {
+                stream.recent.removeFirst();
+            }
+            stream.emitters.forEach(emitter -> send(emitter, event));
+        } finally {
+            stream.lock.unlock();
+        }
+    }
+
+    private void heartbeat() {
+        for (UserStream stream : streams.values()) {
+            for (SseEmitter emitter : stream.emitters) {
+                // Keeps proxies from closing the idle connection and detects dead clients
+                writers.execute(() -> send(emitter, SseEmitter.event().comment("")));
+            }
+        }
+    }
+
+    private void send(SseEmitter emitter, Event event) {
+        send(emitter, SseEmitter.event().id(epoch + "-" + event.sequence()).name(event.name()).data(event.data()));
+    }
+
+    private void send(SseEmitter emitter, SseEmitter.SseEventBuilder event) {
+        try {
+            emitter.send(event);
+        } catch (IOException | IllegalStateException e) {
+            // Client gone; the emitter's error/completion callback removes it
+            logger.debug("Update stream write failed: {}", e.getMessage());
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+}
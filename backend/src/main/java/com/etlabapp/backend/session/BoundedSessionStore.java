@@ -0,0 +1,284 @@
+package com.etlabapp.backend.session;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * In-memory sessions with a hard capacity and idle expiry, both O(1) per session.
+ *
+ * Sessions are filed in a timing wheel: one slot per expiry tick, covering the idle
+ * timeout. A session goes into the slot of its deadline when stored, and activity
+ * only updates its timestamp. When the wheel reaches a slot, each session in it is
+ * either past its deadline and evicted, or was used since and is moved to the slot
+ * of its new deadline. Over capacity, the sessions in the earliest slots are the
+ * least recently used ones (to within a tick), so those are evicted first.
+ *
+ * Used unless app.cluster.enabled, which shares sessions between instances instead (SharedSessionStore).
+ */
+@Component
+@ConditionalOnProperty(name = "app.cluster.enabled", havingValue = "false", matchIfMissing = true)
+public class BoundedSessionStore implements SessionStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(BoundedSessionStore.class);
+
+    @Value("${app.session.max-sessions:50000}")
+    private int maxSessions;
+
+    @Value("${app.session.idle-timeout-minutes:1440}")
+    private long idleTimeoutMinutes;
+
+    @Value("${app.session.expiry-tick-seconds:60}")
+    private long tickSeconds;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Absent unless app.session.journal.enabled
+    @Autowired(required = false)
+    private SessionJournal journal;
+
+    private final Map<String, UserSession> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong estimatedBytes = new AtomicLong();
+    // Held while slots are drained (expiry tick or capacity eviction); filing a session doesn't take it
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private volatile Consumer<String> evictionListener = username -> {};
+    // Wall clock the wheel turns by; tests drive it by hand
+    private LongSupplier clock = System::currentTimeMillis;
+
+    private Queue<Scheduled>[] wheel;
+    private long tickMillis;
+    private long idleMillis;
+    // Last tick whose slot was drained
+    private volatile long processedTick;
+    private ScheduledExecutorService ticker;
+
+    private Counter idleEvictions;
+    private Counter capacityEvictions;
+
+    /**
+     * A wheel slot entry; stale once the user's stored session is a different object
+     */
+    private record Scheduled(String username, UserSession session) {}
+
+    @PostConstruct
+    @SuppressWarnings("unchecked")
+    void init() throws Exception {
+        tickMillis = TimeUnit.SECONDS.toMillis(tickSeconds);
+        idleMillis = TimeUnit.MINUTES.toMillis(idleTimeoutMinutes);
+        wheel = new Queue[(int) (idleMillis / tickMillis) + 2];
+        for (int i = 0; i < wheel.length; i++) {
+            wheel[i] = new ConcurrentLinkedQueue<>();
+        }
+        processedTick = clock.getAsLong() / tickMillis;
+
+        idleEvictions = meterRegistry.counter("etlab.sessions.evictions", "cause", "idle");
+        capacityEvictions = meterRegistry.counter("etlab.sessions.evictions", "cause", "capacity");
+        Gauge.builder("etlab.sessions.active", sessions, Map::size).register(meterRegistry);
+        Gauge.builder("etlab.sessions.memory", estimatedBytes, AtomicLong::get)
+            .tag("kind", "total").baseUnit("bytes").register(meterRegistry);
+        Gauge.builder("etlab.sessions.memory", this, store -> store.bytesPerSession())
+            .tag("kind", "per-session").baseUnit("bytes").register(meterRegistry);
+
+        if (journal != null) {
+            restore(journal.replay());
+            journal.start(() -> sessions);
+        }
+
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "etlab-session-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleWithFixedDelay(this::expireIdle, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        logger.info("Session store: up to {} sessions, idle timeout {} min, {} expiry slots of {} s",
+                    maxSessions, idleTimeoutMinutes, wheel.length, tickSeconds);
+    }
+
+    @PreDestroy
+    void stop() {
+        ticker.shutdownNow();
+    }
+
+    @Override
+    public UserSession get(String username) {
+        return sessions.get(username);
+    }
+
+    @Override
+    public void put(String username, UserSession session) {
+        UserSession previous = sessions.put(username, session);
+        estimatedBytes.addAndGet(session.getEstimatedBytes() - (previous != null ? previous.getEstimatedBytes() : 0));
+        // The previous session's wheel entry goes stale and is dropped when its slot comes up
+        schedule(new Scheduled(username, session), session.getLastActivity() + idleMillis);
+        if (journal != null) {
+            journal.recordPut(username, session);
+        }
+        if (previous == null && sessions.size() > maxSessions) {
+            evictOverCapacity();
+        }
+    }
+
+    @Override
+    public void update(String username, UserSession session) {
+        if (journal != null && sessions.get(username) == session) {
+            journal.recordPut(username, session);
+        }
+    }
+
+    @Override
+    public void remove(String username) {
+        UserSession removed = sessions.remove(username);
+        if (removed != null) {
+            estimatedBytes.addAndGet(-removed.getEstimatedBytes());
+            if (journal != null) {
+                journal.recordRemove(username);
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return sessions.size();
+    }
+
+    @Override
+    public void setEvictionListener(Consumer<String> listener) {
+        this.evictionListener = listener;
+    }
+
+    /**
+     * Put back the sessions replayed from the journal, skipping those that went idle while down
+     */
+    private void restore(Map<String, UserSession> replayed) {
+        long now = clock.getAsLong();
+        int expired = 0;
+        for (Map.Entry<String, UserSession> entry : replayed.entrySet()) {
+            if (entry.getValue().getLastActivity() + idleMillis <= now) {
+                expired++;
+                continue;
+            }
+            // Oldest first, so over capacity the least recently stored ones go
+            put(entry.getKey(), entry.getValue());
+        }
+        logger.info("Restored {} sessions from the journal ({} had expired)", sessions.size(), expired);
+    }
+
+    /**
+     * Advance the wheel to the current tick, draining each slot passed
+     */
+    void expireIdle() {
+        long now = clock.getAsLong();
+        long nowTick = now / tickMillis;
+        int expired = 0;
+        evictionLock.lock();
+        try {
+            while (processedTick < nowTick) {
+                long tick = processedTick + 1;
+                processedTick = tick;
+                Queue<Scheduled> slot = wheel[slot(tick)];
+                Scheduled entry;
+                while ((entry = slot.poll()) != null) {
+                    if (sessions.get(entry.username()) != entry.session()) {
+                        continue;
+                    }
+                    long deadline = entry.session().getLastActivity() + idleMillis;
+                    if (deadline > now) {
+                        schedule(entry, deadline);
+                    } else if (evict(entry)) {
+                        idleEvictions.increment();
+                        expired++;
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Session expiry tick failed: {}", e.getMessage());
+        } finally {
+            evictionLock.unlock();
+        }
+        if (expired > 0) {
+            logger.info("Expired {} idle sessions ({} active)", expired, sessions.size());
+        }
+    }
+
+    /**
+     * Evict the least recently used sessions until the store is back at capacity
+     */
+    private void evictOverCapacity() {
+        evictionLock.lock();
+        try {
+            long first = processedTick + 1;
+            for (long tick = first; tick < first + wheel.length && sessions.size() > maxSessions; tick++) {
+                Queue<Scheduled> slot = wheel[slot(tick)];
+                Scheduled entry;
+                while (sessions.size() > maxSessions && (entry = slot.poll()) != null) {
+                    if (sessions.get(entry.username()) != entry.session()) {
+                        continue;
+                    }
+                    long deadline = entry.session().getLastActivity() + idleMillis;
+                    if (deadline / tickMillis > tick) {
+                        // Used since it was filed: a later slot, which this scan may still reach
+                        schedule(entry, deadline);
+                    } else if (evict(entry)) {
+                        capacityEvictions.increment();
+                        logger.debug("Evicted session of user {}: session store is full", entry.username());
+                    }
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private boolean evict(Scheduled entry) {
+        if (!sessions.remove(entry.username(), entry.session())) {
+            return false;
+        }
+        estimatedBytes.addAndGet(-entry.session().getEstimatedBytes());
+        if (journal != null) {
+            journal.recordRemove(entry.username());
+        }
+        try {
+            evictionListener.accept(entry.username());
+        } catch (RuntimeException e) {
+            logger.warn("Session eviction listener failed for user {}: {}", entry.username(), e.getMessage());
+        }
+        return true;
+    }
+
+    private void schedule(Scheduled entry, long deadline) {
+        long current = processedTick;
+        // Never the slot being drained, and never so far ahead that it wraps around onto it
+        long tick = Math.min(Math.max(deadline / tickMillis, current + 1), current + wheel.length - 1);
+        wheel[slot(tick)].offer(entry);
+    }
+
+    private int slot(long tick) {
+        return (int) Math.floorMod(tick, (long) wheel.length);
+    }
+
+    private long bytesPerSession() {
+        int count = sessions.size();
+        return count == 0 ? 0 : estimatedBytes.get() / count;
+    }
+}
@@ -0,0 +1,44 @@
+package com.etlabapp.backend.session;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Binary form of a session, for sessions kept outside the process (the journal and the
+ * shared store). Both seal it with a Sealer before it leaves memory.
+ */
+final class SessionCodec {
+
+    private SessionCodec() {}
+
+    /**
+     * Without the password the session can't renew its ETLab token; the user logs in again when it expires
+     */
+    static void writeSession(DataOutputStream data, UserSession session, boolean withPassword) throws IOException {
+        writeNullable(data, session.getEtlabToken());
+        writeNullable(data, session.getUsername());
+        writeNullable(data, withPassword ? session.getPassword() : null);
+        writeNullable(data, session.getJwtToken());
+        data.writeLong(session.getLastActivity());
+    }
+
+    static UserSession readSession(DataInputStream data) throws IOException {
+        String etlabToken = readNullable(data);
+        String username = readNullable(data);
+        String password = readNullable(data);
+        String jwtToken = readNullable(data);
+        return new UserSession(etlabToken, username, password, jwtToken, data.readLong());
+    }
+
+    private static void writeNullable(DataOutputStream data, String value) throws IOException {
+        data.writeBoolean(value != null);
+        if (value != null) {
+            data.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream data) throws IOException {
+        return data.readBoolean() ? data.readUTF() : null;
+    }
+}
@@ -0,0 +1,341 @@
+package com.etlabapp.backend.session;
+
+import com.etlabapp.backend.security.Sealer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.AEADBadTagException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Encrypted append-only journal of session changes, so a restart doesn't log every user out.
+ * Off unless app.session.journal.enabled; the app refuses to start with it on but without
+ * its own app.session.journal.key.
+ *
+ * The session store records each stored, renewed and removed session. Callers only
+ * enqueue the change; a writer thread takes whatever has queued up, appends it as one
+ * write and one fsync (group commit), so a burst of logins costs one disk flush.
+ * Every record is sealed with AES-GCM under a key derived (HKDF) from app.session.journal.key
+ * and the random salt in the file header; that also detects a torn tail: replay stops at
+ * the first record that doesn't decrypt. Passwords are not written, so a restored session
+ * keeps working until its ETLab token expires and the user then logs in again.
+ *
+ * On startup the store replays the journal, then it is compacted: the live sessions
+ * are written under a fresh salt to a new file that atomically replaces the old one. Compaction repeats
+ * every compact-minutes (keeping recorded activity recent) or once the file reaches
+ * compact-bytes.
+ */
+@Component
+@ConditionalOnProperty(name = "app.session.journal.enabled", havingValue = "true")
+public class SessionJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionJournal.class);
+
+    // File header: magic, then the salt of the records' key
+    private static final int MAGIC = 0x45534A31; // "ESJ1"
+    private static final int HEADER_BYTES = 4 + Sealer.SALT_BYTES;
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final int NONCE_BYTES = 12;
+    private static final int MAX_RECORD_BYTES = 64 * 1024;
+
+    @Value("${app.session.journal.path:./data/sessions.journal}")
+    private String path;
+
+    @Value("${app.session.journal.key:}")
+    private String secret;
+
+    @Value("${app.session.journal.max-pending:10000}")
+    private int maxPending;
+
+    @Value("${app.session.journal.compact-minutes:10}")
+    private long compactMinutes;
+
+    @Value("${app.session.journal.compact-bytes:8388608}")
+    private long compactBytes;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final AtomicLong journalBytes = new AtomicLong();
+    private Sealer sealer;
+    private Path file;
+    private BlockingQueue<Change> queue;
+    private Supplier<Map<String, UserSession>> liveSessions;
+    // Owned by the writer thread once started
+    private FileChannel channel;
+    private long lastCompaction;
+    private Thread writer;
+    private volatile boolean running;
+
+    private Counter written;
+    private Counter dropped;
+    private Counter failed;
+    private Counter compactions;
+    private DistributionSummary batchSize;
+
+    /**
+     * A queued change; a PUT is serialized when written, so it carries the session's latest token
+     */
+    private record Change(byte type, String username, UserSession session) {}
+
+    @PostConstruct
+    void init() {
+        Sealer.requireSecret(secret, "app.session.journal.key (SESSION_JOURNAL_KEY)");
+    }
+
+    /**
+     * Read the sessions recorded in the journal, in the order they were last stored
+     */
+    public Map<String, UserSession> replay() throws IOException, GeneralSecurityException {
+        file = Paths.get(path);
+        Map<String, UserSession> sessions = new LinkedHashMap<>();
+        if (!Files.exists(file)) {
+            return sessions;
+        }
+
+        ByteBuffer journal = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (journal.remaining() < HEADER_BYTES || journal.getInt() != MAGIC) {
+            logger.warn("Session journal {} has no valid header, starting without its sessions", file);
+            return sessions;
+        }
+        byte[] salt = new byte[Sealer.SALT_BYTES];
+        journal.get(salt);
+        Sealer recorded = new Sealer(secret, salt, "etlab-session-journal");
+        int records = 0;
+        while (journal.remaining() >= 4) {
+            int length = journal.getInt(journal.position());
+            if (length <= NONCE_BYTES || length > MAX_RECORD_BYTES || length > journal.remaining() - 4) {
+                break;
+            }
+            byte[] sealed = new byte[length];
+            journal.position(journal.position() + 4).get(sealed);
+            byte[] plain;
+            try {
+                plain = recorded.open(sealed);
+            } catch (AEADBadTagException e) {
+                journal.position(journal.position() - 4 - length);
+                break;
+            }
+            apply(plain, sessions);
+            records++;
+        }
+        if (journal.hasRemaining()) {
+            // A write cut short by a crash, or a journal sealed with another key
+            logger.warn("Session journal {}: ignored {} bytes after record {}", file, journal.remaining(), records);
+        }
+        logger.info("Session journal {}: replayed {} records into {} sessions", file, records, sessions.size());
+        return sessions;
+    }
+
+    /**
+     * Compact the journal down to the live sessions and start the writer
+     */
+    public void start(Supplier<Map<String, UserSession>> liveSessions) throws IOException, GeneralSecurityException {
+        this.liveSessions = liveSessions;
+        queue = new LinkedBlockingQueue<>(maxPending);
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        compact();
+
+        written = meterRegistry.counter("etlab.sessions.journal.records", "result", "written");
+        dropped = meterRegistry.counter("etlab.sessions.journal.records", "result", "dropped");
+        failed = meterRegistry.counter("etlab.sessions.journal.records", "result", "failed");
+        compactions = meterRegistry.counter("etlab.sessions.journal.compactions");
+        batchSize = meterRegistry.summary("etlab.sessions.journal.batch");
+        Gauge.builder("etlab.sessions.journal.bytes", journalBytes, AtomicLong::get).baseUnit("bytes").register(meterRegistry);
+
+        running = true;
+        writer = new Thread(this::writeLoop, "etlab-session-journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public void recordPut(String username, UserSession session) {
+        enqueue(new Change(PUT, username, session));
+    }
+
+    public void recordRemove(String username) {
+        enqueue(new Change(REMOVE, username, null));
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        // The writer drains what is queued before it exits
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(5));
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.warn("Could not close session journal: {}", e.getMessage());
+        }
+    }
+
+    private void enqueue(Change change) {
+        if (queue == null) {
+            // Still replaying: the journal already holds this state
+            return;
+        }
+        if (!queue.offer(change)) {
+            dropped.increment();
+        }
+    }
+
+    private void writeLoop() {
+        List<Change> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                Change first = queue.poll(1, TimeUnit.SECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch);
+                    commit(batch);
+                    batch.clear();
+                }
+                if (System.currentTimeMillis() - lastCompaction >= TimeUnit.MINUTES.toMillis(compactMinutes)
+                        || journalBytes.get() >= compactBytes) {
+                    compact();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.warn("Session journal write failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Append a batch of changes with a single write and fsync
+     */
+    private void commit(List<Change> batch) throws IOException {
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        for (Change change : batch) {
+            writeRecord(records, change);
+        }
+        try {
+            writeFully(channel, ByteBuffer.wrap(records.toByteArray()));
+            channel.force(false);
+        } catch (IOException e) {
+            failed.increment(batch.size());
+            throw e;
+        }
+        journalBytes.addAndGet(records.size());
+        written.increment(batch.size());
+        batchSize.record(batch.size());
+    }
+
+    /**
+     * Write the live sessions under a new salt to a new file and swap it in for the journal
+     */
+    private void compact() throws IOException {
+        long start = System.nanoTime();
+        byte[] salt = Sealer.newSalt();
+        sealer = new Sealer(secret, salt, "etlab-session-journal");
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(records);
+        header.writeInt(MAGIC);
+        header.write(salt);
+        int count = 0;
+        for (Map.Entry<String, UserSession> entry : liveSessions.get().entrySet()) {
+            writeRecord(records, new Change(PUT, entry.getKey(), entry.getValue()));
+            count++;
+        }
+        Path compacted = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(out, ByteBuffer.wrap(records.toByteArray()));
+            out.force(true);
+        }
+        if (channel != null) {
+            channel.close();
+        }
+        Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        journalBytes.set(records.size());
+        lastCompaction = System.currentTimeMillis();
+        if (compactions != null) {
+            compactions.increment();
+        }
+        logger.debug("Compacted session journal to {} sessions ({} bytes) in {} ms",
+                     count, records.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void writeRecord(ByteArrayOutputStream out, Change change) throws IOException {
+        ByteArrayOutputStream plain = new ByteArrayOutputStream(256);
+        DataOutputStream data = new DataOutputStream(plain);
+        data.writeByte(change.type());
+        data.writeUTF(change.username());
+        if (change.type() == PUT) {
+            SessionCodec.writeSession(data, change.session(), false);
+        }
+
+        byte[] sealed;
+        try {
+            sealed = sealer.seal(plain.toByteArray());
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Could not seal session record", e);
+        }
+        new DataOutputStream(out).writeInt(sealed.length);
+        out.write(sealed);
+    }
+
+    private static void apply(byte[] plain, Map<String, UserSession> sessions) {
+        try {
+            DataInputStream data = new DataInputStream(new ByteArrayInputStream(plain));
+            byte type = data.readByte();
+            String username = data.readUTF();
+            if (type == PUT) {
+                UserSession session = SessionCodec.readSession(data);
+                // Re-inserted so the map stays in order of the latest store
+                sessions.remove(username);
+                sessions.put(username, session);
+            } else if (type == REMOVE) {
+                sessions.remove(username);
+            }
+        } catch (IOException e) {
+            logger.warn("Skipping malformed session journal record: {}", e.getMessage());
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.etlabapp.backend.session;
+
+import java.util.function.Consumer;
+
+/**
+ * Where the ETLab sessions of logged-in users are kept, keyed by JWT username.
+ * Implementations bound the number of sessions and expire idle ones on their own.
+ */
+public interface SessionStore {
+
+    /**
+     * The user's session, or null if there is none (never logged in, logged out or evicted)
+     */
+    UserSession get(String username);
+
+    /**
+     * The user's session as last stored by any instance, bypassing local caching; the same as
+     * get for a store that isn't shared
+     */
+    default UserSession reload(String username) {
+        return get(username);
+    }
+
+    /**
+     * Store a user's session, replacing any previous one; may evict another user's session
+     */
+    void put(String username, UserSession session);
+
+    /**
+     * Persist a change to a stored session (a renewed ETLab token); no-op if it is no longer stored
+     */
+    void update(String username, UserSession session);
+
+    /**
+     * Remove a user's session (logout); the eviction listener is not called
+     */
+    void remove(String username);
+
+    int size();
+
+    /**
+     * Called with the username of every session the store drops on its own (idle or over capacity)
+     */
+    void setEvictionListener(Consumer<String> listener);
+}
@@ -0,0 +1,305 @@
+package com.etlabapp.backend.session;
+
+import com.etlabapp.backend.cluster.ClusterEvents;
+import com.etlabapp.backend.cluster.ClusterKey;
+import com.etlabapp.backend.security.Sealer;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Sessions shared by every instance on the same database (app.cluster.enabled), so any
+ * instance can serve any user without sticky routing.
+ *
+ * The database holds each session sealed with AES-GCM under a ClusterKey. Reads go
+ * to a local near-cache and only a miss queries the database. Whenever an instance
+ * stores, renews or removes a session it publishes a session event, and the others drop
+ * their cached copy; the next read loads the current one. A load that raced with such
+ * an event is returned but not cached.
+ *
+ * Activity is only tracked locally and written back once per expiry tick. Each tick
+ * also deletes sessions idle for longer than the timeout, then the least recently used
+ * ones over capacity; every instance runs it, and the one whose delete removes the row
+ * reports the eviction.
+ */
+@Component
+@ConditionalOnProperty(name = "app.cluster.enabled", havingValue = "true")
+public class SharedSessionStore implements SessionStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(SharedSessionStore.class);
+
+    @Value("${app.session.max-sessions:50000}")
+    private int maxSessions;
+
+    @Value("${app.session.idle-timeout-minutes:1440}")
+    private long idleTimeoutMinutes;
+
+    @Value("${app.session.expiry-tick-seconds:60}")
+    private long tickSeconds;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ClusterEvents clusterEvents;
+
+    @Autowired
+    private ClusterKey clusterKey;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Sealer sealer;
+    private Cache<String, UserSession> nearCache;
+    // Bumped by every invalidation; a load that saw it change doesn't cache its result
+    private final AtomicLong invalidations = new AtomicLong();
+    private volatile Consumer<String> evictionListener = username -> {};
+    private long idleMillis;
+    // Activity up to this time has been written back
+    private long flushedUntil;
+    private ScheduledExecutorService ticker;
+
+    private Counter nearHits;
+    private Counter nearMisses;
+    private Counter idleEvictions;
+    private Counter capacityEvictions;
+
+    @PostConstruct
+    void init() {
+        sealer = clusterKey.sealer("etlab-cluster-session");
+        idleMillis = TimeUnit.MINUTES.toMillis(idleTimeoutMinutes);
+        // Bounded like the table; expiry is only a safety net, the tick deletes idle sessions
+        nearCache = Caffeine.newBuilder()
+            .maximumSize(maxSessions)
+            .expireAfterAccess(idleMillis, TimeUnit.MILLISECONDS)
+            .build();
+
+        jdbcTemplate.execute("""
+            CREATE TABLE IF NOT EXISTS user_session (
+                username VARCHAR(255) PRIMARY KEY,
+                payload VARBINARY NOT NULL,
+                last_activity BIGINT NOT NULL
+            )""");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS user_session_activity ON user_session (last_activity)");
+
+        clusterEvents.subscribe(ClusterEvents.SESSION, event -> invalidateLocal(event.username()));
+
+        nearHits = meterRegistry.counter("etlab.sessions.nearcache", "result", "hit");
+        nearMisses = meterRegistry.counter("etlab.sessions.nearcache", "result", "miss");
+        idleEvictions = meterRegistry.counter("etlab.sessions.evictions", "cause", "idle");
+        capacityEvictions = meterRegistry.counter("etlab.sessions.evictions", "cause", "capacity");
+        Gauge.builder("etlab.sessions.active", this, SharedSessionStore::size).register(meterRegistry);
+        Gauge.builder("etlab.sessions.nearcache.size", nearCache, Cache::estimatedSize).register(meterRegistry);
+
+        flushedUntil = System.currentTimeMillis();
+        long tickMillis = TimeUnit.SECONDS.toMillis(tickSeconds);
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "etlab-session-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleWithFixedDelay(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        logger.info("Shared session store: up to {} sessions, idle timeout {} min, near-cache invalidated by cluster events",
+                    maxSessions, idleTimeoutMinutes);
+    }
+
+    @PreDestroy
+    void stop() {
+        ticker.shutdownNow();
+        flushActivity();
+    }
+
+    @Override
+    public UserSession get(String username) {
+        UserSession cached = nearCache.getIfPresent(username);
+        if (cached != null) {
+            nearHits.increment();
+            return cached;
+        }
+        nearMisses.increment();
+        long epoch = invalidations.get();
+        UserSession loaded = load(username);
+        if (loaded == null || invalidations.get() != epoch) {
+            return loaded;
+        }
+        UserSession raced = nearCache.asMap().putIfAbsent(username, loaded);
+        return raced != null ? raced : loaded;
+    }
+
+    @Override
+    public UserSession reload(String username) {
+        long epoch = invalidations.get();
+        UserSession loaded = load(username);
+        if (loaded == null) {
+            nearCache.invalidate(username);
+        } else if (invalidations.get() == epoch) {
+            nearCache.put(username, loaded);
+        }
+        return loaded;
+    }
+
+    @Override
+    public void put(String username, UserSession session) {
+        jdbcTemplate.update("MERGE INTO user_session (username, payload, last_activity) KEY (username) VALUES (?, ?, ?)",
+                            username, seal(session), session.getLastActivity());
+        nearCache.put(username, session);
+        clusterEvents.publish(ClusterEvents.SESSION, username);
+    }
+
+    @Override
+    public void update(String username, UserSession session) {
+        int updated = jdbcTemplate.update("UPDATE user_session SET payload = ?, last_activity = GREATEST(last_activity, ?) WHERE username = ?",
+                                          seal(session), session.getLastActivity(), username);
+        if (updated > 0) {
+            nearCache.put(username, session);
+            clusterEvents.publish(ClusterEvents.SESSION, username);
+        }
+    }
+
+    @Override
+    public void remove(String username) {
+        jdbcTemplate.update("DELETE FROM user_session WHERE username = ?", username);
+        nearCache.invalidate(username);
+        clusterEvents.publish(ClusterEvents.SESSION, username);
+    }
+
+    @Override
+    public int size() {
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM user_session", Integer.class);
+        return count != null ? count : 0;
+    }
+
+    @Override
+    public void setEvictionListener(Consumer<String> listener) {
+        this.evictionListener = listener;
+    }
+
+    private void invalidateLocal(String username) {
+        invalidations.incrementAndGet();
+        nearCache.invalidate(username);
+    }
+
+    private UserSession load(String username) {
+        List<UserSession> rows = jdbcTemplate.query(
+            "SELECT payload, last_activity FROM user_session WHERE username = ?",
+            (row, index) -> open(username, row.getBytes("payload"), row.getLong("last_activity")),
+            username);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    void tick() {
+        try {
+            flushActivity();
+            long now = System.currentTimeMillis();
+            List<String> idle = jdbcTemplate.queryForList(
+                "SELECT username FROM user_session WHERE last_activity < ?", String.class, now - idleMillis);
+            int expired = 0;
+            for (String username : idle) {
+                // Activity written back by another instance since the select keeps the session
+                if (evict(username, now - idleMillis)) {
+                    idleEvictions.increment();
+                    expired++;
+                }
+            }
+            int over = size() - maxSessions;
+            if (over > 0) {
+                List<String> oldest = jdbcTemplate.queryForList(
+                    "SELECT username FROM user_session ORDER BY last_activity LIMIT ?", String.class, over);
+                for (String username : oldest) {
+                    if (evict(username, Long.MAX_VALUE)) {
+                        capacityEvictions.increment();
+                        logger.debug("Evicted session of user {}: session store is full", username);
+                    }
+                }
+            }
+            if (expired > 0) {
+                logger.info("Expired {} idle sessions", expired);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Session expiry tick failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Write back the activity of sessions used here since the last flush
+     */
+    private void flushActivity() {
+        long since = flushedUntil;
+        flushedUntil = System.currentTimeMillis();
+        List<Object[]> active = new ArrayList<>();
+        nearCache.asMap().forEach((username, session) -> {
+            if (session.getLastActivity() >= since) {
+                active.add(new Object[] { session.getLastActivity(), username });
+            }
+        });
+        if (!active.isEmpty()) {
+            jdbcTemplate.batchUpdate(
+                "UPDATE user_session SET last_activity = GREATEST(last_activity, ?) WHERE username = ?", active);
+        }
+    }
+
+    /**
+     * Delete the session if it was last active before the cutoff; false if it is gone or was used since
+     */
+    private boolean evict(String username, long activeBefore) {
+        if (jdbcTemplate.update("DELETE FROM user_session WHERE username = ? AND last_activity < ?", username, activeBefore) == 0) {
+            return false;
+        }
+        nearCache.invalidate(username);
+        clusterEvents.publish(ClusterEvents.SESSION, username);
+        try {
+            evictionListener.accept(username);
+        } catch (RuntimeException e) {
+            logger.warn("Session eviction listener failed for user {}: {}", username, e.getMessage());
+        }
+        return true;
+    }
+
+    private byte[] seal(UserSession session) {
+        try {
+            ByteArrayOutputStream plain = new ByteArrayOutputStream(256);
+            SessionCodec.writeSession(new DataOutputStream(plain), session, true);
+            return sealer.seal(plain.toByteArray());
+        } catch (IOException | GeneralSecurityException e) {
+            throw new IllegalStateException("Could not seal session", e);
+        }
+    }
+
+    private UserSession open(String username, byte[] payload, long lastActivity) {
+        try {
+            UserSession stored = SessionCodec.readSession(new DataInputStream(new ByteArrayInputStream(sealer.open(payload))));
+            // The column has the latest activity written back by any instance
+            return new UserSession(stored.getEtlabToken(), stored.getUsername(), stored.getPassword(), stored.getJwtToken(),
+                                   Math.max(stored.getLastActivity(), lastActivity));
+        } catch (IOException | GeneralSecurityException e) {
+            // Sealed under another app.cluster.key: treated as logged out
+            logger.warn("Could not open shared session of user {}: {}", username, e.getMessage());
+            return null;
+        }
+    }
+}
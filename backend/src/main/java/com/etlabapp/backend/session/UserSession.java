@@ -0,0 +1,87 @@
+package com.etlabapp.backend.session;
+
+/**
+ * A logged-in user's ETLab token and the credentials to renew it
+ */
+public class UserSession {
+
+    // After a failed re-login, other waiters on the same token fail fast for this long
+    private static final long REAUTH_FAILURE_BACKOFF_MS = 5000;
+
+    // Activity is only recorded once per this interval, so hot reads don't keep writing the same cache line
+    private static final long ACTIVITY_RESOLUTION_MS = 1000;
+
+    // Object headers, fields, map entry and expiry queue node, without the strings
+    private static final int FIXED_BYTES = 160;
+
+    private volatile String etlabToken;
+    // Bumped every time etlabToken is replaced; lets a 401 tell whether its token is still current
+    private volatile long tokenGeneration;
+    private volatile long reauthFailedGeneration = -1;
+    private volatile long reauthFailedAt;
+    private final String username;
+    private final String password;
+    private final String jwtToken;
+    private volatile long lastActivity;
+    private final int estimatedBytes;
+
+    public UserSession(String etlabToken, String username, String password, String jwtToken) {
+        this(etlabToken, username, password, jwtToken, System.currentTimeMillis());
+    }
+
+    /**
+     * A session restored with its last recorded activity (see SessionJournal)
+     */
+    public UserSession(String etlabToken, String username, String password, String jwtToken, long lastActivity) {
+        this.etlabToken = etlabToken;
+        this.username = username;
+        this.password = password;
+        this.jwtToken = jwtToken;
+        this.lastActivity = lastActivity;
+        this.estimatedBytes = FIXED_BYTES + stringBytes(etlabToken) + 2 * stringBytes(username)
+            + stringBytes(password) + stringBytes(jwtToken);
+    }
+
+    /**
+     * Record a use of the session: a plain read and at most one write per second, no locking
+     */
+    public void updateActivity() {
+        long now = System.currentTimeMillis();
+        if (now - lastActivity >= ACTIVITY_RESOLUTION_MS) {
+            lastActivity = now;
+        }
+    }
+
+    // Getters
+    public String getEtlabToken() { return etlabToken; }
+    public String getUsername() { return username; }
+    public String getPassword() { return password; }
+    public long getLastActivity() { return lastActivity; }
+    public String getJwtToken() { return jwtToken; }
+    public long getTokenGeneration() { return tokenGeneration; }
+
+    /** Approximate heap footprint, for the session memory gauge */
+    public int getEstimatedBytes() { return estimatedBytes; }
+
+    // Setters
+    public void setEtlabToken(String etlabToken) {
+        // Token is written before the generation so a reader that sees the new generation sees the new token
+        this.etlabToken = etlabToken;
+        this.tokenGeneration++;
+    }
+
+    public void markReauthFailed(long generation) {
+        this.reauthFailedAt = System.currentTimeMillis();
+        this.reauthFailedGeneration = generation;
+    }
+
+    public boolean reauthRecentlyFailed(long generation) {
+        return reauthFailedGeneration == generation
+            && System.currentTimeMillis() - reauthFailedAt < REAUTH_FAILURE_BACKOFF_MS;
+    }
+
+    private static int stringBytes(String value) {
+        // String object plus its (usually Latin-1) byte array
+        return value == null ? 0 : 40 + value.length();
+    }
+}
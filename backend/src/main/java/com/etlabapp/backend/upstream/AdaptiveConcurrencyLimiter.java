@@ -0,0 +1,232 @@
+package com.etlabapp.backend.upstream;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * AIMD limit on the total number of concurrent calls to ETLab.
+ *
+ * Every completed call is a sample. A 429, a 5xx, a network error or a latency well
+ * above that endpoint's long-run average is a congestion signal and cuts the limit
+ * multiplicatively (at most once per average round trip). Healthy samples taken
+ * while the limit is actually in use grow it by about one call per window. Callers
+ * over the limit queue until their deadline and are then shed.
+ */
+@Component
+public class AdaptiveConcurrencyLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveConcurrencyLimiter.class);
+
+    // Latency samples needed before the average is trusted as a baseline
+    private static final int BASELINE_WARMUP_SAMPLES = 20;
+    private static final double BASELINE_ALPHA = 0.05;
+
+    // Ignore slowdowns smaller than this, so jitter on very fast endpoints isn't read as congestion
+    private static final long MIN_SLOWDOWN_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    public enum Outcome { OK, THROTTLED, SERVER_ERROR, NETWORK_ERROR }
+
+    @Value("${app.etlab.limiter.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.etlab.limiter.initial-limit:20}")
+    private int initialLimit;
+
+    @Value("${app.etlab.limiter.min-limit:2}")
+    private int minLimit;
+
+    @Value("${app.etlab.limiter.max-limit:200}")
+    private int maxLimit;
+
+    @Value("${app.etlab.limiter.backoff-ratio:0.7}")
+    private double backoffRatio;
+
+    // A sample slower than tolerance x the average latency counts as congestion
+    @Value("${app.etlab.limiter.latency-tolerance:2.0}")
+    private double latencyTolerance;
+
+    @Value("${app.etlab.limiter.max-wait-ms:2000}")
+    private long maxWaitMillis;
+
+    private final MeterRegistry meterRegistry;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition capacityAvailable = lock.newCondition();
+
+    private double limit;
+    private int inFlight;
+    private long lastDecreaseNanos;
+    // Endpoints differ a lot (login vs timetable), so each gets its own latency baseline
+    private final Map<String, LatencyBaseline> baselines = new HashMap<>();
+
+    private Counter shed;
+    private Counter decreases;
+    private Timer queueWait;
+
+    public AdaptiveConcurrencyLimiter(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    void init() {
+        limit = Math.max(minLimit, Math.min(initialLimit, maxLimit));
+
+        Gauge.builder("etlab.upstream.limiter.limit", this, AdaptiveConcurrencyLimiter::getLimit).register(meterRegistry);
+        Gauge.builder("etlab.upstream.limiter.inflight", this, AdaptiveConcurrencyLimiter::getInFlight).register(meterRegistry);
+        shed = meterRegistry.counter("etlab.upstream.limiter.shed");
+        decreases = meterRegistry.counter("etlab.upstream.limiter.decreases");
+        queueWait = meterRegistry.timer("etlab.upstream.limiter.queue.wait");
+
+        logger.info("Upstream concurrency limiter enabled={}, limit={} (min {}, max {}), maxWait={}ms",
+                    enabled, (int) limit, minLimit, maxLimit, maxWaitMillis);
+    }
+
+    /**
+     * Take a slot, queueing up to the configured deadline if mayWait is set.
+     * Returns the start time to pass to release, or -1 if the call was shed.
+     */
+    public long tryAcquire(boolean mayWait) {
+        if (!enabled) {
+            return System.nanoTime();
+        }
+
+        long start = System.nanoTime();
+        long remaining = mayWait ? TimeUnit.MILLISECONDS.toNanos(maxWaitMillis) : 0;
+        lock.lock();
+        try {
+            while (inFlight >= (int) limit) {
+                if (remaining <= 0) {
+                    shed.increment();
+                    return -1;
+                }
+                remaining = capacityAvailable.awaitNanos(remaining);
+            }
+            inFlight++;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            shed.increment();
+            return -1;
+        } finally {
+            lock.unlock();
+        }
+
+        long acquired = System.nanoTime();
+        if (mayWait) {
+            queueWait.record(acquired - start, TimeUnit.NANOSECONDS);
+        }
+        return acquired;
+    }
+
+    /**
+     * Return a slot and feed the call's outcome into the limit
+     */
+    public void release(String endpoint, long startNanos, Outcome outcome) {
+        if (!enabled) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        long latency = now - startNanos;
+        lock.lock();
+        try {
+            boolean utilized = inFlight >= limit / 2;
+            inFlight--;
+
+            LatencyBaseline baseline = baselines.computeIfAbsent(endpoint, e -> new LatencyBaseline());
+            boolean slow = baseline.samples >= BASELINE_WARMUP_SAMPLES
+                && latency > latencyTolerance * baseline.averageNanos
+                && latency - baseline.averageNanos > MIN_SLOWDOWN_NANOS;
+            if (outcome != Outcome.OK || slow) {
+                // One cut per round trip: the calls already in flight carry the same signal
+                if (now - lastDecreaseNanos > baseline.averageNanos) {
+                    double previous = limit;
+                    limit = Math.max(minLimit, limit * backoffRatio);
+                    lastDecreaseNanos = now;
+                    decreases.increment();
+                    logger.debug("Upstream limit {} -> {} ({}{})", (int) previous, (int) limit, outcome, slow ? ", slow" : "");
+                }
+            } else if (utilized) {
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+
+            if (outcome == Outcome.OK) {
+                baseline.add(latency);
+            }
+            capacityAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Give a slot back without a sample (the call never reached ETLab)
+     */
+    public void cancel() {
+        if (!enabled) {
+            return;
+        }
+        lock.lock();
+        try {
+            inFlight--;
+            capacityAvailable.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Whether fewer than share x limit calls are in flight. Background work (prefetch,
+     * refresh) checks this so it only uses capacity interactive requests leave idle.
+     */
+    public boolean hasHeadroom(double share) {
+        if (!enabled) {
+            return true;
+        }
+        lock.lock();
+        try {
+            return inFlight < limit * share;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class LatencyBaseline {
+        private double averageNanos;
+        private long samples;
+
+        void add(long latencyNanos) {
+            averageNanos = samples == 0 ? latencyNanos : averageNanos + BASELINE_ALPHA * (latencyNanos - averageNanos);
+            samples++;
+        }
+    }
+
+    public double getLimit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.etlabapp.backend.upstream;
+
+/**
+ * Count-based circuit breaker for one upstream endpoint.
+ *
+ * The outcomes of the last windowSize calls are kept in a ring. Once at least
+ * minimumCalls are recorded and the failure rate reaches the threshold, the circuit
+ * opens and rejects calls for openMillis. It then lets halfOpenProbes calls through:
+ * if they all succeed it closes again, a single failure re-opens it.
+ */
+public final class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openMillis;
+    private final int halfOpenProbes;
+
+    private final boolean[] outcomes;
+    private int recorded;
+    private int next;
+    private int failures;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int probesIssued;
+    private int probesSucceeded;
+
+    public CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold,
+                          long openMillis, int halfOpenProbes) {
+        this.windowSize = windowSize;
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openMillis = openMillis;
+        this.halfOpenProbes = halfOpenProbes;
+        this.outcomes = new boolean[windowSize];
+    }
+
+    /**
+     * Whether a call may proceed now. In half-open state this hands out one of the probe slots.
+     */
+    public synchronized boolean tryAcquire(long now) {
+        if (state == State.OPEN) {
+            if (now - openedAt < openMillis) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            probesIssued = 0;
+            probesSucceeded = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesIssued >= halfOpenProbes) {
+                return false;
+            }
+            probesIssued++;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            if (++probesSucceeded >= halfOpenProbes) {
+                state = State.CLOSED;
+                resetWindow();
+            }
+            return;
+        }
+        record(false);
+    }
+
+    public synchronized void onFailure(long now) {
+        if (state == State.HALF_OPEN) {
+            open(now);
+            return;
+        }
+        if (state == State.OPEN) {
+            return;
+        }
+        record(true);
+        if (recorded >= minimumCalls && (double) failures / recorded >= failureRateThreshold) {
+            open(now);
+        }
+    }
+
+    /**
+     * Give back a probe slot for a call that was admitted but never reached ETLab
+     */
+    public synchronized void release() {
+        if (state == State.HALF_OPEN && probesIssued > 0) {
+            probesIssued--;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Milliseconds until an open circuit will admit probes again (0 when not open)
+     */
+    public synchronized long remainingOpenMillis(long now) {
+        return state == State.OPEN ? Math.max(0, openMillis - (now - openedAt)) : 0;
+    }
+
+    public synchronized double getFailureRate() {
+        return recorded == 0 ? 0 : (double) failures / recorded;
+    }
+
+    private void record(boolean failed) {
+        if (recorded == windowSize) {
+            if (outcomes[next]) {
+                failures--;
+            }
+        } else {
+            recorded++;
+        }
+        outcomes[next] = failed;
+        if (failed) {
+            failures++;
+        }
+        next = (next + 1) % windowSize;
+    }
+
+    private void open(long now) {
+        state = State.OPEN;
+        openedAt = now;
+        resetWindow();
+    }
+
+    private void resetWindow() {
+        recorded = 0;
+        next = 0;
+        failures = 0;
+    }
+}
@@ -0,0 +1,105 @@
+package com.etlabapp.backend.upstream;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.codec.CodecException;
+import org.springframework.http.client.reactive.JdkClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking client for ETLab GETs.
+ *
+ * Requests are multiplexed by the JDK HttpClient's selector, so an outstanding call
+ * holds no thread while ETLab is responding. Failures surface as the usual
+ * WebClientResponseException / WebClientRequestException on the returned future.
+ *
+ * Each call holds an UpstreamGuard permit (same circuit breaker, bulkhead and adaptive
+ * limit as the RestTemplate path) until its body has been read, so the slots cover the
+ * transfer and a body that times out or is cut off counts as a failure. Calls over a
+ * limit are shed immediately since queueing would block the caller.
+ */
+@Component
+public class ReactiveEtlabClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveEtlabClient.class);
+
+    // Timetable and results documents can exceed WebClient's 256 KB default buffer
+    private static final int MAX_RESPONSE_BYTES = 4 * 1024 * 1024;
+
+    @Value("${app.etlab.api-base-url}")
+    private String apiBaseUrl;
+
+    @Value("${app.etlab.http.connect-timeout-seconds:10}")
+    private int connectTimeoutSeconds;
+
+    @Value("${app.etlab.http.read-timeout-seconds:20}")
+    private int readTimeoutSeconds;
+
+    @Autowired
+    private WebClient.Builder webClientBuilder;
+
+    @Autowired
+    private UpstreamGuard upstreamGuard;
+
+    private WebClient webClient;
+
+    @PostConstruct
+    void init() {
+        HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(connectTimeoutSeconds))
+            .build();
+
+        JdkClientHttpConnector connector = new JdkClientHttpConnector(httpClient);
+        connector.setReadTimeout(Duration.ofSeconds(readTimeoutSeconds));
+
+        webClient = webClientBuilder.clone()
+            .baseUrl(apiBaseUrl)
+            .clientConnector(connector)
+            .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(MAX_RESPONSE_BYTES))
+            .build();
+
+        logger.info("Reactive ETLab client: connectTimeout={}s, readTimeout={}s", connectTimeoutSeconds, readTimeoutSeconds);
+    }
+
+    /**
+     * GET an ETLab endpoint with the given bearer token. Completes with null on an empty body.
+     */
+    public <T> CompletableFuture<T> get(String endpoint, String etlabToken, Class<T> responseType) {
+        return Mono.defer(() -> {
+            UpstreamGuard.Permit permit = upstreamGuard.acquire(UpstreamGuard.endpointOf(URI.create(apiBaseUrl + endpoint)), false);
+            // Status of the response once its headers are in; 0 until then
+            AtomicInteger status = new AtomicInteger();
+            return webClient.get()
+                .uri(endpoint)
+                .headers(headers -> headers.setBearerAuth(etlabToken))
+                .exchangeToMono(response -> {
+                    status.set(response.statusCode().value());
+                    // Error statuses read their body into the exception, like retrieve()
+                    return response.statusCode().isError() ? response.<T>createError() : response.bodyToMono(responseType);
+                })
+                .doOnSuccess(body -> permit.onResponse(status.get()))
+                .doOnError(error -> {
+                    if (error instanceof WebClientResponseException || error instanceof CodecException) {
+                        // ETLab answered in full; the status decides, as for a body that doesn't parse on the blocking path
+                        permit.onResponse(status.get());
+                    } else {
+                        permit.onFailure();
+                    }
+                })
+                .doOnCancel(permit::release);
+        }).toFuture();
+    }
+}
@@ -0,0 +1,123 @@
+package com.etlabapp.backend.upstream;
+
+import com.etlabapp.backend.cache.CacheKey;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight registry for upstream GETs.
+ *
+ * The first caller for a (user, endpoint) key performs the upstream call; callers
+ * that arrive while it is outstanding wait on the same future and receive its
+ * result or its exception instead of issuing a duplicate request.
+ */
+@Component
+public class RequestCoalescer {
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestCoalescer.class);
+
+    private final ConcurrentHashMap<CacheKey, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Counter leaderCalls;
+    private final Counter coalescedCalls;
+
+    public RequestCoalescer(MeterRegistry meterRegistry) {
+        this.leaderCalls = meterRegistry.counter("etlab.upstream.coalescing", "role", "leader");
+        this.coalescedCalls = meterRegistry.counter("etlab.upstream.coalescing", "role", "coalesced");
+        Gauge.builder("etlab.upstream.inflight", inFlight, ConcurrentHashMap::size).register(meterRegistry);
+    }
+
+    /**
+     * Run the call for this key, or join the identical call already in flight
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(CacheKey key, Supplier<T> call) {
+        CompletableFuture<Object> ours = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, ours);
+
+        if (existing != null) {
+            coalescedCalls.increment();
+            logger.debug("Joining in-flight {} call for user {}", key.endpoint(), key.username());
+            return (T) await(existing);
+        }
+
+        leaderCalls.increment();
+        try {
+            T result = call.get();
+            ours.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            ours.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, ours);
+        }
+    }
+
+    /**
+     * Asynchronous variant: start the call for this key, or return the future of the identical
+     * call already in flight. Shares the registry with execute(), so blocking and async callers coalesce.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> executeAsync(CacheKey key, Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<Object> ours = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, ours);
+
+        if (existing != null) {
+            coalescedCalls.increment();
+            logger.debug("Joining in-flight {} call for user {}", key.endpoint(), key.username());
+            return (CompletableFuture<T>) (CompletableFuture<?>) existing;
+        }
+
+        leaderCalls.increment();
+        CompletableFuture<T> started;
+        try {
+            started = call.get();
+        } catch (RuntimeException e) {
+            started = CompletableFuture.failedFuture(e);
+        }
+        started.whenComplete((result, error) -> {
+            inFlight.remove(key, ours);
+            if (error != null) {
+                ours.completeExceptionally(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+            } else {
+                ours.complete(result);
+            }
+        });
+        return (CompletableFuture<T>) (CompletableFuture<?>) ours;
+    }
+
+    /**
+     * Whether a call for this key is currently outstanding
+     */
+    public boolean isInFlight(CacheKey key) {
+        return inFlight.containsKey(key);
+    }
+
+    public long getCoalescedCount() {
+        return (long) coalescedCalls.count();
+    }
+
+    private Object await(CompletableFuture<Object> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            // Surface the leader's exception unchanged so callers map it the same way
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
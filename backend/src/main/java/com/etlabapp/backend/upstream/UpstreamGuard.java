@@ -0,0 +1,268 @@
+package com.etlabapp.backend.upstream;
+
+import com.etlabapp.backend.exception.UpstreamUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Circuit breaker and concurrency bulkhead per ETLab endpoint, in front of the
+ * global AdaptiveConcurrencyLimiter.
+ *
+ * Every upstream call acquires a Permit first. When the endpoint's circuit is open
+ * or its bulkhead is full the call fails fast with UpstreamUnavailableException
+ * instead of waiting on a socket, so an ETLab outage can't tie up our threads.
+ * Network errors and 5xx responses count as failures; 4xx responses mean ETLab
+ * is up and count as successes.
+ */
+@Component
+public class UpstreamGuard {
+
+    private static final Logger logger = LoggerFactory.getLogger(UpstreamGuard.class);
+
+    private static final List<String> KNOWN_ENDPOINTS = List.of(
+        "/login", "/profile", "/results", "/attendance", "/timetable", "/end-semester-results");
+
+    private final MeterRegistry meterRegistry;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final UpstreamWarmer warmer;
+    private final ConcurrentHashMap<String, EndpointGuard> guards = new ConcurrentHashMap<>();
+
+    @Value("${app.etlab.resilience.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.etlab.resilience.window-size:20}")
+    private int windowSize;
+
+    @Value("${app.etlab.resilience.minimum-calls:10}")
+    private int minimumCalls;
+
+    @Value("${app.etlab.resilience.failure-rate-threshold:0.5}")
+    private double failureRateThreshold;
+
+    @Value("${app.etlab.resilience.open-seconds:30}")
+    private long openSeconds;
+
+    @Value("${app.etlab.resilience.half-open-probes:3}")
+    private int halfOpenProbes;
+
+    @Value("${app.etlab.resilience.bulkhead.max-concurrent:40}")
+    private int bulkheadMaxConcurrent;
+
+    @Value("${app.etlab.resilience.bulkhead.max-wait-ms:500}")
+    private long bulkheadMaxWaitMillis;
+
+    public UpstreamGuard(MeterRegistry meterRegistry, AdaptiveConcurrencyLimiter limiter, UpstreamWarmer warmer) {
+        this.meterRegistry = meterRegistry;
+        this.limiter = limiter;
+        this.warmer = warmer;
+    }
+
+    @PostConstruct
+    void init() {
+        // Register the known endpoints up front so their metrics exist before the first call
+        KNOWN_ENDPOINTS.forEach(this::guardFor);
+        logger.info("Upstream guard enabled={}, window={}, failureRate>={}, open={}s, bulkhead={} per endpoint",
+                    enabled, windowSize, failureRateThreshold, openSeconds, bulkheadMaxConcurrent);
+    }
+
+    /**
+     * Admit a call to the endpoint: circuit breaker, then the endpoint's bulkhead, then the
+     * global adaptive limit, so a call to an open circuit fails fast without queueing on the
+     * limit. Only blocking callers (mayWait) queue for the bulkhead and limiter.
+     * The returned permit must be completed with exactly one of onResponse, onFailure or release.
+     */
+    public Permit acquire(String endpoint, boolean mayWait) {
+        EndpointGuard guard = enabled ? acquireGuard(endpoint, mayWait) : null;
+        long limiterStart = limiter.tryAcquire(mayWait);
+        if (limiterStart < 0) {
+            if (guard != null) {
+                guard.bulkhead.release();
+                guard.breaker.release();
+            }
+            throw new UpstreamUnavailableException("Upstream concurrency limit reached", 1);
+        }
+        return new Permit(endpoint, guard, limiter, warmer, limiterStart);
+    }
+
+    /**
+     * Pass the endpoint's breaker and take a bulkhead slot
+     */
+    private EndpointGuard acquireGuard(String endpoint, boolean mayWait) {
+        EndpointGuard guard = guardFor(endpoint);
+        long now = System.currentTimeMillis();
+        if (!guard.breaker.tryAcquire(now)) {
+            guard.rejected.increment();
+            long retryAfter = Math.max(1, TimeUnit.MILLISECONDS.toSeconds(guard.breaker.remainingOpenMillis(now) + 999));
+            throw new UpstreamUnavailableException("Circuit open for " + endpoint, retryAfter);
+        }
+
+        boolean admitted;
+        try {
+            admitted = mayWait
+                ? guard.bulkhead.tryAcquire(bulkheadMaxWaitMillis, TimeUnit.MILLISECONDS)
+                : guard.bulkhead.tryAcquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            admitted = false;
+        }
+        if (!admitted) {
+            guard.breaker.release();
+            guard.bulkheadFull.increment();
+            throw new UpstreamUnavailableException("Too many concurrent calls to " + endpoint, 1);
+        }
+        return guard;
+    }
+
+    /**
+     * Endpoint name (e.g. "/profile") for an ETLab request URI
+     */
+    public static String endpointOf(URI uri) {
+        String path = uri.getPath();
+        if (path == null || path.isEmpty()) {
+            return "/";
+        }
+        return path.substring(path.lastIndexOf('/'));
+    }
+
+    public CircuitBreaker.State getState(String endpoint) {
+        return guardFor(endpoint).breaker.getState();
+    }
+
+    private EndpointGuard guardFor(String endpoint) {
+        return guards.computeIfAbsent(endpoint, this::newGuard);
+    }
+
+    private EndpointGuard newGuard(String endpoint) {
+        CircuitBreaker breaker = new CircuitBreaker(windowSize, minimumCalls, failureRateThreshold,
+                                                    TimeUnit.SECONDS.toMillis(openSeconds), halfOpenProbes);
+        Semaphore bulkhead = new Semaphore(bulkheadMaxConcurrent);
+
+        Gauge.builder("etlab.upstream.breaker.state", breaker, b -> b.getState().ordinal())
+            .description("0 = closed, 1 = open, 2 = half-open")
+            .tag("endpoint", endpoint)
+            .register(meterRegistry);
+        Gauge.builder("etlab.upstream.breaker.failure.rate", breaker, CircuitBreaker::getFailureRate)
+            .tag("endpoint", endpoint)
+            .register(meterRegistry);
+        Gauge.builder("etlab.upstream.bulkhead.active", bulkhead, s -> bulkheadMaxConcurrent - s.availablePermits())
+            .tag("endpoint", endpoint)
+            .register(meterRegistry);
+
+        return new EndpointGuard(endpoint, breaker, bulkhead,
+            meterRegistry.counter("etlab.upstream.calls", "endpoint", endpoint, "outcome", "success"),
+            meterRegistry.counter("etlab.upstream.calls", "endpoint", endpoint, "outcome", "failure"),
+            meterRegistry.counter("etlab.upstream.calls", "endpoint", endpoint, "outcome", "circuit_open"),
+            meterRegistry.counter("etlab.upstream.calls", "endpoint", endpoint, "outcome", "bulkhead_full"));
+    }
+
+    private record EndpointGuard(String endpoint, CircuitBreaker breaker, Semaphore bulkhead,
+                                 Counter succeeded, Counter failed, Counter rejected, Counter bulkheadFull) {
+    }
+
+    /**
+     * An admitted call. Completing it records the outcome and frees the bulkhead and limiter slots.
+     */
+    public static class Permit {
+        private final String endpoint;
+        private final EndpointGuard guard;
+        private final AdaptiveConcurrencyLimiter limiter;
+        private final UpstreamWarmer warmer;
+        private final long limiterStart;
+        private boolean done;
+
+        Permit(String endpoint, EndpointGuard guard, AdaptiveConcurrencyLimiter limiter,
+               UpstreamWarmer warmer, long limiterStart) {
+            this.endpoint = endpoint;
+            this.guard = guard;
+            this.limiter = limiter;
+            this.warmer = warmer;
+            this.limiterStart = limiterStart;
+        }
+
+        /**
+         * ETLab answered. 5xx is a breaker failure; 429 and 5xx both shrink the adaptive limit.
+         */
+        public void onResponse(int status) {
+            if (!finish()) {
+                return;
+            }
+            if (status >= 500) {
+                limiter.release(endpoint, limiterStart, AdaptiveConcurrencyLimiter.Outcome.SERVER_ERROR);
+                recordFailure();
+            } else {
+                warmer.recordResponse(System.nanoTime() - limiterStart);
+                limiter.release(endpoint, limiterStart, status == 429
+                    ? AdaptiveConcurrencyLimiter.Outcome.THROTTLED
+                    : AdaptiveConcurrencyLimiter.Outcome.OK);
+                if (guard != null) {
+                    guard.breaker.onSuccess();
+                    guard.succeeded.increment();
+                }
+            }
+            releaseBulkhead();
+        }
+
+        /**
+         * The call failed without a response (connect/read timeout, connection reset)
+         */
+        public void onFailure() {
+            if (finish()) {
+                limiter.release(endpoint, limiterStart, AdaptiveConcurrencyLimiter.Outcome.NETWORK_ERROR);
+                recordFailure();
+                releaseBulkhead();
+            }
+        }
+
+        /**
+         * Free the slots without recording an outcome (e.g. the call was cancelled)
+         */
+        public void release() {
+            if (finish()) {
+                limiter.cancel();
+                if (guard != null) {
+                    guard.breaker.release();
+                }
+                releaseBulkhead();
+            }
+        }
+
+        private void recordFailure() {
+            if (guard == null) {
+                return;
+            }
+            CircuitBreaker.State before = guard.breaker.getState();
+            guard.breaker.onFailure(System.currentTimeMillis());
+            guard.failed.increment();
+            if (before != CircuitBreaker.State.OPEN && guard.breaker.getState() == CircuitBreaker.State.OPEN) {
+                logger.warn("Circuit for ETLab {} opened", guard.endpoint);
+            }
+        }
+
+        private synchronized boolean finish() {
+            if (done) {
+                return false;
+            }
+            done = true;
+            return true;
+        }
+
+        // Slots are freed in the reverse order they were taken: limiter, breaker, then bulkhead
+        private void releaseBulkhead() {
+            if (guard != null) {
+                guard.bulkhead.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.etlabapp.backend.upstream;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Routes every RestTemplate call to ETLab through the endpoint's UpstreamGuard permit.
+ *
+ * The permit is held until the response body has been read to the end or closed, so
+ * the bulkhead and limiter slots cover the transfer, the latency sample includes it,
+ * and a read that times out or is reset counts as a failure.
+ */
+public class UpstreamGuardInterceptor implements ClientHttpRequestInterceptor {
+
+    private final UpstreamGuard guard;
+
+    public UpstreamGuardInterceptor(UpstreamGuard guard) {
+        this.guard = guard;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        UpstreamGuard.Permit permit = guard.acquire(UpstreamGuard.endpointOf(request.getURI()), true);
+        try {
+            ClientHttpResponse response = execution.execute(request, body);
+            return new GuardedResponse(response, permit, response.getStatusCode().value());
+        } catch (IOException | RuntimeException e) {
+            permit.onFailure();
+            throw e;
+        }
+    }
+
+    /**
+     * Completes the permit once the body is done with; the first completion wins
+     */
+    private static final class GuardedResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse delegate;
+        private final UpstreamGuard.Permit permit;
+        private final int status;
+        private InputStream body;
+
+        GuardedResponse(ClientHttpResponse delegate, UpstreamGuard.Permit permit, int status) {
+            this.delegate = delegate;
+            this.permit = permit;
+            this.status = status;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            if (body == null) {
+                try {
+                    body = new GuardedBody(delegate.getBody());
+                } catch (IOException e) {
+                    permit.onFailure();
+                    throw e;
+                }
+            }
+            return body;
+        }
+
+        @Override
+        public void close() {
+            try {
+                delegate.close();
+            } finally {
+                permit.onResponse(status);
+            }
+        }
+
+        private final class GuardedBody extends FilterInputStream {
+
+            GuardedBody(InputStream in) {
+                super(in);
+            }
+
+            @Override
+            public int read() throws IOException {
+                try {
+                    int read = super.read();
+                    if (read < 0) {
+                        permit.onResponse(status);
+                    }
+                    return read;
+                } catch (IOException e) {
+                    permit.onFailure();
+                    throw e;
+                }
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                try {
+                    int read = super.read(buffer, offset, length);
+                    if (read < 0) {
+                        permit.onResponse(status);
+                    }
+                    return read;
+                } catch (IOException e) {
+                    permit.onFailure();
+                    throw e;
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } catch (IOException e) {
+                    permit.onFailure();
+                    throw e;
+                }
+                permit.onResponse(status);
+            }
+        }
+    }
+}
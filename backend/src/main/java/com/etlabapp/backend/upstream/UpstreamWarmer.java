@@ -0,0 +1,184 @@
+package com.etlabapp.backend.upstream;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the ETLab host awake and detects its cold starts.
+ *
+ * The default ETLab host sleeps after a quiet period and the next request then
+ * waits for it to boot. Every response from ETLab is reported here; when nothing
+ * has answered for keepalive-after-ms, a lightweight probe is sent so the host
+ * never reaches its idle timeout. Probes go through the pooled HTTP client, which
+ * also keeps a warm connection in the pool. Any slow first response after a quiet
+ * period (request or probe) is counted as a cold start.
+ */
+@Component
+public class UpstreamWarmer {
+
+    private static final Logger logger = LoggerFactory.getLogger(UpstreamWarmer.class);
+
+    @Value("${app.etlab.api-base-url}")
+    private String apiBaseUrl;
+
+    @Value("${app.etlab.warmer.enabled:true}")
+    private boolean enabled;
+
+    // Any HTTP answer proves the host is up, so an unauthenticated path is fine
+    @Value("${app.etlab.warmer.probe-path:/}")
+    private String probePath;
+
+    @Value("${app.etlab.warmer.keepalive-after-ms:600000}")
+    private long keepaliveAfterMillis;
+
+    @Value("${app.etlab.warmer.check-interval-ms:30000}")
+    private long checkIntervalMillis;
+
+    // First probe after startup, once the app is up rather than while its context is still starting
+    @Value("${app.etlab.warmer.initial-delay-ms:15000}")
+    private long initialDelayMillis;
+
+    // A first response after at least this much silence that is slower than the threshold is a cold start
+    @Value("${app.etlab.warmer.cold-idle-ms:300000}")
+    private long coldIdleMillis;
+
+    @Value("${app.etlab.warmer.cold-start-threshold-ms:5000}")
+    private long coldStartThresholdMillis;
+
+    // Waking a sleeping host takes longer than a normal read timeout
+    @Value("${app.etlab.warmer.probe-timeout-seconds:90}")
+    private long probeTimeoutSeconds;
+
+    @Autowired
+    private CloseableHttpClient etlabHttpClient;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private volatile long lastResponseAt;
+    private ScheduledExecutorService scheduler;
+
+    private Counter requestColdStarts;
+    private Counter probeColdStarts;
+    private Counter probesOk;
+    private Counter probesFailed;
+    private Timer firstResponseAfterIdle;
+
+    @PostConstruct
+    void init() {
+        requestColdStarts = meterRegistry.counter("etlab.upstream.coldstarts", "source", "request");
+        probeColdStarts = meterRegistry.counter("etlab.upstream.coldstarts", "source", "probe");
+        probesOk = meterRegistry.counter("etlab.upstream.probes", "result", "ok");
+        probesFailed = meterRegistry.counter("etlab.upstream.probes", "result", "failed");
+        firstResponseAfterIdle = meterRegistry.timer("etlab.upstream.first.response.after.idle");
+        Gauge.builder("etlab.upstream.idle.seconds", this, w -> w.getIdleMillis() / 1000.0).register(meterRegistry);
+
+        if (!enabled) {
+            logger.info("Upstream warmer disabled");
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "etlab-warmer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Probe soon after startup so the host boots while we take our first requests, then keep it awake
+        scheduler.scheduleWithFixedDelay(this::probeIfIdle, initialDelayMillis, checkIntervalMillis, TimeUnit.MILLISECONDS);
+        logger.info("Upstream warmer: probe {}{} after {}ms idle, cold start = first response > {}ms after {}ms idle",
+                    apiBaseUrl, probePath, keepaliveAfterMillis, coldStartThresholdMillis, coldIdleMillis);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Called for every response ETLab sent. latencyNanos is measured from when the call was sent.
+     */
+    public void recordResponse(long latencyNanos) {
+        recordResponse(System.currentTimeMillis() - TimeUnit.NANOSECONDS.toMillis(latencyNanos), latencyNanos, false);
+    }
+
+    /**
+     * Milliseconds since ETLab last answered (since startup if it never has)
+     */
+    public long getIdleMillis() {
+        long last = lastResponseAt;
+        return last == 0 ? 0 : System.currentTimeMillis() - last;
+    }
+
+    void probeIfIdle() {
+        long last = lastResponseAt;
+        if (last != 0 && System.currentTimeMillis() - last < keepaliveAfterMillis) {
+            return;
+        }
+
+        HttpGet probe = new HttpGet(apiBaseUrl + probePath);
+        probe.setConfig(RequestConfig.custom()
+            .setConnectionRequestTimeout(Timeout.ofSeconds(probeTimeoutSeconds))
+            .setResponseTimeout(Timeout.ofSeconds(probeTimeoutSeconds))
+            .build());
+
+        long sentAt = System.currentTimeMillis();
+        long start = System.nanoTime();
+        try {
+            int status = etlabHttpClient.execute(probe, response -> {
+                EntityUtils.consume(response.getEntity());
+                return response.getCode();
+            });
+            probesOk.increment();
+            recordResponse(sentAt, System.nanoTime() - start, true);
+            logger.debug("Keepalive probe answered {} in {}ms", status, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (Exception e) {
+            probesFailed.increment();
+            logger.warn("Keepalive probe to ETLab failed: {}", e.getMessage());
+        }
+    }
+
+    private void recordResponse(long sentAt, long latencyNanos, boolean probe) {
+        long previous;
+        synchronized (this) {
+            previous = lastResponseAt;
+            if (sentAt <= previous) {
+                // Another response already covers this quiet period
+                return;
+            }
+            lastResponseAt = sentAt;
+        }
+
+        // Silence before this call was sent; the first call after startup counts as coming out of idle
+        long idleMillis = previous == 0 ? Long.MAX_VALUE : sentAt - previous;
+        if (idleMillis < coldIdleMillis) {
+            return;
+        }
+
+        firstResponseAfterIdle.record(latencyNanos, TimeUnit.NANOSECONDS);
+        long latencyMillis = TimeUnit.NANOSECONDS.toMillis(latencyNanos);
+        if (latencyMillis >= coldStartThresholdMillis) {
+            (probe ? probeColdStarts : requestColdStarts).increment();
+            logger.warn("ETLab cold start detected: first {} after idle took {}ms", probe ? "probe" : "request", latencyMillis);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.etlabapp.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A client that read a resource with GET syncs it afterwards: once the data changed it
+ * must get a patch from the version it holds, not the whole document again, and that
+ * patch applied to the body it holds must give the body a fresh GET returns.
+ */
+class DeltaSyncTests {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private volatile int presentHours = 30;
+    private volatile int sessionalExams = 5;
+
+    @Test
+    void syncPatchesFromTheVersionLastRead() throws Exception {
+        HttpServer upstream = TestApps.startEtlab(this::handleUpstream);
+        // Every read goes to the stand-in, so each one renders a new source body
+        try (ConfigurableApplicationContext app = TestApps.startApp(upstream,
+                 "--app.cache.enabled=false",
+                 "--app.prefetch.enabled=false",
+                 "--app.stream.enabled=false")) {
+            HttpClient client = HttpClient.newHttpClient();
+            String base = TestApps.baseUrl(app);
+            String token = TestApps.tokenOf(client.send(TestApps.loginRequest(base, "student", "secret"),
+                                                        HttpResponse.BodyHandlers.ofString()));
+
+            HttpResponse<String> read = TestApps.get(client, base + "/app/attendance", token);
+            assertEquals(200, read.statusCode());
+            String held = read.headers().firstValue("ETag").orElseThrow();
+
+            presentHours = 31;
+            JsonNode patched = sync(client, base, token, "attendance", held);
+            assertEquals("patch", patched.get("status").asText(), patched.toString());
+            assertEquals(held, patched.get("base").asText());
+            String current = patched.get("version").asText();
+            assertNotEquals(held, current);
+            assertNotNull(patched.get("patch"));
+
+            // Another device still on the old version, after a refetch of the same data
+            HttpResponse<String> fresh = TestApps.get(client, base + "/app/attendance", token);
+            assertEquals(200, fresh.statusCode());
+            assertEquals(mapper.readTree(fresh.body()), apply(mapper.readTree(read.body()), patched.get("patch")));
+            assertEquals("patch", sync(client, base, token, "attendance", held).get("status").asText());
+            assertEquals("unchanged", sync(client, base, token, "attendance", current).get("status").asText());
+            assertEquals("full", sync(client, base, token, "attendance", "W/\"unknown\"").get("status").asText());
+        } finally {
+            upstream.stop(0);
+        }
+    }
+
+    @Test
+    void syncPatchesArrayEntriesAddedAndRemoved() throws Exception {
+        HttpServer upstream = TestApps.startEtlab(this::handleUpstream);
+        try (ConfigurableApplicationContext app = TestApps.startApp(upstream,
+                 "--app.cache.enabled=false",
+                 "--app.prefetch.enabled=false",
+                 "--app.stream.enabled=false")) {
+            HttpClient client = HttpClient.newHttpClient();
+            String base = TestApps.baseUrl(app);
+            String token = TestApps.tokenOf(client.send(TestApps.loginRequest(base, "student", "secret"),
+                                                        HttpResponse.BodyHandlers.ofString()));
+
+            HttpResponse<String> read = TestApps.get(client, base + "/app/results", token);
+            assertEquals(200, read.statusCode());
+            JsonNode held = mapper.readTree(read.body());
+
+            // A new sessional mark, then two dropped from the end
+            for (int exams : new int[] { 6, 4 }) {
+                sessionalExams = exams;
+                JsonNode patched = sync(client, base, token, "results", read.headers().firstValue("ETag").orElseThrow());
+                assertEquals("patch", patched.get("status").asText(), patched.toString());
+
+                read = TestApps.get(client, base + "/app/results", token);
+                JsonNode fresh = mapper.readTree(read.body());
+                assertEquals(exams, fresh.size());
+                assertEquals(fresh, apply(held, patched.get("patch")), patched.toString());
+                held = fresh;
+            }
+        } finally {
+            upstream.stop(0);
+        }
+    }
+
+    private JsonNode sync(HttpClient client, String base, String token, String resource, String version)
+        throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(base + "/app/sync"))
+            .header("Authorization", "Bearer " + token)
+            .header("Content-Type", "application/json")
+            .timeout(Duration.ofSeconds(30))
+            .POST(HttpRequest.BodyPublishers.ofString(mapper.createObjectNode().put(resource, version).toString()))
+            .build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode(), response.body());
+        return mapper.readTree(response.body()).get(resource);
+    }
+
+    /**
+     * Apply a JSON Patch the way a client would: add, remove and replace, in order
+     */
+    private static JsonNode apply(JsonNode document, JsonNode patch) {
+        JsonNode result = document.deepCopy();
+        for (JsonNode op : patch) {
+            String path = op.get("path").asText();
+            JsonNode value = op.get("value");
+            if (path.isEmpty()) {
+                result = value;
+                continue;
+            }
+            JsonNode parent = result.at(path.substring(0, path.lastIndexOf('/')));
+            String name = path.substring(path.lastIndexOf('/') + 1).replace("~1", "/").replace("~0", "~");
+            String kind = op.get("op").asText();
+            if (parent instanceof ArrayNode array) {
+                int index = Integer.parseInt(name);
+                switch (kind) {
+                    case "add" -> array.insert(index, value);
+                    case "replace" -> array.set(index, value);
+                    case "remove" -> array.remove(index);
+                    default -> throw new IllegalArgumentException(op.toString());
+                }
+            } else {
+                ObjectNode object = (ObjectNode) parent;
+                switch (kind) {
+                    case "add", "replace" -> object.set(name, value);
+                    case "remove" -> object.remove(name);
+                    default -> throw new IllegalArgumentException(op.toString());
+                }
+            }
+        }
+        return result;
+    }
+
+    private void handleUpstream(HttpExchange exchange) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        String path = exchange.getRequestURI().getPath();
+        if (path.endsWith("/login")) {
+            TestApps.respond(exchange, 200, "{\"token\":\"etlab-token\"}");
+        } else if (path.endsWith("/profile")) {
+            TestApps.respond(exchange, 200, "{\"personal_info\":{\"Name\":\"Student\"}}");
+        } else if (path.endsWith("/attendance")) {
+            TestApps.respond(exchange, 200, attendance());
+        } else if (path.endsWith("/results")) {
+            TestApps.respond(exchange, 200, results());
+        } else {
+            TestApps.respond(exchange, 404, "{}");
+        }
+    }
+
+    private String attendance() {
+        StringBuilder json = new StringBuilder("{");
+        for (int i = 0; i < 6; i++) {
+            json.append("\"CS").append(100 + i).append("\":{\"subject_name\":\"Subject ").append(i)
+                .append("\",\"attendance_percentage\":\"").append(70 + i).append(".5\",\"present_hours\":\"")
+                .append(i == 0 ? presentHours : 30 + i).append("\",\"total_hours\":\"42\"},");
+        }
+        return json.append("\"roll_no\":\"42\",\"total_hours\":\"252\",\"total_present_hours\":\"200\",")
+            .append("\"total_percentage\":\"79.4\",\"name\":\"Student\"}").toString();
+    }
+
+    private String results() {
+        StringBuilder json = new StringBuilder("{\"sessional_exams\":[");
+        for (int i = 0; i < sessionalExams; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"subject_name\":\"Subject ").append(i)
+                .append("\",\"subject_code\":\"CS").append(200 + i).append("\",\"semester\":\"S6\",\"marks_obtained\":\"")
+                .append(15 + i).append("\",\"maximum_marks\":\"25\",\"exam\":\"Series 1\"}");
+        }
+        return json.append("]}").toString();
+    }
+}
@@ -0,0 +1,33 @@
+package com.etlabapp.backend;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.Supplier;
+
+/**
+ * Time and allocation per call of an operation, for the tests tagged "benchmark"
+ */
+public record Measurement(long bytesPerOp, double microsPerOp) {
+
+    public static Measurement of(Supplier<?> operation, int warmupIterations, int measuredIterations) {
+        for (int i = 0; i < warmupIterations; i++) {
+            operation.get();
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().threadId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < measuredIterations; i++) {
+            operation.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+        return new Measurement(allocated / measuredIterations, elapsed / 1000.0 / measuredIterations);
+    }
+
+    @Override
+    public String toString() {
+        return bytesPerOp >= 10_240
+            ? String.format("%.1f us/op %d KB/op", microsPerOp, bytesPerOp / 1024)
+            : String.format("%.2f us/op %d B/op", microsPerOp, bytesPerOp);
+    }
+}
@@ -0,0 +1,96 @@
+package com.etlabapp.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * ETLab expires a session's token while several of its requests are in flight: every
+ * one of them gets a 401, and together they must log in again once, not once each.
+ */
+class ReauthenticationTests {
+
+    // Each a different ETLab endpoint, so the calls aren't coalesced into one
+    private static final List<String> ENDPOINTS = List.of("profile", "attendance", "results", "timetable", "end-sem-results");
+
+    private final AtomicInteger upstreamLogins = new AtomicInteger();
+    // ETLab accepts only the token of the latest login
+    private volatile String currentToken = "none";
+    // Holds back the 401s until every request has been rejected
+    private final CountDownLatch rejected = new CountDownLatch(ENDPOINTS.size());
+
+    @Test
+    void concurrentUnauthorizedCallsLogInOnce() throws Exception {
+        HttpServer upstream = TestApps.startEtlab(this::handleUpstream);
+        try (ConfigurableApplicationContext app = TestApps.startApp(upstream,
+                 "--app.cache.enabled=false",
+                 "--app.prefetch.enabled=false",
+                 "--app.stream.enabled=false")) {
+            HttpClient client = HttpClient.newHttpClient();
+            String base = TestApps.baseUrl(app);
+            String token = TestApps.tokenOf(client.send(TestApps.loginRequest(base, "student", "secret"),
+                                                        HttpResponse.BodyHandlers.ofString()));
+            assertEquals(1, upstreamLogins.get());
+
+            currentToken = "expired";
+            List<Future<HttpResponse<String>>> responses = new ArrayList<>();
+            try (ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (String endpoint : ENDPOINTS) {
+                    responses.add(callers.submit(() -> TestApps.get(client, base + "/app/" + endpoint, token)));
+                }
+                for (Future<HttpResponse<String>> response : responses) {
+                    HttpResponse<String> done = response.get(30, TimeUnit.SECONDS);
+                    assertEquals(200, done.statusCode(), done.uri() + ": " + done.body());
+                }
+            }
+
+            assertEquals(0, rejected.getCount(), "the requests didn't all reach ETLab with the old token");
+            assertEquals(2, upstreamLogins.get(), "logged in again once per 401 instead of once");
+            MeterRegistry registry = app.getBean(MeterRegistry.class);
+            assertEquals(1, registry.counter("etlab.reauth", "result", "performed").count());
+            assertEquals(ENDPOINTS.size() - 1, registry.counter("etlab.reauth", "result", "reused").count());
+        } finally {
+            upstream.stop(0);
+        }
+    }
+
+    private void handleUpstream(HttpExchange exchange) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        String path = exchange.getRequestURI().getPath();
+        if (path.endsWith("/login")) {
+            currentToken = "etlab-token-" + upstreamLogins.incrementAndGet();
+            TestApps.respond(exchange, 200, "{\"token\":\"" + currentToken + "\"}");
+        } else if (!("Bearer " + currentToken).equals(exchange.getRequestHeaders().getFirst("Authorization"))) {
+            rejected.countDown();
+            try {
+                assertTrue(rejected.await(10, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            TestApps.respond(exchange, 401, "{}");
+        } else if (path.endsWith("/profile")) {
+            TestApps.respond(exchange, 200, "{\"personal_info\":{\"Name\":\"Student\"}}");
+        } else {
+            TestApps.respond(exchange, 200, "{}");
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package com.etlabapp.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.etlabapp.backend.model.AttendanceSummary;
+import com.etlabapp.backend.model.SessionalExam;
+import com.etlabapp.backend.model.SessionalResults;
+import com.etlabapp.backend.model.TimetableWeek;
+import com.etlabapp.backend.service.ResponseTransformer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Streaming parse into compact DTOs vs parsing a full JsonNode tree, for the documents
+ * served under /app. The tree path is the one the DTOs replaced, kept here (TreeTransformer)
+ * as the reference: both must produce the same response, and DTOs written to the
+ * snapshot store must read back to the same response and cache weight.
+ * The allocation comparison is a benchmark and only runs with -Pbenchmarks.
+ */
+class ResponseParsingBenchmarkTests {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResponseParsingBenchmarkTests.class);
+
+    private static final int WARMUP_ITERATIONS = 200;
+    private static final int MEASURED_ITERATIONS = 500;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ResponseTransformer transformer = new ResponseTransformer();
+    private final TreeTransformer tree = new TreeTransformer();
+
+    @Test
+    void streamingPathMatchesTreePath() throws IOException {
+        byte[] attendance = attendanceDocument(12);
+        byte[] results = resultsDocument(60, 400);
+        byte[] timetable = timetableDocument();
+        byte[] edgeCases = ("{\"sessional_exams\":[{\"subject_name\":\"<b>Maths</b>\",\"marks_obtained\":18.50,"
+            + "\"maximum_marks\":25,\"exam\":null,\"extra\":{\"a\":[1,2]}},\"not-an-object\",{}],"
+            + "\"CS101\":{\"attendance_percentage\":92.0,\"present_hours\":[1],\"total_hours\":true},"
+            + "\"roll_no\":{\"nested\":1},\"note\":{\"x\":1},\"monday\":null,\"tuesday\":{\"period-2\":\"x\","
+            + "\"period-3\":{\"name\":\"&nbsp;\",\"teacher\":\"<i>Dr. A &amp; B</i>\"}},\"friday\":[]}")
+            .getBytes(StandardCharsets.UTF_8);
+
+        for (byte[] document : new byte[][] { attendance, edgeCases }) {
+            assertEquals(render(tree.transformAttendance(mapper.readTree(document))),
+                         render(transformer.transformAttendance(mapper.readValue(document, AttendanceSummary.class))));
+        }
+        for (byte[] document : new byte[][] { results, edgeCases, "{}".getBytes(StandardCharsets.UTF_8) }) {
+            assertEquals(render(tree.transformResults(mapper.readTree(document))),
+                         render(transformer.transformResults(mapper.readValue(document, SessionalResults.class))));
+        }
+        for (byte[] document : new byte[][] { timetable, edgeCases }) {
+            assertEquals(render(tree.cleanAndNormalizeTimetable(mapper.readTree(document))),
+                         render(transformer.cleanAndNormalizeTimetable(mapper.readValue(document, TimetableWeek.class))));
+        }
+    }
+
+    @Test
+    void snapshotRoundTripKeepsResponse() throws IOException {
+        byte[] edgeCases = ("{\"sessional_exams\":[{\"subject_name\":null,\"marks_obtained\":18.50}],"
+            + "\"CS101\":{\"attendance_percentage\":92.0},\"roll_no\":\"7\",\"monday\":null,"
+            + "\"tuesday\":{\"period-2\":\"x\",\"period-3\":{\"name\":\"&nbsp;\"}}}").getBytes(StandardCharsets.UTF_8);
+
+        for (byte[] document : new byte[][] { attendanceDocument(12), edgeCases }) {
+            AttendanceSummary parsed = mapper.readValue(document, AttendanceSummary.class);
+            AttendanceSummary restored = mapper.readValue(mapper.writeValueAsBytes(parsed), AttendanceSummary.class);
+            assertEquals(render(transformer.transformAttendance(parsed)), render(transformer.transformAttendance(restored)));
+            assertEquals(parsed.estimatedBytes(), restored.estimatedBytes());
+        }
+        for (byte[] document : new byte[][] { resultsDocument(60, 10), edgeCases, "{}".getBytes(StandardCharsets.UTF_8) }) {
+            SessionalResults parsed = mapper.readValue(document, SessionalResults.class);
+            SessionalResults restored = mapper.readValue(mapper.writeValueAsBytes(parsed), SessionalResults.class);
+            assertEquals(render(transformer.transformResults(parsed)), render(transformer.transformResults(restored)));
+            assertEquals(parsed.estimatedBytes(), restored.estimatedBytes());
+        }
+        for (byte[] document : new byte[][] { timetableDocument(), edgeCases }) {
+            TimetableWeek parsed = mapper.readValue(document, TimetableWeek.class);
+            TimetableWeek restored = mapper.readValue(mapper.writeValueAsBytes(parsed), TimetableWeek.class);
+            assertEquals(render(transformer.cleanAndNormalizeTimetable(parsed)), render(transformer.cleanAndNormalizeTimetable(restored)));
+            assertEquals(parsed.estimatedBytes(), restored.estimatedBytes());
+        }
+    }
+
+    @Test
+    void estimatedSizeFollowsKeptContent() throws IOException {
+        int fewExams = mapper.readValue(resultsDocument(2, 0), SessionalResults.class).estimatedBytes();
+        int manyExams = mapper.readValue(resultsDocument(60, 0), SessionalResults.class).estimatedBytes();
+        // The skipped history costs nothing
+        int withHistory = mapper.readValue(resultsDocument(60, 2000), SessionalResults.class).estimatedBytes();
+        assertTrue(manyExams > 10 * fewExams, "60 exams should weigh far more than 2: " + fewExams + " vs " + manyExams);
+        assertEquals(manyExams, withHistory);
+
+        // At least the characters kept, at most the whole document
+        byte[] attendance = attendanceDocument(12);
+        int attendanceBytes = mapper.readValue(attendance, AttendanceSummary.class).estimatedBytes();
+        assertTrue(attendanceBytes > 12 * 3 * 2 && attendanceBytes < 2 * attendance.length, "attendance: " + attendanceBytes);
+        byte[] timetable = timetableDocument();
+        int timetableBytes = mapper.readValue(timetable, TimetableWeek.class).estimatedBytes();
+        assertTrue(timetableBytes > timetable.length && timetableBytes < 8 * timetable.length, "timetable: " + timetableBytes);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void streamingParseAllocationVsTree() throws IOException {
+        byte[] results = resultsDocument(60, 2000);
+        byte[] attendance = attendanceDocument(12);
+
+        Measurement resultsTree = measure(results, bytes -> tree.transformResults(readTree(bytes)));
+        Measurement resultsStream = measure(results, bytes -> transformer.transformResults(readValue(bytes, SessionalResults.class)));
+        Measurement attendanceTree = measure(attendance, bytes -> tree.transformAttendance(readTree(bytes)));
+        Measurement attendanceStream = measure(attendance, bytes -> transformer.transformAttendance(readValue(bytes, AttendanceSummary.class)));
+
+        logger.info("results ({} KB): tree {}, stream {}", results.length / 1024, resultsTree, resultsStream);
+        logger.info("attendance ({} KB): tree {}, stream {}", attendance.length / 1024, attendanceTree, attendanceStream);
+    }
+
+    private Measurement measure(byte[] document, Function<byte[], Object> parseAndTransform) {
+        return Measurement.of(() -> parseAndTransform.apply(document), WARMUP_ITERATIONS, MEASURED_ITERATIONS);
+    }
+
+    // Parsed from a stream, like the HTTP message converters do
+    private JsonNode readTree(byte[] document) {
+        try {
+            return mapper.readTree(new ByteArrayInputStream(document));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private <T> T readValue(byte[] document, Class<T> type) {
+        try {
+            return mapper.readValue(new ByteArrayInputStream(document), type);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String render(Object response) throws IOException {
+        return mapper.writeValueAsString(response);
+    }
+
+    private static byte[] attendanceDocument(int subjects) {
+        StringBuilder json = new StringBuilder("{");
+        for (int i = 0; i < subjects; i++) {
+            json.append("\"CS").append(100 + i).append("\":{\"subject_name\":\"Subject ").append(i)
+                .append("\",\"attendance_percentage\":\"").append(70 + i).append(".5\",\"present_hours\":\"").append(30 + i)
+                .append("\",\"total_hours\":\"42\",\"faculty\":\"Prof. Faculty ").append(i)
+                .append("\",\"daily\":[");
+            for (int day = 0; day < 40; day++) {
+                json.append(day == 0 ? "" : ",").append("{\"date\":\"2026-01-").append(day % 28 + 1)
+                    .append("\",\"hour\":").append(day % 7 + 1).append(",\"present\":").append(day % 5 != 0).append('}');
+            }
+            json.append("]},");
+        }
+        json.append("\"roll_no\":\"42\",\"total_hours\":\"504\",\"total_present_hours\":\"430\",")
+            .append("\"total_percentage\":\"85.3\",\"university_reg_no\":\"ABC20CS042\",\"name\":\"Student\",\"note\":\"n\"}");
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    // sessional exams plus a long history of other results the app never shows
+    private static byte[] resultsDocument(int sessionalExams, int historyEntries) {
+        StringBuilder json = new StringBuilder("{\"student\":{\"name\":\"Student\",\"batch\":\"2022\"},\"history\":[");
+        for (int i = 0; i < historyEntries; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"semester\":\"S").append(i % 8 + 1)
+                .append("\",\"course_code\":\"CS").append(i).append("\",\"course_name\":\"Course number ").append(i)
+                .append("\",\"credits\":").append(i % 4 + 1).append(",\"grade\":\"A\",\"grade_point\":9.0,")
+                .append("\"attempts\":[{\"month\":\"May\",\"year\":2024,\"status\":\"PASS\"}],\"remarks\":null}");
+        }
+        json.append("],\"sessional_exams\":[");
+        for (int i = 0; i < sessionalExams; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"subject_name\":\"Subject ").append(i)
+                .append("\",\"subject_code\":\"CS").append(200 + i).append("\",\"semester\":\"S").append(i % 8 + 1)
+                .append("\",\"marks_obtained\":\"").append(i % 25).append("\",\"maximum_marks\":\"25\",\"exam\":\"Series ")
+                .append(i % 2 + 1).append("\",\"entered_by\":\"faculty").append(i).append("\",\"entered_at\":\"2026-02-01T10:00:00\"}");
+        }
+        json.append("]}");
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] timetableDocument() {
+        StringBuilder json = new StringBuilder("{\"semester\":\"S6\",");
+        String[] days = { "monday", "tuesday", "wednesday", "thursday", "friday" };
+        for (int d = 0; d < days.length; d++) {
+            json.append(d == 0 ? "" : ",").append('"').append(days[d]).append("\":{");
+            for (int p = 1; p <= 6; p++) {
+                json.append(p == 1 ? "" : ",").append("\"period-").append(p)
+                    .append("\":{\"name\":\"<span>Subject ").append(p).append("</span>\",\"teacher\":\"Prof&nbsp;")
+                    .append(d).append("\",\"room\":\"R").append(p).append("\"}");
+            }
+            json.append('}');
+        }
+        json.append('}');
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * ResponseTransformer as it was before the DTOs: each response built from the full tree
+     */
+    private static final class TreeTransformer {
+
+        private static final Set<String> METADATA_FIELDS = Set.of(
+            "roll_no", "total_hours", "total_present_hours", "total_percentage", "university_reg_no", "name", "note");
+        private static final String ATTENDANCE_NOTE =
+            "ETLab attendance displays current semester subjects only, not filtered by requested semester";
+
+        private final ObjectMapper mapper = new ObjectMapper();
+
+        ObjectNode transformAttendance(JsonNode attendanceData) {
+            ObjectNode response = mapper.createObjectNode();
+            if (attendanceData.isObject()) {
+                attendanceData.fieldNames().forEachRemaining(fieldName -> {
+                    JsonNode fieldValue = attendanceData.get(fieldName);
+                    if (!METADATA_FIELDS.contains(fieldName) && fieldValue.isObject()) {
+                        ObjectNode subjectData = mapper.createObjectNode();
+                        subjectData.put("attendance_percentage", stringValue(fieldValue, "attendance_percentage"));
+                        subjectData.put("present_hours", stringValue(fieldValue, "present_hours"));
+                        subjectData.put("total_hours", stringValue(fieldValue, "total_hours"));
+                        response.set(fieldName, subjectData);
+                    }
+                });
+            }
+            for (String field : new String[] { "roll_no", "total_hours", "total_present_hours", "total_percentage",
+                                               "university_reg_no", "name" }) {
+                response.put(field, stringValue(attendanceData, field));
+            }
+            response.put("note", ATTENDANCE_NOTE);
+            return response;
+        }
+
+        List<SessionalExam> transformResults(JsonNode fullResults) {
+            JsonNode sessionalExamsNode = fullResults.get("sessional_exams");
+            List<SessionalExam> sessionalExams = new ArrayList<>();
+            if (sessionalExamsNode == null || !sessionalExamsNode.isArray()) {
+                return sessionalExams;
+            }
+            for (JsonNode examNode : sessionalExamsNode) {
+                SessionalExam exam = new SessionalExam();
+                exam.setSubjectName(stringValue(examNode, "subject_name"));
+                exam.setSubjectCode(stringValue(examNode, "subject_code"));
+                exam.setSemester(stringValue(examNode, "semester"));
+                exam.setMarksObtained(stringValue(examNode, "marks_obtained"));
+                exam.setMaximumMarks(stringValue(examNode, "maximum_marks"));
+                exam.setExam(stringValue(examNode, "exam"));
+                sessionalExams.add(exam);
+            }
+            return sessionalExams;
+        }
+
+        JsonNode cleanAndNormalizeTimetable(JsonNode rawTimetable) {
+            ObjectNode cleanedTimetable = mapper.createObjectNode();
+            for (String day : TimetableWeek.DAYS) {
+                JsonNode dayData = rawTimetable.get(day);
+                ObjectNode cleanedDay = mapper.createObjectNode();
+                boolean nonEmpty = false;
+                for (String period : TimetableWeek.PERIODS) {
+                    ObjectNode periodData = mapper.createObjectNode();
+                    JsonNode rawPeriod = dayData != null && dayData.has(period) ? dayData.get(period) : null;
+                    String name = cleanHtml(stringValue(rawPeriod, "name"));
+                    String teacher = cleanHtml(stringValue(rawPeriod, "teacher"));
+                    periodData.put("name", name == null || name.isEmpty() ? null : name);
+                    periodData.put("teacher", teacher == null || teacher.isEmpty() ? null : teacher);
+                    nonEmpty |= !periodData.get("name").isNull() || !periodData.get("teacher").isNull();
+                    cleanedDay.set(period, periodData);
+                }
+                if (dayData != null || nonEmpty) {
+                    cleanedTimetable.set(day, cleanedDay);
+                }
+            }
+            return cleanedTimetable;
+        }
+
+        private static String cleanHtml(String input) {
+            if (input == null) {
+                return null;
+            }
+            return input.replaceAll("<[^>]*>", "")
+                .replace("&nbsp;", " ")
+                .replace("&amp;", "&")
+                .replace("&lt;", "<")
+                .replace("&gt;", ">")
+                .replace("&quot;", "\"")
+                .replace("&#39;", "'")
+                .trim();
+        }
+
+        private static String stringValue(JsonNode node, String fieldName) {
+            JsonNode fieldNode = node != null ? node.get(fieldName) : null;
+            return fieldNode == null || fieldNode.isNull() ? null : fieldNode.asText();
+        }
+    }
+}
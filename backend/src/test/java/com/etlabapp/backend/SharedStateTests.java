@@ -0,0 +1,188 @@
+package com.etlabapp.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.etlabapp.backend.security.Sealer;
+
+import com.etlabapp.backend.session.SessionStore;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Two instances sharing sessions and snapshots through the H2 TCP server one of them
+ * hosts (app.cluster.enabled).
+ *
+ * A login on one instance must be served by the other, a token renewed on one must be
+ * used by the other without logging in again, and repeat session reads must stay local.
+ */
+class SharedStateTests {
+
+    private static final String CLUSTER_KEY = "testClusterKeyThatIsLongEnoughForAes256";
+    private static final String DB_PASSWORD = "test-db-password";
+
+    private final AtomicInteger upstreamLogins = new AtomicInteger();
+    private final AtomicInteger upstreamProfiles = new AtomicInteger();
+    // ETLab accepts only the token of the latest login
+    private volatile String currentToken = "none";
+
+    @Test
+    void instancesShareSessionsAndRenewedTokens() throws Exception {
+        Path baseDir = Files.createTempDirectory("etlab-cluster");
+        int port = freePort();
+        HttpServer upstream = TestApps.startEtlab(this::handleUpstream);
+
+        String url = "jdbc:h2:tcp://localhost:" + port + "/shared";
+        // The first instance hosts the H2 server
+        try (ConfigurableApplicationContext first = startApp(upstream, url,
+                 "--app.cluster.h2-server.enabled=true",
+                 "--app.cluster.h2-server.port=" + port,
+                 "--app.cluster.h2-server.base-dir=" + baseDir,
+                 "--app.cluster.h2-server.database=shared");
+             ConfigurableApplicationContext second = startApp(upstream, url)) {
+            HttpClient client = HttpClient.newHttpClient();
+
+            HttpResponse<String> login = client.send(TestApps.loginRequest(TestApps.baseUrl(first), "student", "secret"),
+                                                     HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, login.statusCode());
+            String token = TestApps.tokenOf(login);
+
+            // The profile fetched while validating the login reaches the other instance as a snapshot
+            Thread.sleep(500);
+            assertEquals(200, TestApps.get(client, TestApps.baseUrl(second) + "/app/profile", token).statusCode());
+            assertEquals(1, upstreamProfiles.get(), "the second instance served the first one's snapshot");
+
+            // ETLab expires the token: the first instance logs in again, the second picks up the new token
+            currentToken = "expired";
+            assertEquals(200, TestApps.get(client, TestApps.baseUrl(first) + "/app/timetable", token).statusCode());
+            assertEquals(2, upstreamLogins.get());
+            assertEquals(200, TestApps.get(client, TestApps.baseUrl(second) + "/app/attendance", token).statusCode());
+            assertEquals(2, upstreamLogins.get(), "the renewed token was shared, not fetched again");
+
+            // Repeat reads are served by the near-cache, not the database
+            SessionStore sessions = second.getBean(SessionStore.class);
+            MeterRegistry registry = second.getBean(MeterRegistry.class);
+            assertNotNull(sessions.get("student"));
+            double misses = registry.counter("etlab.sessions.nearcache", "result", "miss").count();
+            double hits = registry.counter("etlab.sessions.nearcache", "result", "hit").count();
+            for (int i = 0; i < 10; i++) {
+                assertEquals("student", sessions.get("student").getUsername());
+            }
+            assertEquals(misses, registry.counter("etlab.sessions.nearcache", "result", "miss").count());
+            assertEquals(hits + 10, registry.counter("etlab.sessions.nearcache", "result", "hit").count());
+
+            // What the database holds is sealed
+            JdbcTemplate jdbc = first.getBean(JdbcTemplate.class);
+            for (byte[] body : jdbc.queryForList("SELECT body FROM response_snapshot", byte[].class)) {
+                assertFalse(new String(body, StandardCharsets.ISO_8859_1).contains("Student"), "snapshot stored in plain text");
+            }
+            // The server serves only its own database
+            assertThrows(SQLException.class,
+                         () -> DriverManager.getConnection("jdbc:h2:tcp://localhost:" + port + "/other", "sa", DB_PASSWORD).close());
+        } finally {
+            upstream.stop(0);
+        }
+    }
+
+    @Test
+    void clusterRefusesToStartWithoutItsOwnKey() throws Exception {
+        HttpServer upstream = TestApps.startEtlab(this::handleUpstream);
+        String url = "jdbc:h2:mem:etlab-no-key";
+        try {
+            for (String key : new String[] { "", "short", Sealer.DEFAULT_JWT_SECRET }) {
+                Exception refused = assertThrows(Exception.class, () -> startApp(upstream, url, "--app.cluster.key=" + key).close(),
+                                                 "started with app.cluster.key=" + key);
+                assertTrue(rootCause(refused).getMessage().contains("app.cluster.key"), rootCause(refused).getMessage());
+            }
+        } finally {
+            upstream.stop(0);
+        }
+    }
+
+    @Test
+    void h2ServerRefusesToStartWithoutAPassword() throws Exception {
+        HttpServer upstream = TestApps.startEtlab(this::handleUpstream);
+        int port = freePort();
+        Path baseDir = Files.createTempDirectory("etlab-cluster");
+        try {
+            Exception refused = assertThrows(Exception.class, () -> startApp(upstream, "jdbc:h2:tcp://localhost:" + port + "/shared",
+                "--spring.datasource.password=",
+                "--app.cluster.h2-server.enabled=true",
+                "--app.cluster.h2-server.port=" + port,
+                "--app.cluster.h2-server.base-dir=" + baseDir).close());
+            assertTrue(rootCause(refused).getMessage().contains("spring.datasource.password"), rootCause(refused).getMessage());
+        } finally {
+            upstream.stop(0);
+        }
+    }
+
+    private ConfigurableApplicationContext startApp(HttpServer upstream, String databaseUrl, String... overrides) {
+        List<String> args = new ArrayList<>(List.of(
+            "--spring.datasource.url=" + databaseUrl,
+            "--spring.datasource.password=" + DB_PASSWORD,
+            "--app.cluster.enabled=true",
+            "--app.cluster.key=" + CLUSTER_KEY,
+            "--app.snapshot.store=h2",
+            "--app.snapshot.flush-ms=100",
+            "--app.prefetch.enabled=false",
+            "--app.cache.refresh-ahead.enabled=false",
+            "--app.stream.enabled=false"));
+        args.addAll(List.of(overrides));
+        return TestApps.startApp(upstream, args.toArray(String[]::new));
+    }
+
+    private static Throwable rootCause(Throwable error) {
+        while (error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private void handleUpstream(HttpExchange exchange) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        String path = exchange.getRequestURI().getPath();
+        if (path.endsWith("/login")) {
+            currentToken = "etlab-token-" + upstreamLogins.incrementAndGet();
+            TestApps.respond(exchange, 200, "{\"token\":\"" + currentToken + "\"}");
+        } else if (!("Bearer " + currentToken).equals(exchange.getRequestHeaders().getFirst("Authorization"))) {
+            TestApps.respond(exchange, 401, "{}");
+        } else if (path.endsWith("/profile")) {
+            upstreamProfiles.incrementAndGet();
+            TestApps.respond(exchange, 200, "{\"personal_info\":{\"Name\":\"Student\"}}");
+        } else if (path.endsWith("/timetable")) {
+            TestApps.respond(exchange, 200, "{}");
+        } else if (path.endsWith("/attendance")) {
+            TestApps.respond(exchange, 200, "{}");
+        } else {
+            TestApps.respond(exchange, 404, "{}");
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.etlabapp.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * The H2 snapshot store in file mode across restarts: what one run fetched is flushed
+ * when it stops, and the next run serves it without calling ETLab while it is fresh by
+ * its original fetch time, then revalidates it once that is past the TTL.
+ */
+class SnapshotRestartTests {
+
+    @TempDir
+    Path dir;
+
+    private final AtomicInteger upstreamAttendance = new AtomicInteger();
+
+    @Test
+    void restartServesTheSnapshotUntilItsTtl() throws Exception {
+        HttpServer upstream = TestApps.startEtlab(this::handleUpstream);
+        String databaseUrl = "jdbc:h2:file:" + dir.resolve("snapshots");
+        try {
+            try (ConfigurableApplicationContext app = startApp(upstream, databaseUrl, 3600)) {
+                assertEquals(200, readAttendance(app).statusCode());
+            }
+            assertEquals(1, upstreamAttendance.get());
+            // Written behind, on the flush at shutdown
+            long fetchedAt = storedFetchedAt(databaseUrl);
+
+            try (ConfigurableApplicationContext app = startApp(upstream, databaseUrl, 3600)) {
+                assertEquals(200, readAttendance(app).statusCode());
+                MeterRegistry registry = app.getBean(MeterRegistry.class);
+                assertEquals(1.0, registry.counter("etlab.cache.snapshot.restores", "result", "restored").count());
+                assertEquals(1.0, registry.counter("etlab.cache.requests", "result", "hit").count());
+            }
+            assertEquals(1, upstreamAttendance.get(), "the restart called ETLab for a fresh snapshot");
+            assertEquals(fetchedAt, storedFetchedAt(databaseUrl), "the restored entry was saved again as new");
+
+            // Same snapshot, but a run whose TTL it has outlived
+            Thread.sleep(Math.max(0, fetchedAt + 1100 - System.currentTimeMillis()));
+            try (ConfigurableApplicationContext app = startApp(upstream, databaseUrl, 1)) {
+                assertEquals(200, readAttendance(app).statusCode());
+                MeterRegistry registry = app.getBean(MeterRegistry.class);
+                assertEquals(1.0, registry.counter("etlab.cache.requests", "result", "stale").count());
+                long deadline = System.currentTimeMillis() + 10_000;
+                while (upstreamAttendance.get() < 2 && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(20);
+                }
+            }
+            assertEquals(2, upstreamAttendance.get(), "the stale snapshot was not revalidated");
+            assertTrue(storedFetchedAt(databaseUrl) > fetchedAt, "the revalidated body was not written back");
+        } finally {
+            upstream.stop(0);
+        }
+    }
+
+    private ConfigurableApplicationContext startApp(HttpServer upstream, String databaseUrl, long attendanceTtlSeconds) {
+        return TestApps.startApp(upstream,
+            "--spring.datasource.url=" + databaseUrl,
+            "--app.snapshot.store=h2",
+            "--app.cache.ttl.attendance-seconds=" + attendanceTtlSeconds,
+            "--app.prefetch.enabled=false",
+            "--app.cache.refresh-ahead.enabled=false",
+            "--app.stream.enabled=false");
+    }
+
+    private static HttpResponse<String> readAttendance(ConfigurableApplicationContext app) throws IOException, InterruptedException {
+        HttpClient client = HttpClient.newHttpClient();
+        String base = TestApps.baseUrl(app);
+        String token = TestApps.tokenOf(client.send(TestApps.loginRequest(base, "student", "secret"),
+                                                    HttpResponse.BodyHandlers.ofString()));
+        return TestApps.get(client, base + "/app/attendance", token);
+    }
+
+    private static long storedFetchedAt(String databaseUrl) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(databaseUrl, "sa", "");
+             ResultSet row = connection.createStatement().executeQuery(
+                 "SELECT fetched_at FROM response_snapshot WHERE username = 'student' AND endpoint = '/attendance'")) {
+            assertTrue(row.next(), "no attendance snapshot");
+            return row.getLong(1);
+        }
+    }
+
+    private void handleUpstream(HttpExchange exchange) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        String path = exchange.getRequestURI().getPath();
+        if (path.endsWith("/login")) {
+            TestApps.respond(exchange, 200, "{\"token\":\"etlab-token\"}");
+        } else if (path.endsWith("/profile")) {
+            TestApps.respond(exchange, 200, "{\"personal_info\":{\"Name\":\"Student\"}}");
+        } else if (path.endsWith("/attendance")) {
+            upstreamAttendance.incrementAndGet();
+            TestApps.respond(exchange, 200, "{\"CS101\":{\"attendance_percentage\":\"80.5\",\"present_hours\":\"33\","
+                + "\"total_hours\":\"41\"},\"roll_no\":\"42\",\"name\":\"Student\"}");
+        } else {
+            TestApps.respond(exchange, 404, "{}");
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.etlabapp.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.etlabapp.backend.security.JwtUtil;
+import com.etlabapp.backend.session.SessionStore;
+import com.etlabapp.backend.session.UserSession;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Stateless session mode: the client token carries the encrypted ETLab session.
+ *
+ * The cluster test puts two instances behind a round-robin proxy; the one that didn't
+ * handle the login must serve the user from the token alone, without a re-login.
+ * The benchmark (-Pbenchmarks) compares what a request pays to find its session:
+ * decrypting the token vs the stateful path's map lookup (plus the signed-token check
+ * it already does).
+ */
+class StatelessSessionTests {
+
+    private static final Logger logger = LoggerFactory.getLogger(StatelessSessionTests.class);
+
+    private static final int WARMUP_ITERATIONS = 5_000;
+    private static final int MEASURED_ITERATIONS = 20_000;
+    private static final String SECRET = "testJwtSecretKeyThatIsLongEnoughForHMACAlgorithm";
+    private static final String SESSION_TOKEN_KEY = "testSessionTokenKeyThatIsLongEnoughForAes";
+
+    private final AtomicInteger upstreamLogins = new AtomicInteger();
+
+    @Test
+    void sessionTokenCarriesTheSession() {
+        JwtUtil jwtUtil = jwtUtil(0);
+        String sessionToken = jwtUtil.generateSessionToken("student42", "etlab-token-0123456789abcdef", "secret");
+
+        UserSession carried = jwtUtil.extractSession(sessionToken);
+        assertEquals("student42", carried.getUsername());
+        assertEquals("etlab-token-0123456789abcdef", carried.getEtlabToken());
+        assertEquals("secret", carried.getPassword());
+        assertNull(jwtUtil.extractSession(jwtUtil.generateToken("student42")), "a signed token carries no session");
+    }
+
+    @Test
+    @Tag("benchmark")
+    void sessionTokenDecryptCost() {
+        // Without the claims cache, so every call decrypts
+        JwtUtil jwtUtil = jwtUtil(0);
+
+        String sessionToken = jwtUtil.generateSessionToken("student42", "etlab-token-0123456789abcdef", "secret");
+        String signedToken = jwtUtil.generateToken("student42");
+        Map<String, UserSession> sessions = new ConcurrentHashMap<>();
+        for (int i = 0; i < 10_000; i++) {
+            sessions.put("student" + i, new UserSession("etlab-token-" + i, "student" + i, "secret", signedToken));
+        }
+
+        Measurement lookup = measure(() -> sessions.get("student42"));
+        Measurement signedCheck = measure(() -> jwtUtil.validateToken(signedToken) ? jwtUtil.extractUsername(signedToken) : null);
+        Measurement decrypt = measure(() -> jwtUtil.extractSession(sessionToken));
+
+        logger.info("session per request: map lookup {}, signed-token check {}, session-token decrypt {} ({}-char token)",
+                    lookup, signedCheck, decrypt, sessionToken.length());
+        assertEquals("student42", jwtUtil.extractSession(sessionToken).getUsername());
+    }
+
+    @Test
+    void anyInstanceServesAStatelessSession() throws Exception {
+        HttpServer upstream = TestApps.startEtlab(this::handleUpstream);
+
+        try (ConfigurableApplicationContext first = startApp(upstream);
+             ConfigurableApplicationContext second = startApp(upstream)) {
+            HttpServer proxy = roundRobinProxy(TestApps.port(first), TestApps.port(second));
+            try {
+                HttpClient client = HttpClient.newHttpClient();
+                String base = "http://127.0.0.1:" + proxy.getAddress().getPort();
+
+                HttpResponse<String> login = client.send(TestApps.loginRequest(base, "student", "secret"),
+                                                         HttpResponse.BodyHandlers.ofString());
+                assertEquals(200, login.statusCode());
+                String token = TestApps.tokenOf(login);
+                assertNull(second.getBean(SessionStore.class).get("student"), "only the first instance saw the login");
+
+                for (int i = 0; i < 4; i++) {
+                    HttpResponse<String> profile = TestApps.get(client, base + "/app/profile", token);
+                    assertEquals(200, profile.statusCode(), "request " + i + ": " + profile.body());
+                }
+
+                assertNotNull(second.getBean(SessionStore.class).get("student"), "the second instance took the session from the token");
+                assertEquals(1, upstreamLogins.get(), "no instance had to log in to ETLab again");
+            } finally {
+                proxy.stop(0);
+            }
+        } finally {
+            upstream.stop(0);
+        }
+    }
+
+    @Test
+    void statelessModeRefusesToStartWithoutASessionTokenKey() throws Exception {
+        HttpServer upstream = TestApps.startEtlab(this::handleUpstream);
+        try {
+            Exception refused = assertThrows(Exception.class,
+                                             () -> startApp(upstream, "--app.session.token-key=").close());
+            Throwable cause = refused;
+            while (cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            assertTrue(cause.getMessage().contains("app.session.token-key"), cause.getMessage());
+        } finally {
+            upstream.stop(0);
+        }
+    }
+
+    private ConfigurableApplicationContext startApp(HttpServer upstream, String... overrides) {
+        List<String> args = new ArrayList<>(List.of(
+            "--app.session.mode=stateless",
+            "--app.session.token-key=" + SESSION_TOKEN_KEY,
+            "--app.snapshot.store=none",
+            "--app.prefetch.enabled=false",
+            "--app.stream.enabled=false"));
+        args.addAll(List.of(overrides));
+        return TestApps.startApp(upstream, args.toArray(String[]::new));
+    }
+
+    private static JwtUtil jwtUtil(long claimsCacheSize) {
+        JwtUtil jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtUtil, "sessionTokenSecret", SESSION_TOKEN_KEY);
+        ReflectionTestUtils.setField(jwtUtil, "expiration", 86_400_000L);
+        ReflectionTestUtils.setField(jwtUtil, "sessionMode", "stateless");
+        ReflectionTestUtils.setField(jwtUtil, "claimsCacheSize", claimsCacheSize);
+        ReflectionTestUtils.setField(jwtUtil, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.invokeMethod(jwtUtil, "init");
+        return jwtUtil;
+    }
+
+    /**
+     * Forwards each request to the next backend in turn, like a load balancer without sticky sessions
+     */
+    private static HttpServer roundRobinProxy(int... backends) throws IOException {
+        HttpClient client = HttpClient.newHttpClient();
+        AtomicInteger next = new AtomicInteger();
+        HttpServer proxy = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 64);
+        proxy.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        proxy.createContext("/", exchange -> {
+            int backend = backends[Math.floorMod(next.getAndIncrement(), backends.length)];
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            HttpRequest.Builder forward = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + backend + exchange.getRequestURI()))
+                .timeout(Duration.ofSeconds(30))
+                .method(exchange.getRequestMethod(), body.length == 0
+                    ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofByteArray(body));
+            for (String header : new String[] { "Authorization", "Content-Type" }) {
+                String value = exchange.getRequestHeaders().getFirst(header);
+                if (value != null) {
+                    forward.header(header, value);
+                }
+            }
+            try {
+                HttpResponse<byte[]> response = client.send(forward.build(), HttpResponse.BodyHandlers.ofByteArray());
+                TestApps.respond(exchange, response.statusCode(), response.body());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                TestApps.respond(exchange, 502, new byte[0]);
+            }
+        });
+        proxy.start();
+        return proxy;
+    }
+
+    private void handleUpstream(HttpExchange exchange) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        String path = exchange.getRequestURI().getPath();
+        if (path.endsWith("/login")) {
+            upstreamLogins.incrementAndGet();
+            TestApps.respond(exchange, 200, "{\"token\":\"etlab-token\"}");
+        } else if (!"Bearer etlab-token".equals(exchange.getRequestHeaders().getFirst("Authorization"))) {
+            TestApps.respond(exchange, 401, "{}");
+        } else if (path.endsWith("/profile")) {
+            TestApps.respond(exchange, 200, "{\"personal_info\":{\"Name\":\"Student\"}}");
+        } else {
+            TestApps.respond(exchange, 404, "{}");
+        }
+    }
+
+    private static Measurement measure(Supplier<Object> operation) {
+        return Measurement.of(operation, WARMUP_ITERATIONS, MEASURED_ITERATIONS);
+    }
+}
@@ -0,0 +1,105 @@
+package com.etlabapp.backend;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Shared setup of the tests that run the whole app against a stand-in ETLab: the
+ * stand-in HTTP server, starting the app on a random port, and logging in.
+ */
+public final class TestApps {
+
+    private TestApps() {}
+
+    /**
+     * A stand-in ETLab on a random local port; the handler gets every request under /api
+     */
+    public static HttpServer startEtlab(HttpHandler handler) throws IOException {
+        HttpServer etlab = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        etlab.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        etlab.createContext("/api", handler);
+        etlab.start();
+        return etlab;
+    }
+
+    /**
+     * Start the app on a random port against the stand-in. args are added to the defaults;
+     * a later --name=value replaces an earlier one (Spring would join repeated ones with commas).
+     */
+    public static ConfigurableApplicationContext startApp(HttpServer etlab, String... args) {
+        Map<String, String> all = new LinkedHashMap<>();
+        for (String arg : List.of(
+                "--server.port=0",
+                "--app.etlab.api-base-url=http://127.0.0.1:" + etlab.getAddress().getPort() + "/api",
+                // Start without sessions journaled by earlier runs
+                "--app.session.journal.enabled=false")) {
+            all.put(arg.substring(0, arg.indexOf('=')), arg);
+        }
+        for (String arg : args) {
+            all.put(arg.substring(0, arg.indexOf('=')), arg);
+        }
+        return new SpringApplicationBuilder(BackendApplication.class).run(all.values().toArray(String[]::new));
+    }
+
+    public static int port(ConfigurableApplicationContext app) {
+        return ((ServletWebServerApplicationContext) app).getWebServer().getPort();
+    }
+
+    public static String baseUrl(ConfigurableApplicationContext app) {
+        return "http://127.0.0.1:" + port(app);
+    }
+
+    public static HttpRequest loginRequest(String baseUrl, String username, String password) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/app/login"))
+            .timeout(Duration.ofSeconds(60))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(
+                "{\"username\":\"" + username + "\",\"password\":\"" + password + "\"}"))
+            .build();
+    }
+
+    /**
+     * The app's token from a successful login response
+     */
+    public static String tokenOf(HttpResponse<String> login) {
+        return login.body().replaceAll(".*\"token\":\"([^\"]+)\".*", "$1");
+    }
+
+    public static HttpResponse<String> get(HttpClient client, String url, String token) throws IOException, InterruptedException {
+        return client.send(HttpRequest.newBuilder(URI.create(url))
+            .header("Authorization", "Bearer " + token)
+            .timeout(Duration.ofSeconds(30))
+            .build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    public static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        respond(exchange, status, json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
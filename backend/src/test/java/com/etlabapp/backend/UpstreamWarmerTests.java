@@ -0,0 +1,132 @@
+package com.etlabapp.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Keepalive probes and cold-start detection against a stand-in ETLab that falls
+ * asleep after SLEEP_AFTER_MS without traffic and takes WAKE_DELAY_MS to answer
+ * the first request after that.
+ */
+class UpstreamWarmerTests {
+
+    private static final long SLEEP_AFTER_MS = 1000;
+    private static final long WAKE_DELAY_MS = 2000;
+
+    private HttpServer upstream;
+    private long lastRequestAt;
+    private volatile int wakeUps;
+    private int logins;
+
+    @BeforeEach
+    void startUpstream() throws IOException {
+        upstream = TestApps.startEtlab(this::handle);
+    }
+
+    @AfterEach
+    void stopUpstream() {
+        upstream.stop(0);
+    }
+
+    @Test
+    void slowFirstRequestAfterIdleIsCountedAsColdStart() throws Exception {
+        try (ConfigurableApplicationContext app = startApp(false)) {
+            HttpClient client = HttpClient.newHttpClient();
+            String base = TestApps.baseUrl(app);
+
+            login(client, base);
+            Thread.sleep(SLEEP_AFTER_MS + 500);
+            long elapsed = login(client, base);
+
+            MeterRegistry registry = app.getBean(MeterRegistry.class);
+            assertTrue(elapsed >= WAKE_DELAY_MS, "login after idle should wait for the host to wake (" + elapsed + "ms)");
+            assertEquals(2.0, registry.counter("etlab.upstream.coldstarts", "source", "request").count(),
+                         "both logins hit a sleeping host");
+        }
+    }
+
+    @Test
+    void keepaliveProbesPreventColdStarts() throws Exception {
+        try (ConfigurableApplicationContext app = startApp(true)) {
+            HttpClient client = HttpClient.newHttpClient();
+            String base = TestApps.baseUrl(app);
+            MeterRegistry registry = app.getBean(MeterRegistry.class);
+
+            // The startup probe wakes the host
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (registry.counter("etlab.upstream.probes", "result", "ok").count() < 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertEquals(1.0, registry.counter("etlab.upstream.coldstarts", "source", "probe").count());
+
+            login(client, base);
+            int wakeUpsBefore = wakeUps;
+            Thread.sleep(SLEEP_AFTER_MS * 3);
+            long elapsed = login(client, base);
+
+            assertTrue(elapsed < WAKE_DELAY_MS, "probes should have kept the host awake (" + elapsed + "ms)");
+            assertEquals(wakeUpsBefore, wakeUps, "host should not have slept while probes were running");
+            assertEquals(0.0, registry.counter("etlab.upstream.coldstarts", "source", "request").count());
+        }
+    }
+
+    private ConfigurableApplicationContext startApp(boolean warmer) {
+        return TestApps.startApp(upstream,
+            "--app.etlab.warmer.enabled=" + warmer,
+            "--app.etlab.warmer.keepalive-after-ms=300",
+            "--app.etlab.warmer.initial-delay-ms=100",
+            "--app.etlab.warmer.check-interval-ms=100",
+            "--app.etlab.warmer.cold-idle-ms=" + (SLEEP_AFTER_MS / 2),
+            "--app.etlab.warmer.cold-start-threshold-ms=" + (WAKE_DELAY_MS / 2));
+    }
+
+    // A fresh username each time, so login can't short-circuit with an existing JWT
+    private long login(HttpClient client, String base) throws Exception {
+        long start = System.currentTimeMillis();
+        HttpResponse<String> response = client.send(TestApps.loginRequest(base, "student" + (++logins), "secret"),
+                                                     HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+        return System.currentTimeMillis() - start;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        wakeIfAsleep();
+        exchange.getRequestBody().readAllBytes();
+
+        String path = exchange.getRequestURI().getPath();
+        if (path.endsWith("/login")) {
+            TestApps.respond(exchange, 200, "{\"token\":\"etlab-token\"}");
+        } else if (path.endsWith("/profile")) {
+            TestApps.respond(exchange, 200, "{\"personal_info\":{\"Name\":\"Student\"}}");
+        } else {
+            TestApps.respond(exchange, 404, "{}");
+        }
+    }
+
+    // Requests arriving while the host boots wait for it too
+    private synchronized void wakeIfAsleep() {
+        if (System.currentTimeMillis() - lastRequestAt > SLEEP_AFTER_MS) {
+            wakeUps++;
+            try {
+                Thread.sleep(WAKE_DELAY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        lastRequestAt = System.currentTimeMillis();
+    }
+}
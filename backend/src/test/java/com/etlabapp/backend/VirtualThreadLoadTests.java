@@ -0,0 +1,115 @@
+package com.etlabapp.backend;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Concurrent-request capacity with platform vs virtual request threads.
+ *
+ * Both runs use the same small Tomcat pool against a stand-in ETLab that answers
+ * every call after a fixed delay. Each login makes two blocking upstream calls, so
+ * with platform threads requests queue behind the pool; on virtual threads they don't.
+ *
+ * Takes about half a minute, so it only runs with -Pbenchmarks. It checks that every
+ * login of the burst succeeds and logs the timings for comparison.
+ */
+@Tag("benchmark")
+class VirtualThreadLoadTests {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadLoadTests.class);
+
+    private static final int CONCURRENT_REQUESTS = 100;
+    private static final int TOMCAT_MAX_THREADS = 10;
+    private static final long UPSTREAM_DELAY_MS = 500;
+
+    private static HttpServer upstream;
+
+    @BeforeAll
+    static void startUpstream() throws IOException {
+        upstream = TestApps.startEtlab(VirtualThreadLoadTests::handle);
+    }
+
+    @AfterAll
+    static void stopUpstream() {
+        upstream.stop(0);
+    }
+
+    @Test
+    void burstOfSlowLoginsSucceedsOnPlatformAndVirtualThreads() throws Exception {
+        long platformMillis = runLoad(false);
+        long virtualMillis = runLoad(true);
+
+        logger.info("{} concurrent logins, {} Tomcat threads, {} ms upstream latency: platform={} ms, virtual={} ms",
+                    CONCURRENT_REQUESTS, TOMCAT_MAX_THREADS, UPSTREAM_DELAY_MS, platformMillis, virtualMillis);
+    }
+
+    private long runLoad(boolean virtualThreads) throws Exception {
+        try (ConfigurableApplicationContext app = TestApps.startApp(upstream,
+                "--server.tomcat.threads.max=" + TOMCAT_MAX_THREADS,
+                "--spring.threads.virtual.enabled=" + virtualThreads,
+                "--app.etlab.http.max-total=" + CONCURRENT_REQUESTS,
+                "--app.etlab.http.max-per-route=" + CONCURRENT_REQUESTS,
+                "--app.etlab.resilience.bulkhead.max-concurrent=" + CONCURRENT_REQUESTS,
+                // Measure thread capacity, not upstream admission control
+                "--app.etlab.limiter.enabled=false")) {
+            String base = TestApps.baseUrl(app);
+
+            HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+
+            // Warm up class loading, JIT and connection pools before measuring
+            sendLogins(client, base, "warmup", TOMCAT_MAX_THREADS);
+
+            long start = System.nanoTime();
+            sendLogins(client, base, "student", CONCURRENT_REQUESTS);
+            return (System.nanoTime() - start) / 1_000_000;
+        }
+    }
+
+    private void sendLogins(HttpClient client, String base, String userPrefix, int count) throws Exception {
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            responses.add(client.sendAsync(TestApps.loginRequest(base, userPrefix + i, "secret"), HttpResponse.BodyHandlers.ofString()));
+        }
+        for (CompletableFuture<HttpResponse<String>> response : responses) {
+            assertEquals(200, response.get().statusCode());
+        }
+    }
+
+    private static void handle(HttpExchange exchange) throws IOException {
+        try {
+            Thread.sleep(UPSTREAM_DELAY_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        exchange.getRequestBody().readAllBytes();
+        String path = exchange.getRequestURI().getPath();
+        if (path.endsWith("/login")) {
+            TestApps.respond(exchange, 200, "{\"token\":\"etlab-token\"}");
+        } else if (path.endsWith("/profile")) {
+            TestApps.respond(exchange, 200, "{\"personal_info\":{\"Name\":\"Student\"}}");
+        } else {
+            TestApps.respond(exchange, 404, "{}");
+        }
+    }
+}
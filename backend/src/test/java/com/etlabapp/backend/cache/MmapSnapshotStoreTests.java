@@ -0,0 +1,219 @@
+package com.etlabapp.backend.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Recovery and compaction of the snapshot log, with 4 KB segments in a temp dir
+ */
+class MmapSnapshotStoreTests {
+
+    private static final int SEGMENT_BYTES = 4096;
+    // About 250 bytes a record, so some 16 records per segment
+    private static final String PADDING = "x".repeat(200);
+
+    @TempDir
+    Path dir;
+
+    private SimpleMeterRegistry registry;
+
+    @Test
+    void restartRebuildsTheIndexAndKeepsDeletions() throws Exception {
+        MmapSnapshotStore store = start();
+        store.save(key("alice", "profile"), body("alice-profile"), 1);
+        store.save(key("alice", "timetable"), body("alice-timetable"), 2);
+        store.save(key("bob", "profile"), body("bob-profile-1"), 3);
+        store.flush();
+        store.deleteUser("alice");
+        store.flush();
+        store.save(key("bob", "profile"), body("bob-profile-2"), 4);
+        store.stop();
+
+        store = start();
+        assertNull(store.load(key("alice", "profile"), String.class), "the tombstone was lost");
+        assertNull(store.load(key("alice", "timetable"), String.class));
+        SnapshotStore.Snapshot<String> bob = store.load(key("bob", "profile"), String.class);
+        assertEquals(body("bob-profile-2"), bob.body());
+        assertEquals(4, bob.fetchedAt());
+        assertEquals(1, registry.get("etlab.snapshot.log.entries").gauge().value());
+        store.stop();
+    }
+
+    @Test
+    void saveAfterDeleteIsNotWrittenBack() throws Exception {
+        MmapSnapshotStore store = start();
+        store.save(key("alice", "profile"), body("alice-profile"), 1);
+        store.flush();
+        store.deleteUser("alice");
+        // A fetch that was in flight during the logout
+        store.save(key("alice", "profile"), body("alice-profile-late"), 2);
+        assertNull(store.load(key("alice", "profile"), String.class));
+        store.flush();
+        assertNull(store.load(key("alice", "profile"), String.class), "written back after the delete");
+        store.stop();
+
+        store = start();
+        assertNull(store.load(key("alice", "profile"), String.class));
+        store.stop();
+    }
+
+    @Test
+    void fullSegmentRollsOverToTheNext() throws Exception {
+        MmapSnapshotStore store = start();
+        for (int i = 0; i < 40; i++) {
+            store.save(key("user" + i, "profile"), body("profile-" + i), i);
+        }
+        store.stop();
+        assertTrue(segmentFiles().size() >= 3, "segments: " + segmentFiles());
+
+        store = start();
+        for (int i = 0; i < 40; i++) {
+            assertEquals(body("profile-" + i), store.load(key("user" + i, "profile"), String.class).body());
+        }
+        assertEquals(0, registry.counter("etlab.snapshot.log.compactions").count());
+        store.stop();
+    }
+
+    @Test
+    void compactionMovesLiveRecordsAndDropsOldSegments() throws Exception {
+        MmapSnapshotStore store = start();
+        store.save(key("alice", "profile"), body("alice-profile"), 1);
+        store.save(key("bob", "profile"), body("bob-profile"), 2);
+        store.flush();
+        List<Path> before = segmentFiles();
+        // Each rewrite leaves the previous record dead
+        int version = 0;
+        while (registry.counter("etlab.snapshot.log.compactions").count() == 0) {
+            store.save(key("alice", "attendance"), body("attendance-" + ++version), 10 + version);
+            store.flush();
+            assertTrue(version < 100, "never compacted");
+        }
+
+        assertFalse(segmentFiles().containsAll(before), "old segments were kept");
+        double logBytes = registry.get("etlab.snapshot.log.bytes").tag("kind", "total").gauge().value();
+        assertEquals(registry.get("etlab.snapshot.log.bytes").tag("kind", "live").gauge().value(), logBytes);
+        assertTrue(logBytes < SEGMENT_BYTES, "compacted to " + logBytes + " bytes");
+        assertEquals(body("attendance-" + version), store.load(key("alice", "attendance"), String.class).body());
+        store.stop();
+
+        store = start();
+        assertEquals(body("alice-profile"), store.load(key("alice", "profile"), String.class).body());
+        assertEquals(body("bob-profile"), store.load(key("bob", "profile"), String.class).body());
+        SnapshotStore.Snapshot<String> latest = store.load(key("alice", "attendance"), String.class);
+        assertEquals(body("attendance-" + version), latest.body());
+        assertEquals(10 + version, latest.fetchedAt());
+        store.stop();
+    }
+
+    @Test
+    void corruptedRecordEndsRecovery() throws Exception {
+        MmapSnapshotStore store = start();
+        for (String user : List.of("first", "second", "third")) {
+            store.save(key(user, "profile"), body(user), 1);
+            store.flush();
+        }
+        store.stop();
+        corrupt(segmentFiles().get(0), body("second"));
+
+        store = start();
+        assertEquals(body("first"), store.load(key("first", "profile"), String.class).body());
+        assertNull(store.load(key("second", "profile"), String.class));
+        assertNull(store.load(key("third", "profile"), String.class), "recovered past a corrupted record");
+        // New records go where the valid data ends
+        store.save(key("fourth", "profile"), body("fourth"), 2);
+        store.stop();
+
+        store = start();
+        assertEquals(body("first"), store.load(key("first", "profile"), String.class).body());
+        assertEquals(body("fourth"), store.load(key("fourth", "profile"), String.class).body());
+        // "fourth" took the corrupted record's place exactly; what followed it stays gone
+        assertNull(store.load(key("second", "profile"), String.class));
+        assertNull(store.load(key("third", "profile"), String.class), "a dropped record came back");
+        store.stop();
+    }
+
+    @Test
+    void segmentsAfterACorruptedOneAreDropped() throws Exception {
+        MmapSnapshotStore store = start();
+        for (int i = 0; i < 40; i++) {
+            store.save(key("user" + i, "profile"), body("profile-" + i), i);
+            store.flush();
+        }
+        // A later segment deletes an early user
+        store.deleteUser("user0");
+        store.stop();
+        List<Path> segments = segmentFiles();
+        assertTrue(segments.size() >= 3, "segments: " + segments);
+        corrupt(segments.get(0), body("profile-5"));
+
+        store = start();
+        assertEquals(body("profile-4"), store.load(key("user4", "profile"), String.class).body());
+        assertNull(store.load(key("user5", "profile"), String.class));
+        assertNull(store.load(key("user39", "profile"), String.class), "recovered past a corrupted segment");
+        assertEquals(List.of(segments.get(0)), segmentFiles());
+        // The deletion in a dropped segment still holds, and is written again
+        assertNull(store.load(key("user0", "profile"), String.class), "a deleted user came back");
+        store.stop();
+
+        store = start();
+        assertNull(store.load(key("user0", "profile"), String.class));
+        assertEquals(body("profile-4"), store.load(key("user4", "profile"), String.class).body());
+        store.stop();
+    }
+
+    private MmapSnapshotStore start() throws Exception {
+        registry = new SimpleMeterRegistry();
+        MmapSnapshotStore store = new MmapSnapshotStore();
+        ReflectionTestUtils.setField(store, "directory", dir.toString());
+        ReflectionTestUtils.setField(store, "segmentBytes", SEGMENT_BYTES);
+        ReflectionTestUtils.setField(store, "compactLiveRatio", 0.5);
+        ReflectionTestUtils.setField(store, "meterRegistry", registry);
+        ReflectionTestUtils.setField(store, WriteBehindSnapshotStore.class, "meterRegistry", registry, MeterRegistry.class);
+        // Flushed by the test, not the flusher thread
+        ReflectionTestUtils.setField(store, "flushMillis", 3_600_000L);
+        ReflectionTestUtils.setField(store, "maxPending", 1000);
+        ReflectionTestUtils.setField(store, "objectMapper", new ObjectMapper());
+        store.start();
+        return store;
+    }
+
+    private List<Path> segmentFiles() throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.sorted().toList();
+        }
+    }
+
+    private static void corrupt(Path segment, String content) throws Exception {
+        byte[] bytes = Files.readAllBytes(segment);
+        String text = new String(bytes, StandardCharsets.ISO_8859_1);
+        int at = text.indexOf(content);
+        assertTrue(at > 0, content + " not found");
+        bytes[at] ^= 1;
+        Files.write(segment, bytes);
+    }
+
+    private static CacheKey key(String username, String endpoint) {
+        return new CacheKey(username, endpoint);
+    }
+
+    private static String body(String name) {
+        return name + ":" + PADDING;
+    }
+}
@@ -0,0 +1,177 @@
+package com.etlabapp.backend.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.etlabapp.backend.upstream.AdaptiveConcurrencyLimiter;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * When refresh-ahead picks an entry: ticked by the test on a fake clock, with a limiter
+ * whose headroom the test sets and refreshes run inline
+ */
+class RefreshAheadSchedulerTests {
+
+    private static final long START = 1_000_000_000L;
+    private static final long TTL_MILLIS = 100_000L;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AtomicLong now = new AtomicLong(START);
+    private final Map<String, Long> sessionActivity = new ConcurrentHashMap<>();
+    private final List<CacheKey> refreshes = new CopyOnWriteArrayList<>();
+    private volatile boolean headroom = true;
+
+    private RefreshAheadScheduler scheduler;
+
+    @BeforeEach
+    void start() {
+        scheduler = scheduler(60, 60);
+    }
+
+    @Test
+    void entryIsDueAtTheRefreshRatioOfItsTtl() {
+        CacheKey key = fetchedAndRead("alice", 2);
+
+        now.set(START + TTL_MILLIS * 79 / 100);
+        scheduler.tick();
+        assertEquals(List.of(), refreshes, "refreshed before 80% of the TTL");
+
+        now.set(START + TTL_MILLIS * 80 / 100);
+        scheduler.tick();
+        assertEquals(List.of(key), refreshes);
+
+        // Past the TTL it is left to the cache's stale-while-revalidate
+        fetchedAndRead("bob", 2);
+        now.addAndGet(TTL_MILLIS);
+        scheduler.tick();
+        assertEquals(List.of(key), refreshes, "refreshed past the TTL");
+        assertEquals(1.0, refreshCount("refreshed"));
+    }
+
+    @Test
+    void entryNeedsMinHitsSinceItWasFetched() {
+        CacheKey key = fetchedAndRead("alice", 1);
+        now.set(START + TTL_MILLIS * 85 / 100);
+        scheduler.tick();
+        assertEquals(List.of(), refreshes, "refreshed with one read");
+
+        read(key);
+        scheduler.tick();
+        assertEquals(List.of(key), refreshes);
+
+        // The refresh was a fetch, so the count starts over
+        now.set(now.get() + TTL_MILLIS * 85 / 100);
+        scheduler.tick();
+        assertEquals(List.of(key), refreshes, "refreshed again without reads");
+    }
+
+    @Test
+    void refreshesStayWithinThePerMinuteBudgetHottestFirst() {
+        scheduler = scheduler(2, 60);
+        CacheKey cold = fetchedAndRead("cold", 2);
+        CacheKey hottest = fetchedAndRead("hottest", 5);
+        CacheKey warm = fetchedAndRead("warm", 3);
+        now.set(START + TTL_MILLIS * 85 / 100);
+
+        scheduler.tick();
+        assertEquals(List.of(hottest, warm), refreshes);
+        assertEquals(1.0, refreshCount("over_budget"));
+
+        // The next minute's budget covers the rest
+        read(cold);
+        scheduler.tick();
+        assertEquals(List.of(hottest, warm, cold), refreshes);
+    }
+
+    @Test
+    void noRefreshWithoutHeadroomUpstream() {
+        CacheKey key = fetchedAndRead("alice", 2);
+        now.set(START + TTL_MILLIS * 85 / 100);
+        headroom = false;
+        scheduler.tick();
+        assertEquals(List.of(), refreshes, "refreshed while interactive traffic needed the limit");
+        assertEquals(1.0, refreshCount("over_budget"));
+
+        headroom = true;
+        scheduler.tick();
+        assertEquals(List.of(key), refreshes);
+    }
+
+    @Test
+    void idleOrEndedSessionsDropOutOfTheSchedule() {
+        fetchedAndRead("active", 2);
+        fetchedAndRead("idle", 2);
+        fetchedAndRead("gone", 2);
+        now.set(START + TTL_MILLIS * 85 / 100);
+        sessionActivity.put("active", now.get() - 60_000);
+        sessionActivity.put("idle", now.get() - 16 * 60_000);
+        sessionActivity.put("gone", 0L);
+
+        scheduler.tick();
+        assertEquals(List.of(new CacheKey("active", "/attendance")), refreshes);
+        assertEquals(2.0, registry.counter("etlab.cache.refresh.ahead.dropped").count());
+        assertEquals(1.0, registry.get("etlab.cache.refresh.ahead.tracked").gauge().value());
+    }
+
+    private RefreshAheadScheduler scheduler(int maxRefreshesPerMinute, long tickSeconds) {
+        RefreshAheadScheduler scheduler = new RefreshAheadScheduler();
+        ReflectionTestUtils.setField(scheduler, "tickSeconds", tickSeconds);
+        ReflectionTestUtils.setField(scheduler, "refreshAtRatio", 0.8);
+        ReflectionTestUtils.setField(scheduler, "minHits", 2);
+        ReflectionTestUtils.setField(scheduler, "idleMinutes", 15L);
+        ReflectionTestUtils.setField(scheduler, "maxRefreshesPerMinute", maxRefreshesPerMinute);
+        ReflectionTestUtils.setField(scheduler, "maxLimitShare", 0.5);
+        ReflectionTestUtils.setField(scheduler, "meterRegistry", registry);
+        ReflectionTestUtils.setField(scheduler, "concurrencyLimiter", new AdaptiveConcurrencyLimiter(registry) {
+            @Override
+            public boolean hasHeadroom(double share) {
+                return headroom;
+            }
+        });
+        ReflectionTestUtils.setField(scheduler, "backgroundExecutor", (TaskExecutor) Runnable::run);
+        ReflectionTestUtils.setField(scheduler, "clock", (LongSupplier) now::get);
+        // Disabled for init(), so it schedules no tick: the test ticks
+        ReflectionTestUtils.invokeMethod(scheduler, "init");
+        ReflectionTestUtils.setField(scheduler, "enabled", true);
+        scheduler.setSessionActivity(username -> sessionActivity.getOrDefault(username, now.get()));
+        return scheduler;
+    }
+
+    /**
+     * An entry fetched now and read some times since
+     */
+    private CacheKey fetchedAndRead(String username, int reads) {
+        CacheKey key = new CacheKey(username, "/attendance");
+        scheduler.recordFetch(key, now.get(), TTL_MILLIS);
+        for (int i = 0; i < reads; i++) {
+            read(key);
+        }
+        return key;
+    }
+
+    /**
+     * A read as the response cache reports it; the refresh is a fetch, like put() after a reload
+     */
+    private void read(CacheKey key) {
+        scheduler.recordAccess(key, () -> {
+            refreshes.add(key);
+            scheduler.recordFetch(key, now.get(), TTL_MILLIS);
+        });
+    }
+
+    private double refreshCount(String result) {
+        return registry.counter("etlab.cache.refresh.ahead", "result", result).count();
+    }
+}
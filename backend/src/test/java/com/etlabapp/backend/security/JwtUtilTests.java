@@ -0,0 +1,140 @@
+package com.etlabapp.backend.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Date;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.etlabapp.backend.Measurement;
+
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * JwtUtil.verify and its verified-claims cache: a cached token stops verifying when it
+ * expires, and only tokens that verified are ever served from the cache
+ */
+class JwtUtilTests {
+
+    private static final Logger logger = LoggerFactory.getLogger(JwtUtilTests.class);
+    private static final String SECRET = "testJwtSecretKeyThatIsLongEnoughForHMACAlgorithm";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void repeatedTokenIsServedFromTheCache() {
+        JwtUtil jwtUtil = jwtUtil(100, 86_400_000L);
+        String token = jwtUtil.generateToken("student42");
+
+        assertEquals("student42", jwtUtil.verify(token).getSubject());
+        assertEquals("student42", jwtUtil.verify(token).getSubject());
+        assertEquals(1.0, cacheCount("miss"));
+        assertEquals(1.0, cacheCount("hit"));
+    }
+
+    @Test
+    void cachedTokenStopsVerifyingWhenItExpires() throws InterruptedException {
+        JwtUtil jwtUtil = jwtUtil(100, 1000L);
+        String token = jwtUtil.generateToken("student42");
+        long expiresAt = jwtUtil.verify(token).getExpiration().getTime();
+        assertEquals("student42", jwtUtil.verify(token).getSubject());
+        assertEquals(1.0, cacheCount("hit"));
+
+        Thread.sleep(Math.max(0, expiresAt - System.currentTimeMillis()) + 100);
+
+        assertThrows(ExpiredJwtException.class, () -> jwtUtil.verify(token));
+        assertEquals(1.0, cacheCount("hit"), "the expired token was not served from the cache");
+    }
+
+    @Test
+    void tamperedTokenIsRejectedAndNeverCached() {
+        JwtUtil jwtUtil = jwtUtil(100, 86_400_000L);
+        String[] genuine = jwtUtil.generateToken("student42").split("\\.");
+        String[] other = jwtUtil.generateToken("admin").split("\\.");
+        // Another subject's payload under the genuine signature
+        String tampered = genuine[0] + "." + other[1] + "." + genuine[2];
+
+        for (int i = 0; i < 2; i++) {
+            assertThrows(JwtException.class, () -> jwtUtil.verify(tampered));
+        }
+        assertEquals(2.0, cacheCount("miss"), "every attempt was verified again");
+        assertEquals(0.0, cacheCount("hit"));
+
+        // Nor is a token signed with another key, or an encrypted one under another key
+        String foreign = Jwts.builder().subject("student42").expiration(new Date(System.currentTimeMillis() + 60_000))
+            .signWith(Keys.hmacShaKeyFor("anotherSecretKeyThatIsLongEnoughForHMACAlgorithm".getBytes())).compact();
+        assertThrows(JwtException.class, () -> jwtUtil.verify(foreign));
+        JwtUtil otherInstance = jwtUtil(100, 86_400_000L, "anotherSecretKeyThatIsLongEnoughForHMACAlgorithm");
+        String foreignSession = otherInstance.generateSessionToken("student42", "etlab-token", "secret");
+        assertThrows(JwtException.class, () -> jwtUtil.verify(foreignSession));
+        assertEquals(0.0, cacheCount("hit"));
+    }
+
+    @Test
+    void statelessModeNeedsASessionTokenKeyOfItsOwn() {
+        for (String key : new String[] { "", "tooShort", Sealer.DEFAULT_JWT_SECRET }) {
+            JwtUtil jwtUtil = new JwtUtil();
+            ReflectionTestUtils.setField(jwtUtil, "secret", SECRET);
+            ReflectionTestUtils.setField(jwtUtil, "sessionTokenSecret", key);
+            ReflectionTestUtils.setField(jwtUtil, "sessionMode", "stateless");
+            ReflectionTestUtils.setField(jwtUtil, "meterRegistry", meterRegistry);
+            assertThrows(IllegalStateException.class, () -> ReflectionTestUtils.invokeMethod(jwtUtil, "init"),
+                         "started with app.session.token-key=" + key);
+        }
+    }
+
+    /**
+     * What the JWT filter pays per request: two parses with a freshly derived key and parser
+     * (extractUsername, then validateToken) vs one parse with the prebuilt parser vs a
+     * repeat token found in the claims cache
+     */
+    @Test
+    @Tag("benchmark")
+    void requestAuthenticationCost() {
+        JwtUtil uncached = jwtUtil(0, 86_400_000L);
+        JwtUtil cached = jwtUtil(10_000, 86_400_000L);
+        String token = cached.generateToken("student42");
+
+        Measurement twoParses = Measurement.of(() -> {
+            String subject = Jwts.parser().verifyWith(Keys.hmacShaKeyFor(SECRET.getBytes())).build()
+                .parseSignedClaims(token).getPayload().getSubject();
+            return Jwts.parser().verifyWith(Keys.hmacShaKeyFor(SECRET.getBytes())).build()
+                .parseSignedClaims(token).getPayload().getExpiration().after(new Date()) ? subject : null;
+        }, 5_000, 20_000);
+        Measurement onePass = Measurement.of(() -> uncached.verify(token).getSubject(), 5_000, 20_000);
+        Measurement cacheHit = Measurement.of(() -> cached.verify(token).getSubject(), 5_000, 20_000);
+
+        logger.info("request authentication: two parses {}, one prebuilt parse {}, claims cache hit {}",
+                    twoParses, onePass, cacheHit);
+        assertEquals("student42", cached.verify(token).getSubject());
+    }
+
+    private double cacheCount(String result) {
+        return meterRegistry.counter("etlab.auth.claims.cache", "result", result).count();
+    }
+
+    private JwtUtil jwtUtil(long claimsCacheSize, long expirationMillis) {
+        return jwtUtil(claimsCacheSize, expirationMillis, SECRET);
+    }
+
+    private JwtUtil jwtUtil(long claimsCacheSize, long expirationMillis, String secret) {
+        JwtUtil jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", secret);
+        ReflectionTestUtils.setField(jwtUtil, "sessionTokenSecret", secret);
+        ReflectionTestUtils.setField(jwtUtil, "expiration", expirationMillis);
+        ReflectionTestUtils.setField(jwtUtil, "sessionMode", "stateless");
+        ReflectionTestUtils.setField(jwtUtil, "claimsCacheSize", claimsCacheSize);
+        ReflectionTestUtils.setField(jwtUtil, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.invokeMethod(jwtUtil, "init");
+        return jwtUtil;
+    }
+}
@@ -0,0 +1,285 @@
+package com.etlabapp.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.etlabapp.backend.exception.AuthenticationException;
+import com.etlabapp.backend.upstream.AdaptiveConcurrencyLimiter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Reconnects, eviction and idle retention of the update stream, ticked by the test
+ * against a stubbed DeltaSyncService whose documents the test changes
+ */
+class UpdateStreamServiceTests {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    // Current document per resource, and the failure every render completes with, if set
+    private final Map<String, String> documents = new ConcurrentHashMap<>();
+    private final Map<String, ConditionalResponseWriter.Rendition> rendered = new ConcurrentHashMap<>();
+    private volatile RuntimeException renderFailure;
+
+    private UpdateStreamService service;
+    private String epoch;
+
+    @BeforeEach
+    void start() {
+        UpdateStreamService.PUSHED_RESOURCES.forEach(resource -> documents.put(resource, "{\"v\":0}"));
+
+        DeltaSyncService deltaSyncService = new DeltaSyncService() {
+            @Override
+            CompletableFuture<ConditionalResponseWriter.Rendition> renderInBackground(String username, String resource) {
+                if (renderFailure != null) {
+                    return CompletableFuture.failedFuture(renderFailure);
+                }
+                return CompletableFuture.completedFuture(render(resource));
+            }
+        };
+        ReflectionTestUtils.setField(deltaSyncService, "objectMapper", objectMapper);
+
+        service = new UpdateStreamService() {
+            @Override
+            SseEmitter newEmitter(long timeoutMillis) {
+                return new RecordingEmitter();
+            }
+        };
+        ReflectionTestUtils.setField(service, "pollSeconds", 0L);
+        ReflectionTestUtils.setField(service, "maxPollsPerSecond", 50);
+        ReflectionTestUtils.setField(service, "maxLimitShare", 0.5);
+        ReflectionTestUtils.setField(service, "timeoutMinutes", 30L);
+        ReflectionTestUtils.setField(service, "retryMillis", 5000L);
+        ReflectionTestUtils.setField(service, "replayBuffer", 32);
+        ReflectionTestUtils.setField(service, "retainMinutes", 5L);
+        ReflectionTestUtils.setField(service, "maxConnections", 100);
+        ReflectionTestUtils.setField(service, "maxPerUser", 3);
+        ReflectionTestUtils.setField(service, "deltaSyncService", deltaSyncService);
+        ReflectionTestUtils.setField(service, "concurrencyLimiter", new AdaptiveConcurrencyLimiter(registry));
+        ReflectionTestUtils.setField(service, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(service, "meterRegistry", registry);
+        // Disabled, so init() starts no scheduler: the test ticks, and only the writers run
+        ReflectionTestUtils.invokeMethod(service, "init");
+        ReflectionTestUtils.setField(service, "writers", Executors.newVirtualThreadPerTaskExecutor());
+        epoch = (String) ReflectionTestUtils.getField(service, "epoch");
+    }
+
+    @AfterEach
+    void stop() {
+        service.shutdown();
+    }
+
+    @Test
+    void reconnectReplaysTheEventsAfterLastEventId() throws Exception {
+        RecordingEmitter first = subscribe(null);
+        poll();
+        awaitEvents(first, 1);
+        assertEquals(List.of("versions"), first.names());
+
+        for (int version = 1; version <= 2; version++) {
+            documents.put("attendance", "{\"v\":" + version + "}");
+            poll();
+            awaitEvents(first, version + 1);
+        }
+        assertEquals(List.of("versions", "attendance", "attendance"), first.names());
+        assertEquals(List.of(epoch + "-1", epoch + "-2", epoch + "-3"), first.ids());
+        first.complete();
+
+        RecordingEmitter reconnected = subscribe(epoch + "-2");
+        assertEquals(List.of(epoch + "-3"), reconnected.ids(), "only the event after the last one seen");
+        assertTrue(reconnected.events().get(0).contains("\"v\":2"), reconnected.events().get(0));
+        assertEquals(1.0, reconnects("replayed"));
+        assertEquals(0.0, reconnects("resync"));
+    }
+
+    @Test
+    void idTooOldOrFromAnotherStartGetsAVersionsEvent() throws Exception {
+        ReflectionTestUtils.setField(service, "replayBuffer", 2);
+        RecordingEmitter first = subscribe(null);
+        poll();
+        for (int version = 1; version <= 3; version++) {
+            documents.put("attendance", "{\"v\":" + version + "}");
+            poll();
+            awaitEvents(first, version + 1);
+        }
+        first.complete();
+
+        // Events 3 and 4 are buffered, so 2 is the oldest id that can still be replayed from
+        RecordingEmitter tooOld = subscribe(epoch + "-1");
+        assertEquals(List.of(), tooOld.events());
+        assertEquals(1.0, reconnects("resync"));
+        poll();
+        awaitEvents(tooOld, 1);
+        assertEquals(List.of("versions"), tooOld.names());
+        String attendanceVersion = rendered.get("attendance").current().etag();
+        assertEquals(attendanceVersion, objectMapper.readTree(tooOld.events().get(0)).get("attendance").asText());
+
+        RecordingEmitter otherStart = subscribe("0abc-4");
+        assertEquals(List.of(), otherStart.events());
+        assertEquals(2.0, reconnects("resync"));
+        poll();
+        awaitEvents(otherStart, 1);
+        assertEquals(List.of("versions"), otherStart.names());
+        assertEquals(0.0, reconnects("replayed"));
+    }
+
+    @Test
+    void oldestStreamOfAUserIsClosedPastMaxPerUser() throws Exception {
+        ReflectionTestUtils.setField(service, "maxPerUser", 2);
+        RecordingEmitter first = subscribe(null);
+        RecordingEmitter second = subscribe(null);
+        RecordingEmitter third = subscribe(null);
+
+        assertTrue(first.completed);
+        assertFalse(second.completed);
+        assertFalse(third.completed);
+        assertEquals(2.0, registry.get("etlab.stream.connections").gauge().value());
+
+        poll();
+        awaitEvents(third, 1);
+        awaitEvents(second, 1);
+        assertEquals(List.of(), first.events(), "the closed stream was written to");
+    }
+
+    @Test
+    void idleStreamIsKeptForReplayThenDropped() throws Exception {
+        RecordingEmitter first = subscribe(null);
+        poll();
+        awaitEvents(first, 1);
+        first.complete();
+
+        service.tick();
+        assertEquals(1.0, registry.get("etlab.stream.users").gauge().value(), "dropped within retain-minutes");
+        subscribe(epoch + "-1").complete();
+        assertEquals(1.0, reconnects("replayed"));
+
+        ReflectionTestUtils.setField(service, "retainMinutes", 0L);
+        Thread.sleep(5);
+        service.tick();
+        assertEquals(0.0, registry.get("etlab.stream.users").gauge().value(), "kept past retain-minutes");
+        subscribe(epoch + "-1");
+        assertEquals(1.0, reconnects("resync"), "replayed from a dropped stream");
+    }
+
+    @Test
+    void expiredSessionClosesTheStreams() throws Exception {
+        RecordingEmitter first = subscribe(null);
+        RecordingEmitter second = subscribe(null);
+        renderFailure = new AuthenticationException("Session expired");
+        poll();
+
+        await(() -> first.completed && second.completed);
+        assertEquals(List.of("session-expired"), first.names());
+        assertEquals(List.of("session-expired"), second.names());
+        assertEquals(0.0, registry.get("etlab.stream.users").gauge().value());
+        assertEquals(0.0, registry.get("etlab.stream.connections").gauge().value());
+    }
+
+    private RecordingEmitter subscribe(String lastEventId) {
+        RecordingEmitter emitter = (RecordingEmitter) service.subscribe("alice", lastEventId);
+        // Dropped, so only events are left: the "connected" comment goes first
+        assertTrue(emitter.sent.remove(0).contains(":connected"));
+        return emitter;
+    }
+
+    /**
+     * Tick once the stream is due again: with poll-seconds 0 that is the next millisecond
+     */
+    private void poll() throws InterruptedException {
+        Thread.sleep(2);
+        service.tick();
+    }
+
+    private ConditionalResponseWriter.Rendition render(String resource) {
+        byte[] json = documents.get(resource).getBytes(StandardCharsets.UTF_8);
+        String etag = ConditionalResponseWriter.etagOf(json);
+        return rendered.compute(resource, (name, last) -> {
+            if (last != null && last.current().etag().equals(etag)) {
+                return last;
+            }
+            ConditionalResponseWriter.EncodedResponse previous = last != null ? last.current().asPrevious() : null;
+            return new ConditionalResponseWriter.Rendition(
+                new ConditionalResponseWriter.EncodedResponse(null, json, null, etag, previous), previous);
+        });
+    }
+
+    private double reconnects(String result) {
+        return registry.counter("etlab.stream.reconnects", "result", result).count();
+    }
+
+    private static void awaitEvents(RecordingEmitter emitter, int count) throws InterruptedException {
+        await(() -> emitter.sent.size() >= count);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out waiting for the stream");
+            Thread.sleep(5);
+        }
+    }
+
+    /**
+     * Keeps what is sent as SSE text, and runs the completion callbacks itself as the
+     * servlet container would
+     */
+    private static final class RecordingEmitter extends SseEmitter {
+        private final List<String> sent = new CopyOnWriteArrayList<>();
+        private final List<Runnable> completionCallbacks = new CopyOnWriteArrayList<>();
+        private volatile boolean completed;
+
+        @Override
+        public void send(SseEventBuilder event) {
+            StringBuilder text = new StringBuilder();
+            event.build().forEach(part -> text.append(part.getData()));
+            sent.add(text.toString());
+        }
+
+        @Override
+        public void onCompletion(Runnable callback) {
+            completionCallbacks.add(callback);
+        }
+
+        @Override
+        public void complete() {
+            completed = true;
+            completionCallbacks.forEach(Runnable::run);
+        }
+
+        List<String> names() {
+            return field("event:");
+        }
+
+        List<String> ids() {
+            return field("id:");
+        }
+
+        List<String> events() {
+            return field("data:");
+        }
+
+        private List<String> field(String prefix) {
+            return sent.stream()
+                .map(text -> text.lines().filter(line -> line.startsWith(prefix)).findFirst().orElse(null))
+                .map(line -> line == null ? null : line.substring(prefix.length()))
+                .toList();
+        }
+    }
+}
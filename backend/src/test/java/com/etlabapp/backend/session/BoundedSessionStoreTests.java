@@ -0,0 +1,158 @@
+package com.etlabapp.backend.session;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * The expiry wheel driven by hand: 1 s ticks and a 1 min idle timeout, so 62 slots
+ */
+class BoundedSessionStoreTests {
+
+    private static final long SECOND = 1000;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final List<String> evicted = new ArrayList<>();
+    // Whole seconds, so slot boundaries are where the assertions expect them
+    private final long t0 = System.currentTimeMillis() / SECOND * SECOND;
+    private final AtomicLong now = new AtomicLong(t0);
+    private BoundedSessionStore store;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        store = store(3);
+    }
+
+    @Test
+    void idleSessionIsEvictedWhenItsSlotComesUp() {
+        store.put("alice", session("alice", t0));
+
+        advanceTo(t0 + 59 * SECOND);
+        assertNotNull(store.get("alice"));
+
+        advanceTo(t0 + 61 * SECOND);
+        assertNull(store.get("alice"));
+        assertEquals(List.of("alice"), evicted);
+        assertEquals(1, evictions("idle"));
+    }
+
+    @Test
+    void touchedSessionIsRefiledNotEvicted() {
+        long before = t0 - 30 * SECOND;
+        UserSession idle = session("alice", before);
+        UserSession touched = session("bob", before);
+        store.put("alice", idle);
+        store.put("bob", touched);
+        touched.updateActivity();
+
+        advanceTo(t0 + 31 * SECOND);
+        assertNull(store.get("alice"));
+        assertSame(touched, store.get("bob"));
+
+        advanceTo(touched.getLastActivity() + 61 * SECOND);
+        assertNull(store.get("bob"));
+        assertEquals(List.of("alice", "bob"), evicted);
+    }
+
+    @Test
+    void leastRecentlyUsedGoesFirstOverCapacity() {
+        store.put("first", session("first", t0 - 10 * SECOND));
+        store.put("oldest", session("oldest", t0 - 40 * SECOND));
+        store.put("middle", session("middle", t0 - 20 * SECOND));
+
+        store.put("newest", session("newest", t0));
+        assertEquals(3, store.size());
+        assertNull(store.get("oldest"));
+        assertEquals(List.of("oldest"), evicted);
+        assertEquals(1, evictions("capacity"));
+
+        // Replacing a stored user's session is not a new session
+        store.put("first", session("first", t0));
+        assertEquals(3, store.size());
+        assertEquals(1, evictions("capacity"));
+    }
+
+    @Test
+    void wheelKeepsTimeAcrossWrapAround() {
+        store.put("early", session("early", t0));
+        // Several turns of the wheel in one tick, as after a long GC pause or suspend
+        advanceTo(t0 + 200 * SECOND);
+        assertNull(store.get("early"));
+
+        // Filed after the wrap, in a slot the wheel has already passed once
+        store.put("late", session("late", t0 + 200 * SECOND));
+        advanceTo(t0 + 259 * SECOND);
+        assertNotNull(store.get("late"));
+        advanceTo(t0 + 261 * SECOND);
+        assertNull(store.get("late"));
+
+        // A deadline past the wheel's horizon is filed in its last slot and refiled from there
+        store.put("ahead", session("ahead", t0 + 400 * SECOND));
+        advanceTo(t0 + 400 * SECOND);
+        assertNotNull(store.get("ahead"));
+        advanceTo(t0 + 461 * SECOND);
+        assertNull(store.get("ahead"));
+        assertEquals(List.of("early", "late", "ahead"), evicted);
+    }
+
+    @Test
+    void staleEntriesAreDroppedWithoutEvicting() {
+        store.put("alice", session("alice", t0 - 50 * SECOND));
+        UserSession current = session("alice", t0);
+        store.put("alice", current);
+
+        // The replaced session's slot comes up first; its entry no longer matches
+        advanceTo(t0 + 15 * SECOND);
+        assertSame(current, store.get("alice"));
+
+        // A removed session's entry is dropped too
+        store.remove("alice");
+        store.put("alice", session("alice", t0 + 50 * SECOND));
+        advanceTo(t0 + 61 * SECOND);
+        assertNotNull(store.get("alice"));
+
+        assertEquals(List.of(), evicted);
+        assertEquals(0, evictions("idle"));
+        assertEquals(store.get("alice").getEstimatedBytes(),
+                     registry.get("etlab.sessions.memory").tag("kind", "total").gauge().value());
+    }
+
+    private void advanceTo(long millis) {
+        now.set(millis);
+        store.expireIdle();
+    }
+
+    private double evictions(String cause) {
+        return registry.counter("etlab.sessions.evictions", "cause", cause).count();
+    }
+
+    private BoundedSessionStore store(int maxSessions) throws Exception {
+        BoundedSessionStore store = new BoundedSessionStore();
+        ReflectionTestUtils.setField(store, "maxSessions", maxSessions);
+        ReflectionTestUtils.setField(store, "idleTimeoutMinutes", 1L);
+        ReflectionTestUtils.setField(store, "tickSeconds", 1L);
+        ReflectionTestUtils.setField(store, "meterRegistry", registry);
+        ReflectionTestUtils.setField(store, "clock", (LongSupplier) now::get);
+        ReflectionTestUtils.invokeMethod(store, "init");
+        // The test turns the wheel, not the ticker
+        store.stop();
+        store.setEvictionListener(evicted::add);
+        return store;
+    }
+
+    private static UserSession session(String username, long lastActivity) {
+        return new UserSession("token-" + username, username, "secret", "jwt-" + username, lastActivity);
+    }
+}
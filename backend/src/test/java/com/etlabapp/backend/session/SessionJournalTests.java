@@ -0,0 +1,140 @@
+package com.etlabapp.backend.session;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.etlabapp.backend.security.Sealer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Replay and compaction of the session journal, written to a temp dir
+ */
+class SessionJournalTests {
+
+    private static final String KEY = "testJournalKeyThatIsLongEnoughForAes256";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replayAppliesPutsAndRemovesInOrder() throws Exception {
+        SessionJournal writer = journal(KEY);
+        writer.replay();
+        writer.start(Map::of);
+        writer.recordPut("alice", session("alice", "token-a1"));
+        writer.recordPut("bob", session("bob", "token-b"));
+        writer.recordRemove("alice");
+        writer.recordPut("carol", session("carol", "token-c"));
+        writer.recordPut("alice", session("alice", "token-a2"));
+        writer.stop();
+
+        Map<String, UserSession> replayed = journal(KEY).replay();
+        assertEquals(List.of("bob", "carol", "alice"), List.copyOf(replayed.keySet()));
+        assertEquals("token-a2", replayed.get("alice").getEtlabToken());
+        assertEquals("jwt-alice", replayed.get("alice").getJwtToken());
+        assertNull(replayed.get("alice").getPassword(), "passwords are not journaled");
+    }
+
+    @Test
+    void replayStopsAtATruncatedRecord() throws Exception {
+        SessionJournal writer = journal(KEY);
+        writer.replay();
+        writer.start(Map::of);
+        writer.recordPut("alice", session("alice", "token-a"));
+        writer.stop();
+        long complete = Files.size(file());
+
+        writer = journal(KEY);
+        writer.replay();
+        writer.start(() -> Map.of("alice", session("alice", "token-a")));
+        writer.recordPut("bob", session("bob", "token-b"));
+        writer.stop();
+        // A crash in the middle of the last append
+        try (FileChannel channel = FileChannel.open(file(), StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(file()) - 5);
+        }
+        assertTrue(Files.size(file()) > complete);
+
+        Map<String, UserSession> replayed = journal(KEY).replay();
+        assertEquals(List.of("alice"), List.copyOf(replayed.keySet()));
+    }
+
+    @Test
+    void journalUnderAnotherKeyReplaysNothing() throws Exception {
+        SessionJournal writer = journal(KEY);
+        writer.replay();
+        writer.start(Map::of);
+        writer.recordPut("alice", session("alice", "token-a"));
+        writer.stop();
+
+        assertTrue(journal("anotherJournalKeyThatIsLongEnoughForAes").replay().isEmpty());
+        assertEquals(1, journal(KEY).replay().size());
+    }
+
+    @Test
+    void compactionKeepsOnlyLiveSessions() throws Exception {
+        SessionJournal writer = journal(KEY);
+        writer.replay();
+        writer.start(Map::of);
+        for (int i = 0; i < 50; i++) {
+            writer.recordPut("user" + i, session("user" + i, "token-" + i));
+        }
+        for (int i = 0; i < 48; i++) {
+            writer.recordRemove("user" + i);
+        }
+        writer.stop();
+        long beforeCompaction = Files.size(file());
+
+        // Startup replays, then compacts down to what the store kept
+        SessionJournal restarted = journal(KEY);
+        Map<String, UserSession> live = new LinkedHashMap<>(restarted.replay());
+        assertEquals(List.of("user48", "user49"), List.copyOf(live.keySet()));
+        live.remove("user48");
+        restarted.start(() -> live);
+        restarted.stop();
+
+        assertTrue(Files.size(file()) < beforeCompaction / 10, "compacted to " + Files.size(file()) + " bytes");
+        assertEquals(List.of("user49"), List.copyOf(journal(KEY).replay().keySet()));
+    }
+
+    @Test
+    void refusesToStartWithoutItsOwnKey() {
+        for (String key : new String[] { "", "tooShort", Sealer.DEFAULT_JWT_SECRET }) {
+            assertThrows(IllegalStateException.class, () -> ReflectionTestUtils.invokeMethod(journal(key), "init"));
+        }
+    }
+
+    private Path file() {
+        return dir.resolve("sessions.journal");
+    }
+
+    private SessionJournal journal(String key) {
+        SessionJournal journal = new SessionJournal();
+        ReflectionTestUtils.setField(journal, "path", file().toString());
+        ReflectionTestUtils.setField(journal, "secret", key);
+        ReflectionTestUtils.setField(journal, "maxPending", 1000);
+        ReflectionTestUtils.setField(journal, "compactMinutes", 60L);
+        ReflectionTestUtils.setField(journal, "compactBytes", 1L << 20);
+        ReflectionTestUtils.setField(journal, "meterRegistry", new SimpleMeterRegistry());
+        return journal;
+    }
+
+    private static UserSession session(String username, String etlabToken) {
+        return new UserSession(etlabToken, username, "secret", "jwt-" + username);
+    }
+}
@@ -0,0 +1,138 @@
+package com.etlabapp.backend.upstream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * State transitions of the breaker at its configured thresholds: a window of 10, at
+ * least 5 calls, 50% failures, open for 1 s, then 2 probes
+ */
+class CircuitBreakerTests {
+
+    private static final long OPEN_MILLIS = 1000;
+    private static final int PROBES = 2;
+
+    private final CircuitBreaker breaker = new CircuitBreaker(10, 5, 0.5, OPEN_MILLIS, PROBES);
+
+    @Test
+    void opensOnceTheFailureRateReachesTheThreshold() {
+        // Every call failing, but fewer than minimumCalls
+        for (int i = 0; i < 4; i++) {
+            call(0, false);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        call(0, false);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void staysClosedBelowTheThreshold() {
+        for (int i = 0; i < 10; i++) {
+            call(0, true);
+        }
+        for (int i = 0; i < 4; i++) {
+            call(0, false);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(), "4 of the last 10 failed");
+
+        // The window keeps the last 10 outcomes: the successes age out as failures come in
+        call(0, false);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState(), "5 of the last 10 failed");
+    }
+
+    @Test
+    void opensThenProbesThenCloses() {
+        open(0);
+        assertFalse(breaker.tryAcquire(OPEN_MILLIS - 1));
+        assertEquals(1, breaker.remainingOpenMillis(OPEN_MILLIS - 1));
+
+        // After openMillis, exactly PROBES calls go through
+        assertTrue(breaker.tryAcquire(OPEN_MILLIS));
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquire(OPEN_MILLIS));
+        assertFalse(breaker.tryAcquire(OPEN_MILLIS));
+
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0, breaker.getFailureRate(), "the window starts over on closing");
+
+        // Earlier failures don't count towards the next opening
+        for (int i = 0; i < 4; i++) {
+            call(OPEN_MILLIS, false);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void failedProbeReopensForAnotherFullPeriod() {
+        open(0);
+        assertTrue(breaker.tryAcquire(OPEN_MILLIS));
+        breaker.onFailure(OPEN_MILLIS + 50);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire(2 * OPEN_MILLIS));
+        assertTrue(breaker.tryAcquire(2 * OPEN_MILLIS + 50));
+    }
+
+    @Test
+    void releasedProbeSlotCanBeReused() {
+        open(0);
+        assertTrue(breaker.tryAcquire(OPEN_MILLIS));
+        assertTrue(breaker.tryAcquire(OPEN_MILLIS));
+        // Shed before it reached ETLab
+        breaker.release();
+        assertTrue(breaker.tryAcquire(OPEN_MILLIS));
+        assertFalse(breaker.tryAcquire(OPEN_MILLIS));
+    }
+
+    @Test
+    void concurrentCallersGetOnlyTheProbeSlots() throws Exception {
+        open(0);
+        int callers = 32;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> admitted = new ArrayList<>();
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < callers; i++) {
+                admitted.add(threads.submit(() -> {
+                    start.await();
+                    return breaker.tryAcquire(OPEN_MILLIS);
+                }));
+            }
+            start.countDown();
+            int probes = 0;
+            for (Future<Boolean> result : admitted) {
+                probes += result.get(10, TimeUnit.SECONDS) ? 1 : 0;
+            }
+            assertEquals(PROBES, probes);
+        }
+    }
+
+    private void open(long now) {
+        for (int i = 0; i < 5; i++) {
+            call(now, false);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    private void call(long now, boolean succeeded) {
+        assertTrue(breaker.tryAcquire(now));
+        if (succeeded) {
+            breaker.onSuccess();
+        } else {
+            breaker.onFailure(now);
+        }
+    }
+}
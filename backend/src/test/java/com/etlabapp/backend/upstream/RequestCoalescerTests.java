@@ -0,0 +1,119 @@
+package com.etlabapp.backend.upstream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.etlabapp.backend.cache.CacheKey;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Concurrent identical calls make one upstream call, blocking and async callers alike
+ */
+class RequestCoalescerTests {
+
+    private static final int CALLERS = 16;
+    private static final CacheKey KEY = new CacheKey("student", "/attendance");
+
+    private final RequestCoalescer coalescer = new RequestCoalescer(new SimpleMeterRegistry());
+    private final AtomicInteger upstreamCalls = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Test
+    void concurrentIdenticalCallsShareOneUpstreamCall() throws Exception {
+        Object body = new Object();
+        List<Future<Object>> results = new ArrayList<>();
+        try (ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < CALLERS; i++) {
+                results.add(callers.submit(() -> coalescer.execute(KEY, () -> slowCall(body))));
+            }
+            awaitCoalesced(CALLERS - 1);
+            release.countDown();
+            for (Future<Object> result : results) {
+                assertSame(body, result.get(10, TimeUnit.SECONDS));
+            }
+        }
+        assertEquals(1, upstreamCalls.get());
+        assertFalse(coalescer.isInFlight(KEY));
+
+        // Once it completed, the next call goes upstream again
+        coalescer.execute(KEY, () -> slowCall(body));
+        assertEquals(2, upstreamCalls.get());
+    }
+
+    @Test
+    void asyncCallersJoinABlockingLeader() throws Exception {
+        Object body = new Object();
+        try (ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<Object> leader = callers.submit(() -> coalescer.execute(KEY, () -> slowCall(body)));
+            while (!coalescer.isInFlight(KEY)) {
+                Thread.sleep(1);
+            }
+            List<CompletableFuture<Object>> joined = new ArrayList<>();
+            for (int i = 0; i < CALLERS - 1; i++) {
+                joined.add(coalescer.executeAsync(KEY, () -> CompletableFuture.completedFuture(slowCall(new Object()))));
+            }
+            release.countDown();
+            assertSame(body, leader.get(10, TimeUnit.SECONDS));
+            for (CompletableFuture<Object> result : joined) {
+                assertSame(body, result.get(10, TimeUnit.SECONDS));
+            }
+        }
+        assertEquals(1, upstreamCalls.get());
+    }
+
+    @Test
+    void everyCallerGetsTheLeadersFailure() throws Exception {
+        IllegalStateException failure = new IllegalStateException("ETLab down");
+        List<Future<Object>> results = new ArrayList<>();
+        try (ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < CALLERS; i++) {
+                results.add(callers.submit(() -> coalescer.execute(KEY, () -> {
+                    slowCall(null);
+                    throw failure;
+                })));
+            }
+            awaitCoalesced(CALLERS - 1);
+            release.countDown();
+            for (Future<Object> result : results) {
+                ExecutionException thrown = assertThrows(ExecutionException.class, () -> result.get(10, TimeUnit.SECONDS));
+                assertSame(failure, thrown.getCause());
+            }
+        }
+        assertEquals(1, upstreamCalls.get());
+    }
+
+    private Object slowCall(Object body) {
+        upstreamCalls.incrementAndGet();
+        try {
+            assertTrue(release.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return body;
+    }
+
+    private void awaitCoalesced(int callers) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (coalescer.getCoalescedCount() < callers) {
+            assertTrue(System.nanoTime() < deadline, coalescer.getCoalescedCount() + " callers joined");
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.etlabapp.backend.upstream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.etlabapp.backend.TestApps;
+import com.etlabapp.backend.exception.UpstreamUnavailableException;
+import com.sun.net.httpserver.HttpServer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Admission order of UpstreamGuard (breaker, bulkhead, then the global limit), and the
+ * interceptor and the reactive client holding a permit until the response body is done with
+ */
+class UpstreamGuardTests {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void openCircuitFailsFastWhileTheLimiterIsSaturated() {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 2000);
+        UpstreamGuard guard = guard(limiter);
+        for (int i = 0; i < 2; i++) {
+            guard.acquire("/profile", true).onFailure();
+        }
+        assertEquals(CircuitBreaker.State.OPEN, guard.getState("/profile"));
+
+        // Another endpoint holds the only limiter slot
+        UpstreamGuard.Permit busy = guard.acquire("/attendance", true);
+        long start = System.nanoTime();
+        UpstreamUnavailableException rejected = assertThrows(UpstreamUnavailableException.class,
+                                                             () -> guard.acquire("/profile", true));
+        long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(rejected.getMessage().contains("Circuit open"), rejected.getMessage());
+        assertTrue(waitedMillis < 1000, "rejected after " + waitedMillis + " ms instead of failing fast");
+        busy.release();
+    }
+
+    @Test
+    void shedCallGivesBackItsBulkheadSlot() {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 0);
+        UpstreamGuard guard = guard(limiter);
+        ReflectionTestUtils.setField(guard, "bulkheadMaxConcurrent", 1);
+
+        UpstreamGuard.Permit busy = guard.acquire("/attendance", false);
+        assertThrows(UpstreamUnavailableException.class, () -> guard.acquire("/profile", false));
+        busy.onResponse(200);
+
+        // /profile's single bulkhead slot wasn't leaked by the shed call
+        guard.acquire("/profile", false).onResponse(200);
+    }
+
+    @Test
+    void permitIsHeldUntilTheBodyIsClosed() throws IOException {
+        UpstreamGuard guard = guard(limiter(10, 0));
+        ReflectionTestUtils.setField(guard, "bulkheadMaxConcurrent", 1);
+        UpstreamGuardInterceptor interceptor = new UpstreamGuardInterceptor(guard);
+
+        ClientHttpResponse response = interceptor.intercept(request("/profile"), new byte[0],
+            (request, body) -> new MockClientHttpResponse("{}".getBytes(), HttpStatus.OK));
+        assertThrows(UpstreamUnavailableException.class, () -> guard.acquire("/profile", false),
+                     "the body hasn't been read, so the bulkhead slot is still taken");
+
+        response.getBody().readAllBytes();
+        response.close();
+        guard.acquire("/profile", false).onResponse(200);
+    }
+
+    @Test
+    void failedBodyReadCountsAsABreakerFailure() throws IOException {
+        UpstreamGuard guard = guard(limiter(10, 0));
+        UpstreamGuardInterceptor interceptor = new UpstreamGuardInterceptor(guard);
+        InputStream reset = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("Connection reset");
+            }
+        };
+
+        for (int i = 0; i < 2; i++) {
+            ClientHttpResponse response = interceptor.intercept(request("/results"), new byte[0],
+                (request, body) -> new MockClientHttpResponse(reset, HttpStatus.OK));
+            assertThrows(IOException.class, () -> response.getBody().read());
+            response.close();
+        }
+        assertEquals(CircuitBreaker.State.OPEN, guard.getState("/results"));
+    }
+
+    @Test
+    void reactiveCallHoldsItsPermitUntilTheBodyIsRead() throws Exception {
+        CountDownLatch headersSent = new CountDownLatch(1);
+        CountDownLatch finishBody = new CountDownLatch(1);
+        HttpServer etlab = TestApps.startEtlab(exchange -> {
+            byte[] body = ("{\"name\":\"" + "x".repeat(4096) + "\"}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body, 0, 100);
+                out.flush();
+                headersSent.countDown();
+                finishBody.await(10, TimeUnit.SECONDS);
+                out.write(body, 100, body.length - 100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        try {
+            UpstreamGuard guard = guard(limiter(10, 0));
+            ReflectionTestUtils.setField(guard, "bulkheadMaxConcurrent", 1);
+            CompletableFuture<Map> profile = reactiveClient(guard, etlab).get("/profile", "token", Map.class);
+
+            assertTrue(headersSent.await(10, TimeUnit.SECONDS));
+            // Long enough for the client to have handled the headers
+            Thread.sleep(200);
+            assertThrows(UpstreamUnavailableException.class, () -> guard.acquire("/profile", false),
+                         "the body is still streaming, so the bulkhead slot is still taken");
+
+            finishBody.countDown();
+            assertEquals(4096, ((String) profile.get(10, TimeUnit.SECONDS).get("name")).length());
+            guard.acquire("/profile", false).onResponse(200);
+        } finally {
+            etlab.stop(0);
+        }
+    }
+
+    @Test
+    void reactiveBodyCutOffCountsAsABreakerFailure() throws Exception {
+        HttpServer etlab = TestApps.startEtlab(exchange -> {
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, 1000);
+            OutputStream out = exchange.getResponseBody();
+            out.write("{\"name\":\"".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            // Connection reset halfway through the body
+            exchange.close();
+        });
+        try {
+            UpstreamGuard guard = guard(limiter(10, 0));
+            ReactiveEtlabClient client = reactiveClient(guard, etlab);
+            for (int i = 0; i < 2; i++) {
+                CompletableFuture<Map> results = client.get("/results", "token", Map.class);
+                assertThrows(ExecutionException.class, () -> results.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(CircuitBreaker.State.OPEN, guard.getState("/results"));
+        } finally {
+            etlab.stop(0);
+        }
+    }
+
+    private static ReactiveEtlabClient reactiveClient(UpstreamGuard guard, HttpServer etlab) {
+        ReactiveEtlabClient client = new ReactiveEtlabClient();
+        ReflectionTestUtils.setField(client, "apiBaseUrl", "http://127.0.0.1:" + etlab.getAddress().getPort() + "/api");
+        ReflectionTestUtils.setField(client, "connectTimeoutSeconds", 5);
+        ReflectionTestUtils.setField(client, "readTimeoutSeconds", 10);
+        ReflectionTestUtils.setField(client, "webClientBuilder", WebClient.builder());
+        ReflectionTestUtils.setField(client, "upstreamGuard", guard);
+        ReflectionTestUtils.invokeMethod(client, "init");
+        return client;
+    }
+
+    private static MockClientHttpRequest request(String endpoint) {
+        return new MockClientHttpRequest(HttpMethod.GET, URI.create("http://etlab.test/api" + endpoint));
+    }
+
+    private AdaptiveConcurrencyLimiter limiter(int limit, long maxWaitMillis) {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(meterRegistry);
+        ReflectionTestUtils.setField(limiter, "enabled", true);
+        ReflectionTestUtils.setField(limiter, "initialLimit", limit);
+        ReflectionTestUtils.setField(limiter, "minLimit", limit);
+        ReflectionTestUtils.setField(limiter, "maxLimit", limit);
+        ReflectionTestUtils.setField(limiter, "backoffRatio", 0.7);
+        ReflectionTestUtils.setField(limiter, "latencyTolerance", 2.0);
+        ReflectionTestUtils.setField(limiter, "maxWaitMillis", maxWaitMillis);
+        ReflectionTestUtils.invokeMethod(limiter, "init");
+        return limiter;
+    }
+
+    private UpstreamGuard guard(AdaptiveConcurrencyLimiter limiter) {
+        UpstreamWarmer warmer = new UpstreamWarmer();
+        ReflectionTestUtils.setField(warmer, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.invokeMethod(warmer, "init");
+
+        UpstreamGuard guard = new UpstreamGuard(meterRegistry, limiter, warmer);
+        ReflectionTestUtils.setField(guard, "enabled", true);
+        ReflectionTestUtils.setField(guard, "windowSize", 4);
+        ReflectionTestUtils.setField(guard, "minimumCalls", 2);
+        ReflectionTestUtils.setField(guard, "failureRateThreshold", 0.5);
+        ReflectionTestUtils.setField(guard, "openSeconds", 30L);
+        ReflectionTestUtils.setField(guard, "halfOpenProbes", 1);
+        ReflectionTestUtils.setField(guard, "bulkheadMaxConcurrent", 4);
+        ReflectionTestUtils.setField(guard, "bulkheadMaxWaitMillis", 0L);
+        return guard;
+    }
+}